@@ -9,14 +9,28 @@ import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.EcgWaveformGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.generators.PatientRandoms;
+import com.cardio_generator.outputs.ColumnarFileOutputStrategy;
+import com.cardio_generator.outputs.CompositeOutputStrategy;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.OverflowPolicy;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.ScenarioOutputStrategy;
+import com.cardio_generator.outputs.SegmentCompression;
+import com.cardio_generator.outputs.SharedMemoryOutputStrategy;
+import com.cardio_generator.outputs.SlowSubscriberPolicy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -33,10 +47,44 @@ import java.util.ArrayList;
  * the data is generated at different time intervals.
  */
 public class HealthDataSimulator {
+    // Above this many patients one thread per task no longer scales
+    private static final int TICK_SCHEDULER_THRESHOLD = 1000;
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+    // Used where buffering is needed but --file-flush was not given
+    private static final long DEFAULT_BUFFERED_FLUSH_MILLIS = 1000;
+
     private static int patientCount = 50;
+    private static int firstPatientId = 1;
+    private static String shardArg;
+    private static String patientRangeArg;
+    private static String schedulerMode = "auto";
     private static ScheduledExecutorService scheduler;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy();
-    private static final Random random = new Random();
+    private static long seed = PatientRandoms.randomSeed();
+    private static double speed = 1.0;
+    private static boolean virtualClock = false;
+    private static long durationSeconds = -1;
+    private static long startTime = -1;
+    private static LoadProfile loadProfile;
+    private static ScenarioScript scenarioScript;
+    private static int ecgSampleRate = 0;
+    private static final List<String> outputArgs = new ArrayList<>();
+    private static final Map<String, OutputStrategy> outputs = new LinkedHashMap<>();
+    // Closed in this order by one shutdown hook, after the composite output has drained
+    private static final List<Runnable> closeOnExit = new ArrayList<>();
+    private static int outputQueueCapacity = 10000;
+    private static long fileFlushMillis = -1;
+    private static boolean binaryFiles = false;
+    private static long segmentBytes = 0;
+    private static long segmentSeconds = 0;
+    private static SegmentCompression segmentCompression = SegmentCompression.NONE;
+    private static int subscriberBufferBytes = TcpOutputStrategy.DEFAULT_SUBSCRIBER_BUFFER;
+    private static SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.DISCONNECT;
+    private static boolean webSocketTickFrames = false;
+    private static int webSocketQueueFrames = WebSocketOutputStrategy.DEFAULT_MAX_QUEUED_FRAMES;
+    private static OverflowPolicy overflowPolicy;
+    private static final Map<String, Double> labelRates = new HashMap<>();
+    private static Random random;
     private static volatile HealthDataSimulator instance;
 
     public static HealthDataSimulator getInstance() {
@@ -58,13 +106,39 @@ public class HealthDataSimulator {
     public static void main(String[] args) throws IOException {
 
         parseArguments(args);
+        resolvePatientRange();
+        if (schedulerMode.equals("pool") && (loadProfile != null || isSimulatedTime())) {
+            // Simulated time and load profiles always drive the tick scheduler
+            System.err.println("Error: --scheduler pool cannot be combined with --speed, --virtual-clock, "
+                    + "--duration or --load, which run on the tick scheduler.");
+            System.exit(1);
+        }
+        System.out.println("Simulation seed: " + seed);
+        random = new Random(seed);
+        if (scenarioScript != null) {
+            ScenarioOutputStrategy scenario = new ScenarioOutputStrategy(outputStrategy, scenarioScript,
+                    firstPatientId, patientCount, seed, ecgSampleRate > 0);
+            Runtime.getRuntime().addShutdownHook(new Thread(scenario::printReport));
+            outputStrategy = scenario;
+            System.out.println("Injecting scenario " + scenarioScript);
+        }
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
-
-        List<Integer> patientIds = initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        List<Integer> patientIds = initializePatientIds(firstPatientId, patientCount);
+        Collections.shuffle(patientIds, random); // Randomize the order of patient IDs
 
-        scheduleTasksForPatients(patientIds);
+        if (loadProfile != null) {
+            runLoadProfile(patientIds);
+        } else if (isSimulatedTime()) {
+            runSimulatedTime(patientIds);
+        } else if (schedulerMode.equals("tick")
+                || (schedulerMode.equals("auto") && patientCount > TICK_SCHEDULER_THRESHOLD)) {
+            int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+            createTickScheduler(patientIds, threads).start();
+            System.out.println("Simulating " + patientCount + " patients on " + threads + " generator threads");
+        } else {
+            scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+            scheduleTasksForPatients(patientIds);
+        }
     }
 
     /**
@@ -90,39 +164,212 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
-                case "--output":
+                case "--shard":
                     if (i + 1 < args.length) {
-                        String outputArg = args[++i];
-                        if (outputArg.equals("console")) {
-                            outputStrategy = new ConsoleOutputStrategy();
-                        } else if (outputArg.startsWith("file:")) {
-                            String baseDirectory = outputArg.substring(5);
-                            Path outputPath = Paths.get(baseDirectory);
-                            if (!Files.exists(outputPath)) {
-                                Files.createDirectories(outputPath);
-                            }
-                            outputStrategy = new FileOutputStrategy(baseDirectory);
-                        } else if (outputArg.startsWith("websocket:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(10));
-                                // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
-                                System.out.println("WebSocket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println(
-                                        "Invalid port for WebSocket output. Please specify a valid port number.");
-                            }
-                        } else if (outputArg.startsWith("tcp:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(4));
-                                // Initialize your TCP socket output strategy here
-                                outputStrategy = new TcpOutputStrategy(port);
-                                System.out.println("TCP socket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+                        shardArg = args[++i];
+                    }
+                    break;
+                case "--patient-range":
+                    if (i + 1 < args.length) {
+                        patientRangeArg = args[++i];
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using a random seed.");
+                        }
+                    }
+                    break;
+                case "--speed":
+                    if (i + 1 < args.length) {
+                        try {
+                            speed = Double.parseDouble(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid speed. Using default value: " + speed);
+                        }
+                    }
+                    break;
+                case "--virtual-clock":
+                    virtualClock = true;
+                    break;
+                case "--duration":
+                    if (i + 1 < args.length) {
+                        try {
+                            durationSeconds = parseDuration(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid duration '" + args[i] + "'. Running until stopped.");
+                        }
+                    }
+                    break;
+                case "--start-time":
+                    if (i + 1 < args.length) {
+                        try {
+                            startTime = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid start time. Using the current time.");
+                        }
+                    }
+                    break;
+                case "--load":
+                    if (i + 1 < args.length) {
+                        try {
+                            loadProfile = LoadProfile.parse(args[++i]);
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: " + e.getMessage() + ". Using the natural data rates.");
+                        }
+                    }
+                    break;
+                case "--scenario":
+                    if (i + 1 < args.length) {
+                        try {
+                            scenarioScript = readScenario(args[++i]);
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: " + e.getMessage() + ". Running without a scenario.");
+                        }
+                    }
+                    break;
+                case "--label-rates":
+                    if (i + 1 < args.length) {
+                        parseLabelRates(args[++i]);
+                    }
+                    break;
+                case "--ecg-sample-rate":
+                    if (i + 1 < args.length) {
+                        try {
+                            int rate = Integer.parseInt(args[++i]);
+                            if (rate < 250 || rate > 500) {
+                                throw new NumberFormatException();
                             }
+                            ecgSampleRate = rate;
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: ECG sample rate must be between 250 and 500 Hz. "
+                                    + "Using one ECG value per second.");
+                        }
+                    }
+                    break;
+                case "--scheduler":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("pool") || mode.equals("tick") || mode.equals("auto")) {
+                            schedulerMode = mode;
                         } else {
-                            System.err.println("Unknown output type. Using default (console).");
+                            System.err.println("Error: Unknown scheduler '" + mode + "'. Using default value: "
+                                    + schedulerMode);
+                        }
+                    }
+                    break;
+                case "--output":
+                    if (i + 1 < args.length) {
+                        outputArgs.add(args[++i]);
+                    }
+                    break;
+                case "--file-flush":
+                    if (i + 1 < args.length) {
+                        try {
+                            fileFlushMillis = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid flush interval. Ignoring it.");
+                        }
+                    }
+                    break;
+                case "--file-format":
+                    if (i + 1 < args.length) {
+                        String format = args[++i];
+                        if (format.equals("text") || format.equals("binary")) {
+                            binaryFiles = format.equals("binary");
+                        } else {
+                            System.err.println("Error: Unknown file format '" + format
+                                    + "'. Using default value: text");
+                        }
+                    }
+                    break;
+                case "--segment-size":
+                    if (i + 1 < args.length) {
+                        try {
+                            segmentBytes = parseSize(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment size '" + args[i] + "'. Not rotating by size.");
+                        }
+                    }
+                    break;
+                case "--segment-time":
+                    if (i + 1 < args.length) {
+                        try {
+                            segmentSeconds = parseDuration(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment time '" + args[i] + "'. Not rotating by time.");
+                        }
+                    }
+                    break;
+                case "--segment-compression":
+                    if (i + 1 < args.length) {
+                        try {
+                            segmentCompression = SegmentCompression.valueOf(args[++i].toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: Unknown segment compression. Using default value: none");
+                        }
+                    }
+                    break;
+                case "--subscriber-buffer":
+                    if (i + 1 < args.length) {
+                        try {
+                            subscriberBufferBytes = (int) Math.min(Integer.MAX_VALUE, parseSize(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid subscriber buffer '" + args[i]
+                                    + "'. Using default value: " + subscriberBufferBytes);
+                        }
+                    }
+                    break;
+                case "--slow-subscriber":
+                    if (i + 1 < args.length) {
+                        try {
+                            slowSubscriberPolicy = SlowSubscriberPolicy.valueOf(args[++i].toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: Unknown slow subscriber policy. Using default value: "
+                                    + "disconnect");
+                        }
+                    }
+                    break;
+                case "--websocket-frames":
+                    if (i + 1 < args.length) {
+                        String frames = args[++i];
+                        if (frames.equals("reading") || frames.equals("tick")) {
+                            webSocketTickFrames = frames.equals("tick");
+                        } else {
+                            System.err.println("Error: Unknown WebSocket frame mode '" + frames
+                                    + "'. Using default value: reading");
+                        }
+                    }
+                    break;
+                case "--websocket-queue":
+                    if (i + 1 < args.length) {
+                        try {
+                            webSocketQueueFrames = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid WebSocket queue size. Using default value: "
+                                    + webSocketQueueFrames);
+                        }
+                    }
+                    break;
+                case "--output-queue":
+                    if (i + 1 < args.length) {
+                        try {
+                            outputQueueCapacity = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid queue size. Using default value: "
+                                    + outputQueueCapacity);
+                        }
+                    }
+                    break;
+                case "--overflow":
+                    if (i + 1 < args.length) {
+                        try {
+                            overflowPolicy = OverflowPolicy.valueOf(args[++i].toUpperCase().replace('-', '_'));
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: Unknown overflow policy. Using default value: drop-oldest");
                         }
                     }
                     break;
@@ -132,6 +379,100 @@ public class HealthDataSimulator {
                     System.exit(1);
             }
         }
+        // Created once all options are known, since some of them configure the outputs
+        for (String outputArg : outputArgs) {
+            OutputStrategy output = createOutputStrategy(outputArg);
+            if (output != null) {
+                outputs.put(outputArg, output);
+            }
+        }
+        CompositeOutputStrategy composite = null;
+        if (outputs.size() == 1 && overflowPolicy == null) {
+            outputStrategy = outputs.values().iterator().next();
+        } else if (!outputs.isEmpty()) {
+            composite = new CompositeOutputStrategy(outputQueueCapacity,
+                    overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST);
+            outputs.forEach(composite::addSink);
+            outputStrategy = composite;
+        }
+        // One hook, so the sinks are only closed once the composite has written its queues
+        CompositeOutputStrategy queued = composite;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (queued != null) {
+                queued.close();
+                queued.printReport();
+            }
+            closeOnExit.forEach(Runnable::run);
+        }));
+    }
+
+    private static boolean isSimulatedTime() {
+        return virtualClock || speed != 1.0 || durationSeconds >= 0;
+    }
+
+    /**
+     * Creates the output strategy for an {@code --output} argument.
+     *
+     * @param outputArg the output, e.g. "console" or "tcp:8080"
+     * @return the output strategy, or {@code null} if the output is not valid
+     * @throws IOException if there is any error creating output directories
+     */
+    private static OutputStrategy createOutputStrategy(String outputArg) throws IOException {
+        if (outputArg.equals("console")) {
+            return new ConsoleOutputStrategy();
+        } else if (outputArg.startsWith("file:")) {
+            String baseDirectory = outputArg.substring(5);
+            Path outputPath = Paths.get(baseDirectory);
+            if (!Files.exists(outputPath)) {
+                Files.createDirectories(outputPath);
+            }
+            if (binaryFiles) {
+                ColumnarFileOutputStrategy binaryOutput = new ColumnarFileOutputStrategy(baseDirectory,
+                        fileFlushMillis < 0 ? DEFAULT_BUFFERED_FLUSH_MILLIS : fileFlushMillis);
+                closeOnExit.add(binaryOutput::close);
+                return binaryOutput;
+            }
+            boolean segmented = segmentBytes > 0 || segmentSeconds > 0;
+            if (fileFlushMillis < 0 && !segmented) {
+                return new FileOutputStrategy(baseDirectory);
+            }
+            long flushMillis = fileFlushMillis;
+            if (flushMillis < 0) {
+                flushMillis = DEFAULT_BUFFERED_FLUSH_MILLIS;
+                System.out.println("Segments need buffered file output, flushing every " + flushMillis + " ms");
+            }
+            FileOutputStrategy fileOutput = new FileOutputStrategy(baseDirectory, FILE_BUFFER_SIZE, flushMillis,
+                    segmentBytes, segmentSeconds * 1000, segmentCompression);
+            closeOnExit.add(fileOutput::close);
+            return fileOutput;
+        } else if (outputArg.startsWith("websocket:")) {
+            try {
+                int port = Integer.parseInt(outputArg.substring(10));
+                System.out.println("WebSocket output will be on port: " + port);
+                return new WebSocketOutputStrategy(port, webSocketTickFrames, webSocketQueueFrames,
+                        slowSubscriberPolicy);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port for WebSocket output. Please specify a valid port number.");
+            }
+        } else if (outputArg.startsWith("tcp:")) {
+            try {
+                int port = Integer.parseInt(outputArg.substring(4));
+                System.out.println("TCP socket output will be on port: " + port);
+                return new TcpOutputStrategy(port, subscriberBufferBytes, slowSubscriberPolicy);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+            }
+        } else if (outputArg.startsWith("unix:")) {
+            Path socketPath = Paths.get(outputArg.substring(5));
+            System.out.println("Unix domain socket output will be on: " + socketPath);
+            return new TcpOutputStrategy(socketPath, subscriberBufferBytes, slowSubscriberPolicy);
+        } else if (outputArg.startsWith("shm:")) {
+            return new SharedMemoryOutputStrategy(Paths.get(outputArg.substring(4)),
+                    SharedMemoryOutputStrategy.DEFAULT_CAPACITY);
+        } else {
+            System.err.println("Unknown output type. Using default (console).");
+        }
+        return null;
     }
 
     /**
@@ -143,27 +484,148 @@ public class HealthDataSimulator {
         System.out.println("  -h                       Show help and exit.");
         System.out.println(
                 "  --patient-count <count>  Specify the number of patients to simulate data for (default: 50).");
+        System.out.println("  --shard <i>/<n>          Simulate shard i (0 to n-1) of n equal, disjoint ranges of the");
+        System.out.println("                           patient IDs 1 to --patient-count, e.g. 2/4. n must not");
+        System.out.println("                           exceed the patient count.");
+        System.out.println("  --patient-range <a>-<b>  Simulate only the patient IDs a to b.");
+        System.out.println("  --seed <number>          Seed the random data, so that runs with the same seed and");
+        System.out.println("                           patient count generate the same values (default: random).");
+        System.out.println("  --speed <factor>         Run simulated time this many times faster than real time.");
+        System.out.println("  --virtual-clock          Run simulated time as fast as the output can take the data.");
+        System.out.println("  --duration <time>        Stop after this much simulated time, e.g. 90s, 30m or 24h");
+        System.out.println("                           (default: 24h with --virtual-clock, otherwise no limit).");
+        System.out.println("  --start-time <millis>    Simulated start time in epoch milliseconds (default: now).");
+        System.out.println("  --load <profile>         Generate readings at a target rate instead of the natural one:");
+        System.out.println("                             'constant:<rate>' readings per second,");
+        System.out.println("                             'ramp:<from>-<to>/<time>' rising linearly, then holding,");
+        System.out.println("                             'step:<rate>,<rate>,.../<time>' holding each rate in turn,");
+        System.out.println("                             'burst:<base>/<peak>/<length>/<every>' with periodic bursts.");
+        System.out.println("  --scenario <script>      Inject clinical events into the data, given as the share of");
+        System.out.println("                           patients in an episode at any time, e.g. 'hypoxemia=0.05,");
+        System.out.println("                           bp-trend=0.02,tachycardia=0.1/5m,manual-alert=0.01' with an");
+        System.out.println("                           optional episode length, 'worst-case' for every");
+        System.out.println("                           patient in every episode, or 'file:<path>' for a script file.");
+        System.out.println("  --label-rates <rates>    Scale the share of labels under --load, e.g. ECG=2,Alert=0.");
+        System.out.println("  --ecg-sample-rate <hz>   Generate an ECG trace at 250 to 500 samples per second");
+        System.out.println("                           instead of one ECG value per second.");
+        System.out.println("  --scheduler <mode>       'pool' for one periodic task per patient and data type,");
+        System.out.println("                           'tick' for a few threads ticking all patients in bulk,");
+        System.out.println("                           'auto' for 'tick' above " + TICK_SCHEDULER_THRESHOLD
+                + " patients (default). Simulated time and load");
+        System.out.println("                           profiles always tick, so they do not accept 'pool'.");
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'tcp:<port>' for TCP socket output,");
+        System.out.println("                             'unix:<path>' for Unix domain socket output,");
+        System.out.println("                             'shm:<file>' for a shared memory ring on the same host.");
+        System.out.println("                           Repeat to write to several outputs at once, each with its own");
+        System.out.println("                           queue and writer thread.");
+        System.out.println("  --file-flush <millis>    Keep the output files open and write them at least this");
+        System.out.println("                           often, 0 for only when a buffer is full. Without it, or");
+        System.out.println("                           with -1, every reading is written through on its own.");
+        System.out.println("                           Segments and binary files buffer every 1000 ms by default.");
+        System.out.println("  --file-format <format>   'text' for a line per reading in a file per label (default),");
+        System.out.println("                           'binary' for one columnar file per run.");
+        System.out.println("  --segment-size <size>    Close a file segment at this size, e.g. 64m (default: none).");
+        System.out.println("  --segment-time <time>    Close a file segment at this age, e.g. 1h (default: none).");
+        System.out.println("  --segment-compression <c> Compress closed segments: 'none' (default), 'gzip' or");
+        System.out.println("                           'fast' (gzip at its fastest level).");
+        System.out.println("  --subscriber-buffer <size> Bytes queued per TCP or Unix socket client (default: 4m).");
+        System.out.println("  --slow-subscriber <p>    What a client with a full buffer gets: 'disconnect' (default)");
+        System.out.println("                           or 'sample' (readings are skipped until it catches up).");
+        System.out.println("  --websocket-frames <m>   'reading' for a WebSocket message per reading (default) or");
+        System.out.println("                           'tick' for one multi-line message per tick, shared by all");
+        System.out.println("                           clients.");
+        System.out.println("  --websocket-queue <n>    Messages a WebSocket client may have queued before it counts");
+        System.out.println("                           as slow (default: 1000).");
+        System.out.println("  --output-queue <size>    Entries each output can queue (default: 10000).");
+        System.out.println("  --overflow <policy>      What a full output queue does: 'drop-oldest' (default),");
+        System.out.println("                           'drop-newest' or 'block', which slows generation down to the");
+        System.out.println("                           slowest output. Also makes a single output asynchronous.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
                 "  This command simulates data for 100 patients and sends the output to WebSocket clients connected to port 8080.");
+        System.out.println(
+                "  java HealthDataSimulator --patient-count 1000 --virtual-clock --duration 24h --output file:data");
+        System.out.println("  This command writes a day of data for 1000 patients to files as fast as possible.");
+    }
+
+    /**
+     * Narrows the simulated patients down to the range given by {@code --patient-range},
+     * or to this process's share of the fleet given by {@code --shard}. Shards split the
+     * IDs 1 to {@code --patient-count} into contiguous, disjoint ranges. Every generator
+     * derives a patient's data from the seed and the patient ID alone, so a patient
+     * produces the same data whichever shard it ends up in.
+     */
+    private static void resolvePatientRange() {
+        try {
+            if (patientRangeArg != null) {
+                String[] range = patientRangeArg.split("-");
+                int first = Integer.parseInt(range[0]);
+                int last = Integer.parseInt(range[1]);
+                if (first < 1 || last < first) {
+                    throw new NumberFormatException();
+                }
+                firstPatientId = first;
+                patientCount = last - first + 1;
+            } else if (shardArg != null) {
+                String[] shard = shardArg.split("/");
+                int[] range = shardRange(patientCount, Integer.parseInt(shard[0]), Integer.parseInt(shard[1]));
+                firstPatientId = range[0];
+                patientCount = range[1] - range[0] + 1;
+            } else {
+                return;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error: Invalid shard or patient range. Simulating patients 1 to " + patientCount + ".");
+            return;
+        } catch (IllegalArgumentException e) {
+            // Falling back to every patient would duplicate the other shards' patients
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Simulating patients " + firstPatientId + " to " + (firstPatientId + patientCount - 1));
+    }
+
+    /**
+     * Returns the patient IDs of one shard when the IDs 1 to {@code patientCount} are
+     * split into {@code shards} contiguous, disjoint ranges whose sizes differ by at most
+     * one.
+     *
+     * @param patientCount the number of patients of the whole fleet
+     * @param index        the shard, from 0 to {@code shards - 1}
+     * @param shards       the number of shards
+     * @return the first and the last patient ID of the shard
+     * @throws IllegalArgumentException if the index is out of range, or there are more
+     *                                  shards than patients, so some would be empty
+     */
+    public static int[] shardRange(int patientCount, int index, int shards) {
+        if (shards < 1 || index < 0 || index >= shards) {
+            throw new IllegalArgumentException("Shard " + index + "/" + shards + " does not exist");
+        }
+        if (shards > patientCount) {
+            throw new IllegalArgumentException("Cannot split " + patientCount + " patients into " + shards
+                    + " shards without leaving some empty");
+        }
+        int first = (int) ((long) patientCount * index / shards) + 1;
+        int last = (int) ((long) patientCount * (index + 1) / shards);
+        return new int[] {first, last};
     }
 
     /**
      * Creates a list of patient IDs in sequential order.
      *
+     * @param firstPatientId the first patient ID
      * @param patientCount the number of patients to create IDs for
-     * @return a list of integer patient IDs starting from 1
+     * @return a list of integer patient IDs starting from {@code firstPatientId}
      */
-    private static List<Integer> initializePatientIds(int patientCount) {
+    private static List<Integer> initializePatientIds(int firstPatientId, int patientCount) {
         List<Integer> patientIds = new ArrayList<>();
-        for (int i = 1; i <= patientCount; i++) {
-            patientIds.add(i);
+        for (int i = 0; i < patientCount; i++) {
+            patientIds.add(firstPatientId + i);
         }
         return patientIds;
     }
@@ -177,11 +639,14 @@ public class HealthDataSimulator {
      * @param patientIds list of patient IDs to schedule tasks for
      */
     private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        PatientDataGenerator ecgDataGenerator = createEcgGenerator();
+        BloodSaturationDataGenerator bloodSaturationDataGenerator
+                = new BloodSaturationDataGenerator(firstPatientId, patientCount, seed);
+        BloodPressureDataGenerator bloodPressureDataGenerator
+                = new BloodPressureDataGenerator(firstPatientId, patientCount, seed);
+        BloodLevelsDataGenerator bloodLevelsDataGenerator
+                = new BloodLevelsDataGenerator(firstPatientId, patientCount, seed);
+        AlertGenerator alertGenerator = new AlertGenerator(firstPatientId, patientCount, seed);
 
         for (int patientId : patientIds) {
             scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
@@ -192,6 +657,193 @@ public class HealthDataSimulator {
         }
     }
 
+    /**
+     * Creates the ECG generator: the waveform generator when a sample rate was given,
+     * otherwise the one-value-per-second generator.
+     *
+     * @return the ECG generator
+     */
+    private static PatientDataGenerator createEcgGenerator() {
+        if (ecgSampleRate > 0) {
+            return new EcgWaveformGenerator(firstPatientId, patientCount, ecgSampleRate, seed);
+        }
+        return new ECGDataGenerator(firstPatientId, patientCount, seed);
+    }
+
+    /**
+     * Reads a scenario script given on the command line, or from a file with one entry
+     * per line when given as {@code file:<path>}. Lines starting with {@code #} are
+     * comments.
+     *
+     * @param value the script or the path of the script file
+     * @return the script
+     * @throws IllegalArgumentException if the script is not valid or cannot be read
+     */
+    private static ScenarioScript readScenario(String value) {
+        if (!value.startsWith("file:")) {
+            return ScenarioScript.parse(value);
+        }
+        try {
+            StringBuilder script = new StringBuilder();
+            for (String line : Files.readAllLines(Paths.get(value.substring(5)))) {
+                if (!line.trim().startsWith("#")) {
+                    script.append(line).append(',');
+                }
+            }
+            return ScenarioScript.parse(script.toString());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read scenario file " + value.substring(5));
+        }
+    }
+
+    /**
+     * Parses per-label rate multipliers such as {@code ECG=2,Cholesterol=0.5}.
+     *
+     * @param value the comma separated multipliers
+     */
+    private static void parseLabelRates(String value) {
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=");
+            try {
+                if (parts.length != 2 || ReadingType.fromLabel(parts[0]) == null) {
+                    throw new NumberFormatException();
+                }
+                labelRates.put(parts[0], Double.parseDouble(parts[1]));
+            } catch (NumberFormatException e) {
+                System.err.println("Error: Invalid label rate '" + entry + "'. Ignoring it.");
+            }
+        }
+    }
+
+    /**
+     * Generates data at the rate of the load profile until the duration is up, if one
+     * was given, and reports the achieved rate along the way.
+     *
+     * <p>Each generator's share follows its natural rate per patient, scaled by the
+     * multipliers of its labels. Labels that are generated together, like systolic and
+     * diastolic pressure, share one rate, so their multipliers are averaged.
+     *
+     * @param patientIds list of patient IDs to generate data for
+     */
+    private static void runLoadProfile(List<Integer> patientIds) {
+        LoadDriver driver = new LoadDriver(loadProfile, outputStrategy, patientIds);
+        driver.addGenerator(createEcgGenerator(), Math.max(1, ecgSampleRate) * labelRate(ReadingType.ECG));
+        driver.addGenerator(new BloodSaturationDataGenerator(firstPatientId, patientCount, seed),
+                labelRate(ReadingType.SATURATION));
+        driver.addGenerator(new BloodPressureDataGenerator(firstPatientId, patientCount, seed), 2.0 / 60
+                * (labelRate(ReadingType.SYSTOLIC_PRESSURE) + labelRate(ReadingType.DIASTOLIC_PRESSURE)) / 2);
+        driver.addGenerator(new BloodLevelsDataGenerator(firstPatientId, patientCount, seed), 3.0 / 120
+                * (labelRate(ReadingType.CHOLESTEROL) + labelRate(ReadingType.WHITE_BLOOD_CELLS)
+                + labelRate(ReadingType.RED_BLOOD_CELLS)) / 3);
+        // An alert changes state on roughly one call in six
+        driver.addGenerator(new AlertGenerator(firstPatientId, patientCount, seed),
+                1.0 / 20 / 6 * labelRate(ReadingType.ALERT));
+        System.out.println("Generating load profile " + loadProfile + " for " + patientCount + " patients");
+        driver.run(durationSeconds, 5);
+    }
+
+    private static double labelRate(ReadingType type) {
+        return labelRates.getOrDefault(type.getLabel(), 1.0);
+    }
+
+    /**
+     * Parses a size in bytes such as {@code 4096}, {@code 512k}, {@code 64m} or {@code 1g}.
+     *
+     * @param value the size
+     * @return the size in bytes
+     * @throws NumberFormatException if the size is not valid
+     */
+    static long parseSize(String value) {
+        char unit = value.isEmpty() ? ' ' : Character.toLowerCase(value.charAt(value.length() - 1));
+        String number = Character.isDigit(unit) ? value : value.substring(0, value.length() - 1);
+        switch (unit) {
+            case 'g':
+                return Long.parseLong(number) << 30;
+            case 'm':
+                return Long.parseLong(number) << 20;
+            case 'k':
+                return Long.parseLong(number) << 10;
+            default:
+                return Long.parseLong(value);
+        }
+    }
+
+    /**
+     * Parses a duration such as {@code 90s}, {@code 30m}, {@code 24h} or {@code 2d}; a
+     * plain number is taken as seconds.
+     *
+     * @param value the duration
+     * @return the duration in seconds
+     * @throws NumberFormatException if the duration is not valid
+     */
+    static long parseDuration(String value) {
+        char unit = value.isEmpty() ? ' ' : value.charAt(value.length() - 1);
+        String number = Character.isDigit(unit) ? value : value.substring(0, value.length() - 1);
+        switch (unit) {
+            case 'd':
+                return TimeUnit.DAYS.toSeconds(Long.parseLong(number));
+            case 'h':
+                return TimeUnit.HOURS.toSeconds(Long.parseLong(number));
+            case 'm':
+                return TimeUnit.MINUTES.toSeconds(Long.parseLong(number));
+            case 's':
+                return Long.parseLong(number);
+            default:
+                return Long.parseLong(value);
+        }
+    }
+
+    /**
+     * Generates data on a simulated clock instead of wall-clock time, at the requested
+     * speed or, with {@code --virtual-clock}, as fast as the output allows, and reports
+     * how fast it went when done.
+     *
+     * @param patientIds list of patient IDs to generate data for
+     */
+    private static void runSimulatedTime(List<Integer> patientIds) {
+        long seconds = durationSeconds >= 0 ? durationSeconds
+                : virtualClock ? TimeUnit.DAYS.toSeconds(1) : Long.MAX_VALUE;
+        long start = startTime >= 0 ? startTime : System.currentTimeMillis() / 1000 * 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        TickScheduler tickScheduler = createTickScheduler(patientIds, threads);
+        System.out.println("Simulating " + patientCount + " patients on " + threads + " generator threads, "
+                + (virtualClock ? "unthrottled" : speed + "x real time"));
+
+        long wallStart = System.currentTimeMillis();
+        tickScheduler.runSimulated(start, seconds, virtualClock ? 0 : speed);
+        long wallMillis = Math.max(1, System.currentTimeMillis() - wallStart);
+        tickScheduler.shutdown();
+
+        long simulated = tickScheduler.getTickCount();
+        System.out.printf("Simulated %d s of data in %.1f s (%.0fx real time, %d ticks behind schedule)%n",
+                simulated, wallMillis / 1000.0, simulated * 1000.0 / wallMillis, tickScheduler.getOverruns());
+    }
+
+    /**
+     * Creates a {@link TickScheduler} for a large number of patients or simulated time.
+     *
+     * <p>Uses the same generators and periods as {@link #scheduleTasksForPatients(List)},
+     * but a fixed number of threads ticks all patients due each second.
+     *
+     * @param patientIds list of patient IDs to schedule tasks for
+     * @param threads    the number of generator threads
+     * @return the scheduler, not yet started
+     */
+    private static TickScheduler createTickScheduler(List<Integer> patientIds, int threads) {
+        TickScheduler tickScheduler = new TickScheduler(threads);
+        tickScheduler.addGroup(createEcgGenerator(), outputStrategy,
+                1, TimeUnit.SECONDS, patientIds);
+        tickScheduler.addGroup(new BloodSaturationDataGenerator(firstPatientId, patientCount, seed), outputStrategy,
+                1, TimeUnit.SECONDS, patientIds);
+        tickScheduler.addGroup(new BloodPressureDataGenerator(firstPatientId, patientCount, seed), outputStrategy,
+                1, TimeUnit.MINUTES, patientIds);
+        tickScheduler.addGroup(new BloodLevelsDataGenerator(firstPatientId, patientCount, seed), outputStrategy,
+                2, TimeUnit.MINUTES, patientIds);
+        tickScheduler.addGroup(new AlertGenerator(firstPatientId, patientCount, seed), outputStrategy,
+                20, TimeUnit.SECONDS, patientIds);
+        return tickScheduler;
+    }
+
     /**
      * Schedules a recurring task with the scheduler.
      *
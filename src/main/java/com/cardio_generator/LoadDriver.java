@@ -0,0 +1,166 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Generates readings at the rate a {@link LoadProfile} asks for, instead of at the
+ * natural period of each data type.
+ *
+ * <p>Every second is split into slices. Each slice owes the target rate times the slice
+ * length in readings, shared between the generators by weight, and the driver walks the
+ * patients round robin until each generator has produced its share. The readings of a
+ * slice are sent to the output as one batch. Shares are counted in readings actually
+ * produced, so generators that do not output on every call (alerts) still add up, and
+ * one that outputs a block per call (the ECG waveform, whose block covers the time since
+ * the patient's last visit) carries what it produced beyond its share into the next
+ * slices instead of exceeding the target rate. When
+ * the output or the CPU cannot keep up, slices run late and back to back; the driver
+ * then reports how far it has fallen behind the target.
+ */
+public class LoadDriver {
+    private static final int SLICES_PER_SECOND = 10;
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(1) / SLICES_PER_SECOND;
+    private static final int FLUSH_SIZE = 4096;
+
+    private final LoadProfile profile;
+    private final OutputStrategy outputStrategy;
+    private final int[] patientIds;
+    private final List<Stream> streams = new ArrayList<>();
+    private final OutputBatch batch = new OutputBatch(FLUSH_SIZE);
+    private double totalWeight;
+
+    private long produced;
+    private double expected;
+
+    /**
+     * Constructs a driver.
+     *
+     * @param profile        the target rate over time
+     * @param outputStrategy the strategy the readings are output to
+     * @param patientIds     the patients to generate data for, in round robin order
+     */
+    public LoadDriver(LoadProfile profile, OutputStrategy outputStrategy, List<Integer> patientIds) {
+        this.profile = profile;
+        this.outputStrategy = outputStrategy;
+        this.patientIds = patientIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Adds a generator with its share of the load.
+     *
+     * @param generator the generator
+     * @param weight    its share of the readings relative to the other generators; 0 disables it
+     */
+    public void addGenerator(PatientDataGenerator generator, double weight) {
+        if (weight > 0) {
+            streams.add(new Stream(generator, weight));
+            totalWeight += weight;
+        }
+    }
+
+    /**
+     * Generates readings on the calling thread until the time is up.
+     *
+     * @param durationSeconds how long to run, or a negative value to run until interrupted
+     * @param reportSeconds   how often to print the achieved rate
+     */
+    public void run(long durationSeconds, long reportSeconds) {
+        long start = System.nanoTime();
+        long slices = durationSeconds < 0 ? Long.MAX_VALUE : durationSeconds * SLICES_PER_SECOND;
+        long slicesPerReport = Math.max(1, reportSeconds * SLICES_PER_SECOND);
+        long reportProduced = 0;
+        double reportExpected = 0;
+
+        for (long slice = 0; slice < slices && !Thread.currentThread().isInterrupted(); slice++) {
+            long wait = start + slice * SLICE_NANOS - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            runSlice(profile.getTargetRate((double) slice / SLICES_PER_SECOND) / SLICES_PER_SECOND);
+
+            if ((slice + 1) % slicesPerReport == 0) {
+                double seconds = (double) slicesPerReport / SLICES_PER_SECOND;
+                printReport((expected - reportExpected) / seconds, (produced - reportProduced) / seconds);
+                reportProduced = produced;
+                reportExpected = expected;
+            }
+        }
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.out.printf("Load test %s finished after %.1f s:%n", profile, seconds);
+        printReport(expected / seconds, produced / seconds);
+    }
+
+    /**
+     * Returns the number of readings produced so far.
+     *
+     * @return the produced reading count
+     */
+    public long getProducedCount() {
+        return produced;
+    }
+
+    /**
+     * Returns the number of readings the profile asked for so far.
+     *
+     * @return the target reading count
+     */
+    public long getTargetCount() {
+        return Math.round(expected);
+    }
+
+    private void runSlice(double sliceTarget) {
+        expected += sliceTarget;
+        long timestamp = System.currentTimeMillis();
+        for (Stream stream : streams) {
+            double share = sliceTarget * stream.weight / totalWeight;
+            // Owe at most one second of readings, so a stalled generator does not burst later
+            stream.owed = Math.min(stream.owed + share, share * SLICES_PER_SECOND + 1);
+            // Stop when a whole round of patients produced nothing, e.g. no alert changed
+            for (int idle = 0; stream.owed >= 1 && idle < patientIds.length; ) {
+                int before = batch.size();
+                stream.generator.generate(patientIds, stream.cursor, stream.cursor + 1, timestamp, batch);
+                stream.cursor = (stream.cursor + 1) % patientIds.length;
+                int generated = batch.size() - before;
+                stream.owed -= generated;
+                idle = generated == 0 ? idle + 1 : 0;
+                if (batch.size() >= FLUSH_SIZE) {
+                    flush();
+                }
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            produced += batch.size();
+            outputStrategy.output(batch);
+            batch.clear();
+        }
+    }
+
+    private void printReport(double targetRate, double achievedRate) {
+        double percent = targetRate > 0 ? 100.0 * achievedRate / targetRate : 100.0;
+        System.out.printf("Load: target %.0f/s, achieved %.0f/s (%.1f%%), %d readings behind in total%n",
+                targetRate, achievedRate, percent, Math.max(0, getTargetCount() - produced));
+    }
+
+    private static class Stream {
+        private final PatientDataGenerator generator;
+        private final double weight;
+        private double owed;
+        private int cursor;
+
+        Stream(PatientDataGenerator generator, double weight) {
+            this.generator = generator;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.cardio_generator;
+
+/**
+ * A target rate of readings per second that changes over the course of a load test.
+ *
+ * <p>Profiles are given on the command line as one of:
+ * <ul>
+ *   <li>{@code constant:<rate>}, e.g. {@code constant:5000};</li>
+ *   <li>{@code ramp:<from>-<to>/<time>}, rising linearly and then holding, e.g.
+ *       {@code ramp:1000-50000/5m};</li>
+ *   <li>{@code step:<rate>,<rate>,.../<time>}, holding each rate for the given time and
+ *       then the last one, e.g. {@code step:1000,5000,20000/30s};</li>
+ *   <li>{@code burst:<base>/<peak>/<length>/<every>}, the base rate with a burst at the
+ *       peak rate at the start of every period, e.g. {@code burst:2000/20000/5s/60s}.</li>
+ * </ul>
+ */
+public class LoadProfile {
+    private enum Shape { CONSTANT, RAMP, STEP, BURST }
+
+    private final Shape shape;
+    private final double[] rates;
+    private final long lengthSeconds;
+    private final long periodSeconds;
+    private final String description;
+
+    private LoadProfile(Shape shape, double[] rates, long lengthSeconds, long periodSeconds, String description) {
+        this.shape = shape;
+        this.rates = rates;
+        this.lengthSeconds = Math.max(1, lengthSeconds);
+        this.periodSeconds = Math.max(1, periodSeconds);
+        this.description = description;
+    }
+
+    /**
+     * Parses a profile.
+     *
+     * @param spec the profile, in one of the forms listed above
+     * @return the profile
+     * @throws IllegalArgumentException if the profile is not valid
+     */
+    public static LoadProfile parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Load profile needs a shape, e.g. constant:5000");
+        }
+        String[] parts = spec.substring(colon + 1).split("/");
+        try {
+            switch (spec.substring(0, colon)) {
+                case "constant":
+                    return new LoadProfile(Shape.CONSTANT, new double[] {rate(parts[0])}, 1, 1, spec);
+                case "ramp": {
+                    String[] range = parts[0].split("-");
+                    return new LoadProfile(Shape.RAMP, new double[] {rate(range[0]), rate(range[1])},
+                            HealthDataSimulator.parseDuration(parts[1]), 1, spec);
+                }
+                case "step": {
+                    String[] steps = parts[0].split(",");
+                    double[] stepRates = new double[steps.length];
+                    for (int i = 0; i < steps.length; i++) {
+                        stepRates[i] = rate(steps[i]);
+                    }
+                    return new LoadProfile(Shape.STEP, stepRates, HealthDataSimulator.parseDuration(parts[1]), 1, spec);
+                }
+                case "burst":
+                    return new LoadProfile(Shape.BURST, new double[] {rate(parts[0]), rate(parts[1])},
+                            HealthDataSimulator.parseDuration(parts[2]), HealthDataSimulator.parseDuration(parts[3]),
+                            spec);
+                default:
+                    throw new IllegalArgumentException("Unknown load profile shape: " + spec.substring(0, colon));
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Incomplete load profile: " + spec);
+        }
+    }
+
+    /**
+     * Returns the target rate at a point of the test.
+     *
+     * @param elapsedSeconds the time since the start of the test in seconds
+     * @return the target in readings per second
+     */
+    public double getTargetRate(double elapsedSeconds) {
+        switch (shape) {
+            case RAMP:
+                double progress = Math.min(1.0, elapsedSeconds / lengthSeconds);
+                return rates[0] + (rates[1] - rates[0]) * progress;
+            case STEP:
+                int step = (int) Math.min(rates.length - 1, (long) elapsedSeconds / lengthSeconds);
+                return rates[step];
+            case BURST:
+                return elapsedSeconds % periodSeconds < lengthSeconds ? rates[1] : rates[0];
+            default:
+                return rates[0];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private static double rate(String value) {
+        double rate = Double.parseDouble(value);
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rates cannot be negative: " + value);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,148 @@
+package com.cardio_generator;
+
+import java.util.Arrays;
+
+/**
+ * The clinical events a scenario injects into the generated data, and the share of the
+ * patients that is going through each of them at any time.
+ *
+ * <p>The generators keep their values in healthy ranges, so on their own they hardly
+ * ever set off the alert strategies. A script such as
+ * {@code hypoxemia=0.05,bp-trend=0.02,tachycardia=0.1/5m,manual-alert=0.01} makes the
+ * given share of the cohort be in an episode of each event, optionally with an episode
+ * length other than the default. A share of 1 keeps every patient in the episode all
+ * the time, and {@code worst-case} does so for all events.
+ */
+public class ScenarioScript {
+
+    /**
+     * An episode that can be injected, with its default length.
+     */
+    public enum Event {
+        /** Saturation drops below 92%. */
+        HYPOXEMIA("hypoxemia", 10 * 60),
+        /** Blood pressure rises or falls by 15/10 mmHg per hour. */
+        BP_TREND("bp-trend", 3 * 60 * 60),
+        /** The ECG readings report a heart rate of 110 to 180 bpm. */
+        TACHYCARDIA("tachycardia", 2 * 60),
+        /** The patient presses the alert button and it is resolved when the episode ends. */
+        MANUAL_ALERT("manual-alert", 5 * 60);
+
+        private final String name;
+        private final long defaultSeconds;
+
+        Event(String name, long defaultSeconds) {
+            this.name = name;
+            this.defaultSeconds = defaultSeconds;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Looks up an event by its name in scripts.
+         *
+         * @param name the name, e.g. "bp-trend"
+         * @return the event, or {@code null} if the name is unknown
+         */
+        public static Event fromName(String name) {
+            for (Event event : values()) {
+                if (event.name.equals(name)) {
+                    return event;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final double[] shares = new double[Event.values().length];
+    private final long[] durations = new long[Event.values().length];
+    private final String description;
+
+    private ScenarioScript(String description) {
+        this.description = description;
+        for (Event event : Event.values()) {
+            durations[event.ordinal()] = event.defaultSeconds;
+        }
+    }
+
+    /**
+     * Parses a script.
+     *
+     * @param spec comma separated {@code <event>=<share>[/<length>]} entries, or {@code worst-case}
+     * @return the script
+     * @throws IllegalArgumentException if the script is not valid
+     */
+    public static ScenarioScript parse(String spec) {
+        ScenarioScript script = new ScenarioScript(spec);
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            } else if (trimmed.equals("worst-case")) {
+                Arrays.fill(script.shares, 1.0);
+                continue;
+            }
+            String[] parts = trimmed.split("[=/]");
+            Event event = Event.fromName(parts[0].trim());
+            if (event == null || parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Invalid scenario entry: " + trimmed);
+            }
+            try {
+                double share = Double.parseDouble(parts[1].trim());
+                if (share < 0 || share > 1) {
+                    throw new IllegalArgumentException("Scenario shares must be between 0 and 1: " + trimmed);
+                }
+                script.shares[event.ordinal()] = share;
+                if (parts.length == 3) {
+                    long seconds = HealthDataSimulator.parseDuration(parts[2].trim());
+                    script.durations[event.ordinal()] = Math.max(1, seconds);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid scenario entry: " + trimmed);
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Returns the share of the patients in an episode of the event at any time.
+     *
+     * @param event the event
+     * @return the share, between 0 and 1
+     */
+    public double getShare(Event event) {
+        return shares[event.ordinal()];
+    }
+
+    /**
+     * Returns the length of an episode of the event.
+     *
+     * @param event the event
+     * @return the length in seconds
+     */
+    public long getDurationSeconds(Event event) {
+        return durations[event.ordinal()];
+    }
+
+    /**
+     * Returns the chance per second that a patient outside an episode starts one, so that
+     * on average the share of the patients in an episode matches the script.
+     *
+     * @param event the event
+     * @return the onset rate per second, infinite for a share of 1
+     */
+    public double getOnsetRate(Event event) {
+        double share = getShare(event);
+        if (share >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return share / (getDurationSeconds(event) * (1 - share));
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,200 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Drives the generators for large patient counts from a fixed number of threads.
+ *
+ * <p>Instead of one periodic task per patient and data type, every generator forms a
+ * group with a hashed timing wheel of one-second ticks. A group with a period of
+ * {@code p} seconds has {@code p} slots and every patient sits in one slot, so each
+ * tick only visits the patients due in that tick and the load is spread evenly over
+ * the period. The tick thread splits the due patients into chunks that a small worker
+ * pool processes, and waits for them before the next tick, so work never piles up.
+ * Each chunk is generated in one pass with
+ * {@link PatientDataGenerator#generate(int[], int, int, long, OutputBatch)}, with the
+ * clock read once per tick, and handed to the output as a single batch.
+ * Memory is one int per patient and group, and the thread count does not depend on
+ * the number of patients.
+ */
+public class TickScheduler {
+    private static final long TICK_MILLIS = 1000;
+    private static final int CHUNK_SIZE = 1024;
+
+    private final List<Group> groups = new ArrayList<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService ticker;
+    private final AtomicLong tickCount = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final ThreadLocal<OutputBatch> batches = ThreadLocal.withInitial(() -> new OutputBatch(CHUNK_SIZE));
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param threads the number of worker threads that run the generators
+     */
+    public TickScheduler(int threads) {
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads),
+                r -> new Thread(r, "generator-" + workerNumber.incrementAndGet()));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "generator-tick"));
+    }
+
+    /**
+     * Adds a generator that runs for every patient once per period.
+     *
+     * @param generator      the generator
+     * @param outputStrategy the strategy the generator outputs to
+     * @param period         the time between two readings of the same patient
+     * @param timeUnit       the time unit of the period, at least one second in total
+     * @param patientIds     the patients, in the order they are spread over the period
+     */
+    public void addGroup(PatientDataGenerator generator, OutputStrategy outputStrategy,
+                         long period, TimeUnit timeUnit, List<Integer> patientIds) {
+        int periodTicks = (int) Math.max(1, timeUnit.toMillis(period) / TICK_MILLIS);
+        int[][] slots = new int[periodTicks][];
+        int[] slotSizes = new int[periodTicks];
+        for (int i = 0; i < patientIds.size(); i++) {
+            slotSizes[i % periodTicks]++;
+        }
+        for (int s = 0; s < periodTicks; s++) {
+            slots[s] = new int[slotSizes[s]];
+        }
+        for (int i = 0; i < patientIds.size(); i++) {
+            slots[i % periodTicks][i / periodTicks] = patientIds.get(i);
+        }
+        groups.add(new Group(generator, outputStrategy, slots));
+    }
+
+    /**
+     * Starts ticking once per second in wall-clock time.
+     */
+    public void start() {
+        ticker.scheduleAtFixedRate(() -> {
+            long started = System.currentTimeMillis();
+            runTick(tickCount.getAndIncrement(), started);
+            if (System.currentTimeMillis() - started > TICK_MILLIS) {
+                overruns.incrementAndGet();
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a number of ticks on a simulated clock, on the calling thread, and returns
+     * when they are done. Tick {@code n} is stamped {@code startTimestamp + n} seconds.
+     *
+     * <p>With a positive speed, ticks are paced so simulated time passes {@code speed}
+     * times faster than wall-clock time. Otherwise every tick starts as soon as the
+     * previous one has been output, so the simulation runs as fast as the output
+     * strategy can absorb the data.
+     *
+     * @param startTimestamp the simulated time of the first tick in milliseconds
+     * @param ticks          the number of ticks, one simulated second each
+     * @param speed          how many times faster than real time to run, or 0 for unthrottled
+     */
+    public void runSimulated(long startTimestamp, long ticks, double speed) {
+        long wallStart = System.nanoTime();
+        for (long tick = 0; tick < ticks && !Thread.currentThread().isInterrupted(); tick++) {
+            if (speed > 0) {
+                long due = wallStart + (long) (tick * TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (tick > 0 && -wait > TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS) / speed) {
+                    overruns.incrementAndGet();
+                }
+            }
+            runTick(tick, startTimestamp + tick * TICK_MILLIS);
+            tickCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs the patients due in one tick of every group and waits until they are done.
+     *
+     * @param tick      the number of the tick, counted from zero
+     * @param timestamp the time the readings of this tick are stamped with, in milliseconds
+     */
+    public void runTick(long tick, long timestamp) {
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (Group group : groups) {
+            int[] due = group.slots[(int) (tick % group.slots.length)];
+            for (int from = 0; from < due.length; from += CHUNK_SIZE) {
+                int start = from;
+                int end = Math.min(due.length, from + CHUNK_SIZE);
+                chunks.add(() -> {
+                    OutputBatch batch = batches.get();
+                    batch.clear();
+                    group.generator.generate(due, start, end, timestamp, batch);
+                    if (!batch.isEmpty()) {
+                        group.outputStrategy.output(batch);
+                    }
+                    return null;
+                });
+            }
+        }
+        try {
+            for (Future<Void> chunk : workers.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("An error occurred in generator tick " + tick);
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of ticks run so far.
+     *
+     * @return the tick count
+     */
+    public long getTickCount() {
+        return tickCount.get();
+    }
+
+    /**
+     * Returns the number of ticks that took longer than a tick to run.
+     *
+     * @return the overrun count
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * Stops ticking and shuts the worker threads down.
+     */
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
+
+    private static class Group {
+        private final PatientDataGenerator generator;
+        private final OutputStrategy outputStrategy;
+        private final int[][] slots;
+
+        Group(PatientDataGenerator generator, OutputStrategy outputStrategy, int[][] slots) {
+            this.generator = generator;
+            this.outputStrategy = outputStrategy;
+            this.slots = slots;
+        }
+    }
+}
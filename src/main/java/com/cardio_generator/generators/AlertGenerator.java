@@ -1,8 +1,10 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
     /**
      * {@code AlertGenerator} is an implementation of the {@code PatientDataGenerator} interface  that generates a random AlertState
      * for each patient which it then generates data with.
@@ -11,13 +13,41 @@ import com.cardio_generator.outputs.OutputStrategy;
      */
 public class AlertGenerator implements PatientDataGenerator {
 
-    //Changed constant name in ALL_CAPS_WITH_UNDERSCORES
-    public static final Random RANDOM_GENERATOR = new Random();
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
     // Changed variable name to lowerCamelCase
     private boolean[] alertStates; // false = resolved, true = pressed
 
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
     public AlertGenerator(int patientCount) {
-        alertStates = new boolean[patientCount + 1];
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose alerts are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the run
+     */
+    public AlertGenerator(int patientCount, long seed) {
+        this(1, patientCount, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose alerts are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public AlertGenerator(int firstPatientId, int patientCount, long seed) {
+        this.firstPatientId = firstPatientId;
+        alertStates = new boolean[patientCount];
+        randoms = PatientRandoms.create(seed, "Alert", firstPatientId, patientCount);
     }
         /**
          * Prints out the data
@@ -28,27 +58,49 @@ public class AlertGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
-            if (alertStates[patientId]) {
-                if (RANDOM_GENERATOR.nextDouble() < 0.9) { // 90% chance to resolve
-                    alertStates[patientId] = false;
-                    // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
-                }
-            } else {
-                // Changed variable name to lowerCamelCase
-                double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
-                double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
-                boolean alertTriggered = RANDOM_GENERATOR.nextDouble() < p;
-
-                if (alertTriggered) {
-                    alertStates[patientId] = true;
-                    // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
-                }
+            if (updateAlertState(patientId)) {
+                // Output the alert
+                outputStrategy.output(patientId, System.currentTimeMillis(), ReadingType.ALERT.getCode(),
+                        alertStates[patientId - firstPatientId] ? 1 : 0);
             }
         } catch (Exception e) {
             System.err.println("An error occurred while generating alert data for patient " + patientId);
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            if (updateAlertState(patientId)) {
+                batch.add(patientId, ReadingType.ALERT, timestamp, alertStates[patientId - firstPatientId] ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Randomly triggers or resolves the alert of a patient.
+     *
+     * @param patientId the unique ID of the patient
+     * @return whether the alert state changed
+     */
+    private boolean updateAlertState(int patientId) {
+        int index = patientId - firstPatientId;
+        if (alertStates[index]) {
+            if (randoms[index].nextDouble() < 0.9) { // 90% chance to resolve
+                alertStates[index] = false;
+                return true;
+            }
+        } else {
+            // Changed variable name to lowerCamelCase
+            double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
+            double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
+            if (randoms[index].nextDouble() < p) {
+                alertStates[index] = true;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,23 +1,55 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose readings are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the run
+     */
+    public BloodLevelsDataGenerator(int patientCount, long seed) {
+        this(1, patientCount, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose readings are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public BloodLevelsDataGenerator(int firstPatientId, int patientCount, long seed) {
+        this.firstPatientId = firstPatientId;
+        randoms = PatientRandoms.create(seed, "BloodLevels", firstPatientId, patientCount);
         // Initialize arrays to store baseline values for each patient
-        baselineCholesterol = new double[patientCount + 1];
-        baselineWhiteCells = new double[patientCount + 1];
-        baselineRedCells = new double[patientCount + 1];
+        baselineCholesterol = new double[patientCount];
+        baselineWhiteCells = new double[patientCount];
+        baselineRedCells = new double[patientCount];
 
         // Generate baseline values for each patient
-        for (int i = 1; i <= patientCount; i++) {
+        for (int i = 0; i < patientCount; i++) {
+            SplittableRandom random = randoms[i];
             baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
             baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
             baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
@@ -26,20 +58,37 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        int index = patientId - firstPatientId;
         try {
+            SplittableRandom random = randoms[index];
             // Generate values around the baseline for realism
-            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
-            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
-            double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
+            double cholesterol = baselineCholesterol[index] + (random.nextDouble() - 0.5) * 10; // Small variation
+            double whiteCells = baselineWhiteCells[index] + (random.nextDouble() - 0.5) * 1; // Small variation
+            double redCells = baselineRedCells[index] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
-                    Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            long timestamp = System.currentTimeMillis();
+            outputStrategy.output(patientId, timestamp, ReadingType.CHOLESTEROL.getCode(), cholesterol);
+            outputStrategy.output(patientId, timestamp, ReadingType.WHITE_BLOOD_CELLS.getCode(), whiteCells);
+            outputStrategy.output(patientId, timestamp, ReadingType.RED_BLOOD_CELLS.getCode(), redCells);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            int index = patientId - firstPatientId;
+            SplittableRandom random = randoms[index];
+            batch.add(patientId, ReadingType.CHOLESTEROL, timestamp,
+                    baselineCholesterol[index] + (random.nextDouble() - 0.5) * 10);
+            batch.add(patientId, ReadingType.WHITE_BLOOD_CELLS, timestamp,
+                    baselineWhiteCells[index] + (random.nextDouble() - 0.5) * 1);
+            batch.add(patientId, ReadingType.RED_BLOOD_CELLS, timestamp,
+                    baselineRedCells[index] + (random.nextDouble() - 0.5) * 0.2);
+        }
+    }
 }
@@ -1,46 +1,93 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
     public BloodPressureDataGenerator(int patientCount) {
-        lastSystolicValues = new int[patientCount + 1];
-        lastDiastolicValues = new int[patientCount + 1];
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose readings are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the run
+     */
+    public BloodPressureDataGenerator(int patientCount, long seed) {
+        this(1, patientCount, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose readings are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public BloodPressureDataGenerator(int firstPatientId, int patientCount, long seed) {
+        this.firstPatientId = firstPatientId;
+        randoms = PatientRandoms.create(seed, "BloodPressure", firstPatientId, patientCount);
+        lastSystolicValues = new int[patientCount];
+        lastDiastolicValues = new int[patientCount];
 
         // Initialize with baseline values for each patient
-        for (int i = 1; i <= patientCount; i++) {
-            lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
-            lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
+        for (int i = 0; i < patientCount; i++) {
+            lastSystolicValues[i] = 110 + randoms[i].nextInt(20); // Random baseline between 110 and 130
+            lastDiastolicValues[i] = 70 + randoms[i].nextInt(15); // Random baseline between 70 and 85
         }
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        int index = patientId - firstPatientId;
         try {
-            int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
-            int diastolicVariation = random.nextInt(5) - 2;
-            int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
-            int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
-            // Ensure the blood pressure stays within a realistic and safe range
-            newSystolicValue = Math.min(Math.max(newSystolicValue, 90), 180);
-            newDiastolicValue = Math.min(Math.max(newDiastolicValue, 60), 120);
-            lastSystolicValues[patientId] = newSystolicValue;
-            lastDiastolicValues[patientId] = newDiastolicValue;
-
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
-                    Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
-                    Double.toString(newDiastolicValue));
+            updatePressure(patientId);
+            long timestamp = System.currentTimeMillis();
+            outputStrategy.output(patientId, timestamp, ReadingType.SYSTOLIC_PRESSURE.getCode(),
+                    lastSystolicValues[index]);
+            outputStrategy.output(patientId, timestamp, ReadingType.DIASTOLIC_PRESSURE.getCode(),
+                    lastDiastolicValues[index]);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            int index = patientId - firstPatientId;
+            updatePressure(patientId);
+            batch.add(patientId, ReadingType.SYSTOLIC_PRESSURE, timestamp, lastSystolicValues[index]);
+            batch.add(patientId, ReadingType.DIASTOLIC_PRESSURE, timestamp, lastDiastolicValues[index]);
+        }
+    }
+
+    private void updatePressure(int patientId) {
+        int index = patientId - firstPatientId;
+        SplittableRandom random = randoms[index];
+        int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
+        int diastolicVariation = random.nextInt(5) - 2;
+        int newSystolicValue = lastSystolicValues[index] + systolicVariation;
+        int newDiastolicValue = lastDiastolicValues[index] + diastolicVariation;
+        // Ensure the blood pressure stays within a realistic and safe range
+        lastSystolicValues[index] = Math.min(Math.max(newSystolicValue, 90), 180);
+        lastDiastolicValues[index] = Math.min(Math.max(newDiastolicValue, 60), 120);
+    }
 }
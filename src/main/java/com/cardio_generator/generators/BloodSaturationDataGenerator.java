@@ -1,8 +1,10 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
 
     /**
      * {@code BloodSaturationDataGenerator} is an implementation of the {@code PatientDataGenerator} interface that generates a random BloodSaturation
@@ -12,15 +14,44 @@ import com.cardio_generator.outputs.OutputStrategy;
      */
 
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
     private int[] lastSaturationValues;
 
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
     public BloodSaturationDataGenerator(int patientCount) {
-        lastSaturationValues = new int[patientCount + 1];
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose readings are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the run
+     */
+    public BloodSaturationDataGenerator(int patientCount, long seed) {
+        this(1, patientCount, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose readings are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public BloodSaturationDataGenerator(int firstPatientId, int patientCount, long seed) {
+        this.firstPatientId = firstPatientId;
+        randoms = PatientRandoms.create(seed, "Saturation", firstPatientId, patientCount);
+        lastSaturationValues = new int[patientCount];
 
         // Initialize with baseline saturation values for each patient
-        for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+        for (int i = 0; i < patientCount; i++) {
+            lastSaturationValues[i] = 95 + randoms[i].nextInt(6); // Initializes with a value between 95 and 100
         }
     }
         /**
@@ -32,18 +63,32 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
-            // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
-            int newSaturationValue = lastSaturationValues[patientId] + variation;
-
-            // Ensure the saturation stays within a realistic and healthy range
-            newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
-            lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
-                    Double.toString(newSaturationValue) + "%");
+            int newSaturationValue = updateSaturation(patientId);
+            outputStrategy.output(patientId, System.currentTimeMillis(), ReadingType.SATURATION.getCode(),
+                    newSaturationValue);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            batch.add(patientId, ReadingType.SATURATION, timestamp, updateSaturation(patientId));
+        }
+    }
+
+    private int updateSaturation(int patientId) {
+        int index = patientId - firstPatientId;
+        // Simulate blood saturation values
+        int variation = randoms[index].nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+        int newSaturationValue = lastSaturationValues[index] + variation;
+
+        // Ensure the saturation stays within a realistic and healthy range
+        newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
+        lastSaturationValues[index] = newSaturationValue;
+        return newSaturationValue;
+    }
 }
@@ -1,18 +1,49 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
 
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
     public ECGDataGenerator(int patientCount) {
-        lastEcgValues = new double[patientCount + 1];
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose readings are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param seed         the seed of the run
+     */
+    public ECGDataGenerator(int patientCount, long seed) {
+        this(1, patientCount, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose readings are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public ECGDataGenerator(int firstPatientId, int patientCount, long seed) {
+        this.firstPatientId = firstPatientId;
+        randoms = PatientRandoms.create(seed, "ECG", firstPatientId, patientCount);
+        lastEcgValues = new double[patientCount];
         // Initialize the last ECG value for each patient
-        for (int i = 1; i <= patientCount; i++) {
+        for (int i = 0; i < patientCount; i++) {
             lastEcgValues[i] = 0; // Initial ECG value can be set to 0
         }
     }
@@ -21,19 +52,31 @@ public class ECGDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
-            lastEcgValues[patientId] = ecgValue;
+            long timestamp = System.currentTimeMillis();
+            double ecgValue = simulateEcgWaveform(patientId, timestamp);
+            outputStrategy.output(patientId, timestamp, ReadingType.ECG.getCode(), ecgValue);
+            lastEcgValues[patientId - firstPatientId] = ecgValue;
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            double ecgValue = simulateEcgWaveform(patientId, timestamp);
+            lastEcgValues[patientId - firstPatientId] = ecgValue;
+            batch.add(patientId, ReadingType.ECG, timestamp, ecgValue);
+        }
+    }
+
+    private double simulateEcgWaveform(int patientId, long timestamp) {
         // Simplified ECG waveform generation based on sinusoids
+        SplittableRandom random = randoms[patientId - firstPatientId];
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double t = timestamp / 1000.0; // Use the reading time to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
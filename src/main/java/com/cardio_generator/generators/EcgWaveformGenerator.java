@@ -0,0 +1,182 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
+
+/**
+ * {@code EcgWaveformGenerator} is an implementation of the {@code PatientDataGenerator}
+ * interface that generates an ECG trace at a clinical sample rate, 250 to 500 Hz.
+ *
+ * <p>One PQRST beat is precomputed as a sum of Gaussian waves (in mV) and each sample
+ * is read from that template by linear interpolation at the patient's position in the
+ * current beat. Every beat gets a new RR interval around the patient's resting heart
+ * rate, with respiratory sinus arrhythmia and random variability, and a slow baseline
+ * wander and a little noise are added on top.
+ *
+ * <p>Samples lie on a fixed grid of {@code 1000 / sampleRate} ms. Each call generates,
+ * in one block, the samples due since the patient's previous call up to the reading
+ * time, so the number of samples follows the interval between calls: a call per second
+ * gives a second of samples, a call per 100 ms a tenth of that. The first call, and a
+ * call after a gap of more than a second, generate the last second only.
+ */
+public class EcgWaveformGenerator implements PatientDataGenerator {
+    private static final int TEMPLATE_SIZE = 1024;
+    private static final double[] TEMPLATE = createTemplate();
+    private static final double BREATHING_PERIOD_SECONDS = 4.0;
+
+    private final int sampleRate;
+    private final int firstPatientId;
+    private final SplittableRandom[] randoms;
+    private final double[] meanRrIntervals;
+    private final double[] rrIntervals;
+    private final double[] beatPhases;
+    private final long[] nextSamples;
+    private final ThreadLocal<OutputBatch> blocks;
+
+    /**
+     * Constructs a generator with a random seed.
+     *
+     * @param patientCount the number of patients
+     * @param sampleRate   the samples per second, between 250 and 500
+     */
+    public EcgWaveformGenerator(int patientCount, int sampleRate) {
+        this(patientCount, sampleRate, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * Constructs a generator whose samples are reproducible for the given seed.
+     *
+     * @param patientCount the number of patients
+     * @param sampleRate   the samples per second, between 250 and 500
+     * @param seed         the seed of the run
+     */
+    public EcgWaveformGenerator(int patientCount, int sampleRate, long seed) {
+        this(1, patientCount, sampleRate, seed);
+    }
+
+    /**
+     * Constructs a generator for a range of patient IDs whose samples are reproducible for the given seed.
+     *
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param sampleRate     the samples per second, between 250 and 500
+     * @param seed           the seed of the run
+     */
+    public EcgWaveformGenerator(int firstPatientId, int patientCount, int sampleRate, long seed) {
+        if (sampleRate < 250 || sampleRate > 500) {
+            throw new IllegalArgumentException("ECG sample rate must be between 250 and 500 Hz: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.firstPatientId = firstPatientId;
+        this.randoms = PatientRandoms.create(seed, "ECGWaveform", firstPatientId, patientCount);
+        this.meanRrIntervals = new double[patientCount];
+        this.rrIntervals = new double[patientCount];
+        this.beatPhases = new double[patientCount];
+        this.nextSamples = new long[patientCount];
+        this.blocks = ThreadLocal.withInitial(() -> new OutputBatch(sampleRate));
+
+        for (int i = 0; i < patientCount; i++) {
+            meanRrIntervals[i] = 60.0 / (60 + randoms[i].nextDouble() * 20); // Resting rate of 60 to 80 bpm
+            rrIntervals[i] = meanRrIntervals[i];
+            beatPhases[i] = randoms[i].nextDouble(); // Patients do not beat in step
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void generate(int patientId, OutputStrategy outputStrategy) {
+        try {
+            OutputBatch block = blocks.get();
+            block.clear();
+            generateBlock(patientId, System.currentTimeMillis(), block);
+            outputStrategy.output(block);
+        } catch (Exception e) {
+            System.err.println("An error occurred while generating the ECG waveform for patient " + patientId);
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        for (int i = from; i < to; i++) {
+            generateBlock(patientIds[i], timestamp, batch);
+        }
+    }
+
+    /**
+     * Appends the samples due since the previous call, at most a second of them, up to
+     * the given time. Sample {@code n} lies at {@code n * 1000 / sampleRate} ms.
+     */
+    private void generateBlock(int patientId, long timestamp, OutputBatch batch) {
+        int index = patientId - firstPatientId;
+        long lastSample = Math.floorDiv(timestamp * sampleRate, 1000L);
+        long firstSample = Math.max(nextSamples[index], lastSample - sampleRate + 1);
+        if (firstSample > lastSample) {
+            return;
+        }
+        SplittableRandom random = randoms[index];
+        double secondsPerSample = 1.0 / sampleRate;
+        double phase = beatPhases[index];
+        double rr = rrIntervals[index];
+        double wander = 0.05 * Math.sin(2 * Math.PI * 0.3 * (timestamp / 1000.0));
+
+        for (long n = firstSample; n <= lastSample; n++) {
+            long sampleTime = n * 1000L / sampleRate;
+            double position = phase * TEMPLATE_SIZE;
+            int point = (int) position;
+            double value = TEMPLATE[point] + (TEMPLATE[point + 1] - TEMPLATE[point]) * (position - point);
+            batch.add(patientId, ReadingType.ECG, sampleTime, value + wander + (random.nextDouble() - 0.5) * 0.02);
+
+            phase += secondsPerSample / rr;
+            if (phase >= 1) {
+                phase -= 1;
+                rr = nextRrInterval(patientId, random, sampleTime);
+            }
+        }
+        beatPhases[index] = phase;
+        rrIntervals[index] = rr;
+        nextSamples[index] = lastSample + 1;
+    }
+
+    /**
+     * Picks the length of the next beat: the resting interval, shortened while breathing
+     * in and lengthened while breathing out, plus a small random variation.
+     */
+    private double nextRrInterval(int patientId, SplittableRandom random, long timestamp) {
+        double mean = meanRrIntervals[patientId - firstPatientId];
+        double breathing = Math.sin(2 * Math.PI * (timestamp / 1000.0) / BREATHING_PERIOD_SECONDS);
+        double variation = (random.nextDouble() - random.nextDouble()) * 0.04;
+        return mean * (1 + 0.04 * breathing + variation);
+    }
+
+    /**
+     * Computes one beat, from the start of the P wave to the end of the T wave, in mV.
+     * The extra last entry repeats the first so interpolation never wraps.
+     */
+    private static double[] createTemplate() {
+        // P, Q, R, S and T waves: amplitude (mV), centre and width as fractions of the beat
+        double[][] waves = {
+            {0.15, 0.20, 0.025},
+            {-0.12, 0.36, 0.010},
+            {1.20, 0.40, 0.012},
+            {-0.25, 0.44, 0.012},
+            {0.30, 0.68, 0.045},
+        };
+        double[] template = new double[TEMPLATE_SIZE + 1];
+        for (int i = 0; i < TEMPLATE_SIZE; i++) {
+            double x = (double) i / TEMPLATE_SIZE;
+            for (double[] wave : waves) {
+                double d = (x - wave[1]) / wave[2];
+                template[i] += wave[0] * Math.exp(-0.5 * d * d);
+            }
+        }
+        template[TEMPLATE_SIZE] = template[0];
+        return template;
+    }
+}
@@ -1,6 +1,8 @@
 package com.cardio_generator.generators;
 
+import com.cardio_generator.outputs.OutputBatch;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
 
 /**
  * Interface for generating patient health data.
@@ -17,4 +19,35 @@ public interface PatientDataGenerator {
      * @param outputStrategy the strategy to use for outputting the data generated
      */
     void generate(int patientId, OutputStrategy outputStrategy);
+
+    /**
+     * Generates health data for a range of patients in one pass, all with the same
+     * timestamp, and appends it to a batch instead of outputting it.
+     *
+     * <p>The default implementation calls {@link #generate(int, OutputStrategy)} for each
+     * patient and collects its output; the generators override it with a loop over their
+     * state arrays that creates no strings.
+     *
+     * @param patientIds the patients to generate data for
+     * @param from       the index of the first patient in {@code patientIds}
+     * @param to         the index after the last patient in {@code patientIds}
+     * @param timestamp  the time of the readings in milliseconds
+     * @param batch      the batch the readings are appended to
+     */
+    default void generate(int[] patientIds, int from, int to, long timestamp, OutputBatch batch) {
+        OutputStrategy collector = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long ignored, String label, String data) {
+                batch.add(patientId, ReadingType.fromLabel(label), timestamp, ReadingType.parseData(data));
+            }
+
+            @Override
+            public void output(int patientId, long ignored, int typeCode, double value) {
+                batch.add(patientId, ReadingType.requireCode(typeCode), timestamp, value);
+            }
+        };
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], collector);
+        }
+    }
 }
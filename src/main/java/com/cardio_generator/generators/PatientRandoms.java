@@ -0,0 +1,57 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates the random number streams the generators draw from.
+ *
+ * <p>Every generator gets one {@link SplittableRandom} per patient. A patient is only
+ * generated by one thread at a time, so the streams are never shared between threads
+ * and there is no contended seed to update. Each stream is derived from the run seed,
+ * the name of the generator and the patient ID alone, so the values of a patient do not
+ * depend on thread timing, on the other patients or on the order they are scheduled in:
+ * two runs with the same seed produce the same readings.
+ */
+public final class PatientRandoms {
+
+    private PatientRandoms() {
+    }
+
+    /**
+     * Creates one stream per patient of a range of patient IDs.
+     *
+     * @param seed           the seed of the run
+     * @param stream         the name of the generator, so that generators get independent streams
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @return the streams, index 0 belonging to the first patient
+     */
+    public static SplittableRandom[] create(long seed, String stream, int firstPatientId, int patientCount) {
+        long streamSeed = mix(seed ^ mix(stream.hashCode()));
+        SplittableRandom[] randoms = new SplittableRandom[patientCount];
+        for (int i = 0; i < patientCount; i++) {
+            long patientId = firstPatientId + i;
+            randoms[i] = new SplittableRandom(mix(streamSeed + patientId * 0x9E3779B97F4A7C15L));
+        }
+        return randoms;
+    }
+
+    /**
+     * Returns a fresh seed for runs that were not given one.
+     *
+     * @return a seed that differs between runs
+     */
+    public static long randomSeed() {
+        return mix(System.nanoTime() ^ System.currentTimeMillis() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Scrambles all bits of a value (the finaliser of SplitMix64), so nearby inputs give
+     * unrelated seeds.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
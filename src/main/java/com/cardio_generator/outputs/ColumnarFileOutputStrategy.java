@@ -0,0 +1,214 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ColumnarFileOutputStrategy} is an implementation of {@code OutputStrategy} that
+ * writes readings into a binary columnar file, laid out as described in
+ * {@link ColumnarFormat}.
+ *
+ * <p>Readings of all labels go to one file, {@code readings.<n>.hcb} in the output
+ * directory, numbered so that every run starts a new file. They are gathered in a block
+ * of primitive columns, which is sorted by patient and written when full, when the
+ * flush interval has passed and on {@link #close()}. Closing writes the block index, so
+ * readers can pick the blocks of a patient or time range without touching the others.
+ */
+public class ColumnarFileOutputStrategy implements OutputStrategy {
+    private static final int MAX = ColumnarFormat.MAX_BLOCK_READINGS;
+
+    private final int[] patientIds = new int[MAX];
+    private final byte[] types = new byte[MAX];
+    private final long[] timestamps = new long[MAX];
+    private final double[] values = new double[MAX];
+    private final long[] order = new long[MAX];
+    private final ByteBuffer block = ByteBuffer.allocateDirect(ColumnarFormat.blockBytes(MAX))
+            .order(ColumnarFormat.ORDER);
+    private ByteBuffer index = ByteBuffer.allocate(ColumnarFormat.INDEX_ENTRY_BYTES * 64).order(ColumnarFormat.ORDER);
+    private int count;
+    private int blockCount;
+    private long position;
+    private Path path;
+    private FileChannel channel;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Constructs the output and creates a new file in the directory.
+     *
+     * @param baseDirectory       the directory the file is written to
+     * @param flushIntervalMillis the longest time readings wait before their block is
+     *                            written, or 0 to only write full blocks and on close
+     */
+    public ColumnarFileOutputStrategy(String baseDirectory, long flushIntervalMillis) {
+        try {
+            Files.createDirectories(Paths.get(baseDirectory));
+            int number = 0;
+            do {
+                path = Paths.get(baseDirectory, "readings." + number++ + ColumnarFormat.EXTENSION);
+            } while (Files.exists(path));
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(ColumnarFormat.FILE_HEADER_BYTES).order(ColumnarFormat.ORDER);
+            header.putInt(ColumnarFormat.FILE_MAGIC).putInt(ColumnarFormat.VERSION).flip();
+            writeFully(header);
+        } catch (IOException e) {
+            System.err.println("Error creating binary output file in " + baseDirectory + ": " + e.getMessage());
+            channel = null;
+            return;
+        }
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "binary-output-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        ReadingType type = ReadingType.fromLabel(label);
+        if (type == null) {
+            System.err.println("Cannot write label " + label + " in the binary format");
+            return;
+        }
+        try {
+            output(patientId, timestamp, type.getCode(), ReadingType.parseData(data));
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot write data " + data + " in the binary format");
+        }
+    }
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, int typeCode, double value) {
+        add(patientId, typeCode, timestamp, value);
+    }
+
+    @Override
+    public synchronized void output(OutputBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            add(batch.getPatientId(i), batch.getType(i).getCode(), batch.getTimestamp(i), batch.getValue(i));
+        }
+    }
+
+    /**
+     * Writes the readings gathered so far as a block.
+     */
+    public synchronized void flush() {
+        if (count > 0) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the index, and closes the file. Readings that arrive
+     * afterwards are dropped.
+     */
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        if (channel == null) {
+            return;
+        }
+        flush();
+        try {
+            long indexOffset = position;
+            index.flip();
+            writeFully(index);
+            ByteBuffer trailer = ByteBuffer.allocate(ColumnarFormat.TRAILER_BYTES).order(ColumnarFormat.ORDER);
+            trailer.putLong(indexOffset).putInt(blockCount).putInt(ColumnarFormat.FOOTER_MAGIC).flip();
+            writeFully(trailer);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing binary output file " + path + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void add(int patientId, int typeCode, long timestamp, double value) {
+        if (channel == null) {
+            return;
+        }
+        patientIds[count] = patientId;
+        types[count] = (byte) typeCode;
+        timestamps[count] = timestamp;
+        values[count] = value;
+        if (++count == MAX) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Sorts the gathered readings by patient, keeping their order per patient, and
+     * writes them as one block.
+     */
+    private void writeBlock() {
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) patientIds[i] << 32) | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        int typeMask = 0;
+        int timestampsOffset = ColumnarFormat.timestampsOffset(count);
+        int valuesOffset = ColumnarFormat.valuesOffset(count);
+        int patientIdsOffset = ColumnarFormat.patientIdsOffset(count);
+        int typesOffset = ColumnarFormat.typesOffset(count);
+        int bytes = ColumnarFormat.blockBytes(count);
+        block.clear();
+        for (int k = 0; k < count; k++) {
+            int i = (int) order[k];
+            block.putLong(timestampsOffset + 8 * k, timestamps[i]);
+            block.putDouble(valuesOffset + 8 * k, values[i]);
+            block.putInt(patientIdsOffset + 4 * k, patientIds[i]);
+            block.put(typesOffset + k, types[i]);
+            minTimestamp = Math.min(minTimestamp, timestamps[i]);
+            maxTimestamp = Math.max(maxTimestamp, timestamps[i]);
+            typeMask |= 1 << types[i];
+        }
+        for (int p = typesOffset + count; p < bytes; p++) {
+            block.put(p, (byte) 0);
+        }
+        int minPatientId = (int) (order[0] >> 32);
+        int maxPatientId = (int) (order[count - 1] >> 32);
+        block.putInt(ColumnarFormat.BLOCK_MAGIC).putInt(count).putLong(minTimestamp).putLong(maxTimestamp)
+                .putInt(minPatientId).putInt(maxPatientId).putInt(typeMask).putInt(0);
+        block.position(0).limit(bytes);
+
+        try {
+            long offset = position;
+            writeFully(block);
+            if (index.remaining() < ColumnarFormat.INDEX_ENTRY_BYTES) {
+                index = ByteBuffer.allocate(index.capacity() * 2).order(ColumnarFormat.ORDER).put(index.flip());
+            }
+            index.putLong(offset).putInt(count).putInt(typeMask).putLong(minTimestamp).putLong(maxTimestamp)
+                    .putInt(minPatientId).putInt(maxPatientId);
+            blockCount++;
+        } catch (IOException e) {
+            System.err.println("Error writing to file " + path + ": " + e.getMessage());
+        }
+        count = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary columnar reading files written by {@link ColumnarFileOutputStrategy}
+ * and read by {@code FileDataReader}.
+ *
+ * <p>All numbers are little endian. A file starts with an 8 byte header (magic, version)
+ * followed by blocks of up to {@link #MAX_BLOCK_READINGS} readings. Every block has a
+ * 40 byte header and then one column per field, the 8 byte columns first so they stay
+ * aligned:
+ * <pre>
+ *   int magic, int count, long minTimestamp, long maxTimestamp,
+ *   int minPatientId, int maxPatientId, int typeMask, int reserved
+ *   long[count] timestamps, double[count] values, int[count] patientIds,
+ *   byte[count] typeCodes, padding to a multiple of 8
+ * </pre>
+ * Readings in a block are sorted by patient ID, so a reader can binary search the
+ * patient column. A closed file ends with an index of one 40 byte entry per block
+ * (long offset, int count, int typeMask, long minTimestamp, long maxTimestamp,
+ * int minPatientId, int maxPatientId) and a 16 byte trailer (long indexOffset,
+ * int blockCount, int magic). A file without the trailer, e.g. after a crash, can still
+ * be read by walking the block headers.
+ */
+public final class ColumnarFormat {
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final String EXTENSION = ".hcb";
+    public static final int FILE_MAGIC = 0x42434448; // "HDCB"
+    public static final int VERSION = 1;
+    public static final int BLOCK_MAGIC = 0x314B4C42; // "BLK1"
+    public static final int FOOTER_MAGIC = 0x46434448; // "HDCF"
+    public static final int FILE_HEADER_BYTES = 8;
+    public static final int BLOCK_HEADER_BYTES = 40;
+    public static final int INDEX_ENTRY_BYTES = 40;
+    public static final int TRAILER_BYTES = 16;
+    public static final int MAX_BLOCK_READINGS = 8192;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Returns the size of a block, header included.
+     *
+     * @param count the readings in the block
+     * @return the size in bytes
+     */
+    public static int blockBytes(int count) {
+        int columns = count * (8 + 8 + 4 + 1);
+        return BLOCK_HEADER_BYTES + ((columns + 7) & ~7);
+    }
+
+    /** Offset of the timestamp column from the start of a block. */
+    public static int timestampsOffset(int count) {
+        return BLOCK_HEADER_BYTES;
+    }
+
+    /** Offset of the value column from the start of a block. */
+    public static int valuesOffset(int count) {
+        return BLOCK_HEADER_BYTES + 8 * count;
+    }
+
+    /** Offset of the patient ID column from the start of a block. */
+    public static int patientIdsOffset(int count) {
+        return BLOCK_HEADER_BYTES + 16 * count;
+    }
+
+    /** Offset of the type code column from the start of a block. */
+    public static int typesOffset(int count) {
+        return BLOCK_HEADER_BYTES + 20 * count;
+    }
+}
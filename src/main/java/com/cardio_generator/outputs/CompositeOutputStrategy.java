@@ -0,0 +1,252 @@
+package com.cardio_generator.outputs;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code CompositeOutputStrategy} is an implementation of {@code OutputStrategy} that
+ * sends every reading to several sinks at once, e.g. a file, a WebSocket and a TCP
+ * socket.
+ *
+ * <p>Each sink gets its own bounded queue and writer thread, so the generators only pay
+ * for queueing and, unless the policy is {@link OverflowPolicy#BLOCK}, a slow sink cannot
+ * hold up generation or the other sinks. A reading or batch is queued once as an
+ * immutable entry shared by all queues. When a queue is full, the {@link OverflowPolicy}
+ * decides whether to wait or which readings to drop; dropped readings are counted per
+ * sink. The writer threads are daemons, so call {@link #close()} before exiting to write
+ * what is still queued.
+ */
+public class CompositeOutputStrategy implements OutputStrategy, Closeable {
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final List<Sink> sinks = new ArrayList<>();
+
+    /**
+     * Constructs a composite without sinks.
+     *
+     * @param queueCapacity  the number of entries (readings or batches) each sink can queue
+     * @param overflowPolicy what to do when a queue is full
+     */
+    public CompositeOutputStrategy(int queueCapacity, OverflowPolicy overflowPolicy) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds a sink and starts its writer thread. Sinks must be added before output starts.
+     *
+     * @param name     the name used in reports, e.g. "file:output"
+     * @param strategy the output strategy that writes to the sink
+     */
+    public void addSink(String name, OutputStrategy strategy) {
+        Sink sink = new Sink(name, strategy, new ArrayBlockingQueue<>(queueCapacity));
+        sink.writer = new Thread(sink::drain, "output-" + name);
+        sink.writer.setDaemon(true);
+        sink.writer.start();
+        sinks.add(sink);
+    }
+
+    /**
+     * Queues a reading for every sink
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param label the type or category of health data (e.g., "ECG", "Blood Pressure")
+     * @param data the actual health data in string format
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        Reading reading = new Reading(patientId, timestamp, label, data);
+        for (Sink sink : sinks) {
+            sink.offer(reading);
+        }
+    }
+
+    /**
+     * Queues a reading given as a number for every sink, which receives it as a number
+     * too, so sinks that encode numbers directly never format a string for it.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     * @throws IllegalArgumentException if the type code is unknown
+     */
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        ReadingType.requireCode(typeCode); // fail here rather than on the writer threads
+        Value reading = new Value(patientId, timestamp, typeCode, value);
+        for (Sink sink : sinks) {
+            sink.offer(reading);
+        }
+    }
+
+    /**
+     * Queues a copy of the batch for every sink.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(OutputBatch batch) {
+        OutputBatch copy = batch.copy();
+        for (Sink sink : sinks) {
+            sink.offer(copy);
+        }
+    }
+
+    /**
+     * Returns how many readings a sink dropped because its queue was full.
+     *
+     * @param name the name of the sink
+     * @return the dropped reading count, or 0 for an unknown sink
+     */
+    public long getDroppedCount(String name) {
+        for (Sink sink : sinks) {
+            if (sink.name.equals(name)) {
+                return sink.dropped.sum();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Prints the queue depth and the written and dropped readings of every sink.
+     */
+    public void printReport() {
+        for (Sink sink : sinks) {
+            System.out.printf("Output %s: queued %d/%d, written %d, dropped %d%n", sink.name,
+                    sink.queue.size(), queueCapacity, sink.written.sum(), sink.dropped.sum());
+        }
+    }
+
+    /**
+     * Writes what is still queued and stops the writer threads.
+     */
+    @Override
+    public void close() {
+        for (Sink sink : sinks) {
+            sink.running = false;
+        }
+        for (Sink sink : sinks) {
+            try {
+                sink.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int readingCount(Object entry) {
+        return entry instanceof OutputBatch ? ((OutputBatch) entry).size() : 1;
+    }
+
+    private class Sink {
+        private final String name;
+        private final OutputStrategy strategy;
+        private final BlockingQueue<Object> queue;
+        private final LongAdder written = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private volatile boolean running = true;
+        private Thread writer;
+
+        Sink(String name, OutputStrategy strategy, BlockingQueue<Object> queue) {
+            this.name = name;
+            this.strategy = strategy;
+            this.queue = queue;
+        }
+
+        void offer(Object entry) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(entry);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.add(readingCount(entry));
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(entry)) {
+                        Object oldest = queue.poll();
+                        if (oldest != null) {
+                            dropped.add(readingCount(oldest));
+                        }
+                    }
+                    break;
+                default:
+                    if (!queue.offer(entry)) {
+                        dropped.add(readingCount(entry));
+                    }
+            }
+        }
+
+        void drain() {
+            try {
+                while (running) {
+                    Object entry = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        write(entry);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Object entry;
+            while ((entry = queue.poll()) != null) {
+                write(entry);
+            }
+        }
+
+        private void write(Object entry) {
+            try {
+                if (entry instanceof OutputBatch) {
+                    strategy.output((OutputBatch) entry);
+                } else if (entry instanceof Value) {
+                    Value value = (Value) entry;
+                    strategy.output(value.patientId, value.timestamp, value.typeCode, value.value);
+                } else {
+                    Reading reading = (Reading) entry;
+                    strategy.output(reading.patientId, reading.timestamp, reading.label, reading.data);
+                }
+                written.add(readingCount(entry));
+            } catch (RuntimeException e) {
+                System.err.println("Error writing to output " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Reading {
+        private final int patientId;
+        private final long timestamp;
+        private final String label;
+        private final String data;
+
+        Reading(int patientId, long timestamp, String label, String data) {
+            this.patientId = patientId;
+            this.timestamp = timestamp;
+            this.label = label;
+            this.data = data;
+        }
+    }
+
+    private static class Value {
+        private final int patientId;
+        private final long timestamp;
+        private final int typeCode;
+        private final double value;
+
+        Value(int patientId, long timestamp, int typeCode, double value) {
+            this.patientId = patientId;
+            this.timestamp = timestamp;
+            this.typeCode = typeCode;
+            this.value = value;
+        }
+    }
+}
@@ -1,19 +1,44 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
 // Braces style modified accordingly to google style guide and comments indented at same level as the code they describe
 // changed class naming to UpperCamelCase
 
 /**
  * {@code FileOutputStrategy} is an implementation of {@code OutputStrategy} that writes data into a file.
  *
- * <p>Data is formatted as: {@code patientId,timestamp,label,data}
+ * <p>Data is formatted as: {@code Patient ID: .., Timestamp: .., Label: .., Data: ..},
+ * one file per label. Readings are encoded by a {@link ReadingEncoder} of the calling
+ * thread, and a batch is written with one write per label file.
  *
+ * <p>By default every write opens and closes the file. In buffered mode one channel per
+ * label stays open and is shared by all generator threads: readings are gathered in a
+ * buffer per label, which is written when it is full, when the flush interval has
+ * passed and on {@link #close()}, so a few large writes replace one open, write and
+ * close per reading.
+ *
+ * <p>Buffered files can also be rotated into segments by size or age. Each closed
+ * segment gets a {@link SegmentManifest} with its time and patient ranges and can be
+ * gzip compressed, so files stay bounded and readers can skip what they do not need.
  */
 
 public class FileOutputStrategy implements OutputStrategy {
@@ -21,9 +46,86 @@ public class FileOutputStrategy implements OutputStrategy {
     private String baseDirectory;
     // Changed name to fileMap since it's a regular field
     public final ConcurrentHashMap<String, String> fileMap = new ConcurrentHashMap<>();
+    // Index 0 doubles as the encoder for single readings
+    private final ThreadLocal<ReadingEncoder[]> encoders = ThreadLocal.withInitial(() -> {
+        ReadingEncoder[] byType = new ReadingEncoder[ReadingType.values().length];
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new ReadingEncoder(256);
+        }
+        return byType;
+    });
+
+    private final int bufferSize;
+    // Writers are only created and removed under the lock of this map, see openWriter
+    private final ConcurrentHashMap<String, LabelWriter> writers = new ConcurrentHashMap<>();
+    private final LongAdder failedReadings = new LongAdder();
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final SegmentCompression compression;
+    private ScheduledExecutorService flusher;
+    private ExecutorService compressor;
+    private volatile boolean closed;
 
     public FileOutputStrategy(String baseDirectory) {
         this.baseDirectory = baseDirectory;
+        this.bufferSize = 0;
+        this.maxSegmentBytes = 0;
+        this.maxSegmentMillis = 0;
+        this.compression = SegmentCompression.NONE;
+    }
+
+    /**
+     * Constructs a file output in buffered mode.
+     *
+     * @param baseDirectory       the directory the label files are written to
+     * @param bufferSize          the bytes gathered per label before they are written
+     * @param flushIntervalMillis the longest time readings wait in a buffer, or 0 to only
+     *                            write full buffers and on close
+     */
+    public FileOutputStrategy(String baseDirectory, int bufferSize, long flushIntervalMillis) {
+        this(baseDirectory, bufferSize, flushIntervalMillis, 0, 0, SegmentCompression.NONE);
+    }
+
+    /**
+     * Constructs a file output in buffered mode that rotates the label files into segments.
+     *
+     * @param baseDirectory       the directory the label files are written to
+     * @param bufferSize          the bytes gathered per label before they are written
+     * @param flushIntervalMillis the longest time readings wait in a buffer, or 0 to only
+     *                            write full buffers and on close
+     * @param maxSegmentBytes     the size at which a segment is closed, or 0 for no limit
+     * @param maxSegmentMillis    the age at which a segment is closed, checked on writes
+     *                            and flushes, or 0 for no limit
+     * @param compression         how closed segments are compressed
+     */
+    public FileOutputStrategy(String baseDirectory, int bufferSize, long flushIntervalMillis,
+            long maxSegmentBytes, long maxSegmentMillis, SegmentCompression compression) {
+        this.baseDirectory = baseDirectory;
+        this.bufferSize = Math.max(4096, bufferSize);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentMillis;
+        this.compression = compression;
+        try {
+            Files.createDirectories(Paths.get(baseDirectory));
+        } catch (IOException e) {
+            System.err.println("Error creating base directory: " + e.getMessage());
+        }
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "file-output-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (compression != SegmentCompression.NONE) {
+            compressor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "file-output-compress");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
     /**
      * Tries to write output to a new file
@@ -36,6 +138,131 @@ public class FileOutputStrategy implements OutputStrategy {
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        ReadingEncoder encoder = encoders.get()[0];
+        encoder.clear();
+        encoder.appendRecord(patientId, timestamp, label, data);
+        write(label, encoder);
+    }
+
+    /**
+     * Appends a reading given as a number, encoded without intermediate strings.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     * @throws IllegalArgumentException if the type code is unknown
+     */
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        ReadingType type = ReadingType.requireCode(typeCode);
+        ReadingEncoder encoder = encoders.get()[0];
+        encoder.clear();
+        encoder.appendRecord(patientId, timestamp, type, value);
+        write(type.getLabel(), encoder);
+    }
+
+    /**
+     * Appends a batch with one write per label file.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(OutputBatch batch) {
+        ReadingEncoder[] byType = encoders.get();
+        for (ReadingEncoder encoder : byType) {
+            encoder.clear();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            ReadingType type = batch.getType(i);
+            byType[type.getCode()].appendRecord(batch.getPatientId(i), batch.getTimestamp(i), type, batch.getValue(i));
+        }
+        for (ReadingType type : ReadingType.values()) {
+            if (!byType[type.getCode()].isEmpty()) {
+                write(type.getLabel(), byType[type.getCode()]);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered readings of all labels to their files, and closes segments
+     * that have been open for longer than the segment interval.
+     */
+    public void flush() {
+        for (LabelWriter writer : writers.values()) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + writer.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of readings lost because their buffered file could not be
+     * opened or written.
+     *
+     * @return the number of readings
+     */
+    public long getFailedReadings() {
+        return failedReadings.sum();
+    }
+
+    /**
+     * Writes the buffered readings and closes the files. With rotation, the active
+     * segments are closed as well and all pending compression is finished. Readings that
+     * arrive afterwards are written straight through.
+     */
+    public void close() {
+        List<LabelWriter> open;
+        synchronized (writers) {
+            closed = true;
+            open = new ArrayList<>(writers.values());
+            writers.clear();
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        for (LabelWriter writer : open) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + writer.path + ": " + e.getMessage());
+            }
+        }
+        if (compressor != null) {
+            compressor.shutdown();
+            try {
+                if (!compressor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    System.err.println("Segment compression did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write(String label, ReadingEncoder encoder) {
+        if (bufferSize > 0 && !closed) {
+            LabelWriter writer = writers.get(label);
+            if (writer == null) {
+                writer = openWriter(label);
+            }
+            if (writer == null && !closed) {
+                failedReadings.add(encoder.getReadingCount());
+                return;
+            }
+            try {
+                if (writer != null && writer.append(encoder)) {
+                    return;
+                }
+                // Closed meanwhile, write straight through
+            } catch (IOException e) {
+                failedReadings.add(encoder.getReadingCount());
+                System.err.println("Error writing to file " + writer.path + ": " + e.getMessage());
+                return;
+            }
+        }
         try {
             // Create the directory
             Files.createDirectories(Paths.get(baseDirectory));
@@ -48,13 +275,280 @@ public class FileOutputStrategy implements OutputStrategy {
                 Paths.get(baseDirectory, label + ".txt").toString());
 
         // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(Paths.get(filePath),
-                        StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
-                    patientId, timestamp, label, data);
+        try (FileChannel out = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = encoder.toByteBuffer();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
         } catch (Exception e) {
             System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the writer of a label, opening it if needed. Checking {@link #closed} under
+     * the same lock that {@link #close()} takes ensures no writer is opened after the
+     * writers have been closed.
+     *
+     * @return the writer, or {@code null} if the output is closed or the file could not
+     *         be opened, which is logged
+     */
+    private LabelWriter openWriter(String label) {
+        synchronized (writers) {
+            if (closed) {
+                return null;
+            }
+            LabelWriter writer = writers.get(label);
+            if (writer != null) {
+                return writer;
+            }
+            Path path = Paths.get(fileMap.computeIfAbsent(label,
+                    k -> Paths.get(baseDirectory, label + ".txt").toString()));
+            try {
+                writer = new LabelWriter(label, path);
+            } catch (IOException e) {
+                System.err.println("Error opening file " + path + ", dropping readings: " + e.getMessage());
+                return null;
+            }
+            writers.put(label, writer);
+            return writer;
+        }
+    }
+
+    /**
+     * Compresses a closed segment next to the original, points its manifest at the
+     * compressed file and then removes the original. The compressed data goes to a
+     * temporary file that is renamed into place, so the {@code .gz} a reader falls back
+     * to once the segment is gone is always complete.
+     */
+    private void compress(Path segment, SegmentManifest manifest, Path manifestPath) {
+        Path compressed = segment.resolveSibling(segment.getFileName() + ".gz");
+        Path partial = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                    OutputStream out = new LevelGzipOutputStream(Files.newOutputStream(partial),
+                            compression.getLevel())) {
+                in.transferTo(out);
+            }
+            Files.move(partial, compressed, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error compressing segment " + segment + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Left for the next run to overwrite
+            }
+            return;
+        }
+        try {
+            manifest.withSegmentFile(compressed.getFileName().toString()).write(manifestPath);
+            Files.delete(segment);
+        } catch (IOException e) {
+            System.err.println("Error finishing segment " + segment + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The open channel and write buffer of one label file. With rotation, the file is the
+     * active segment: once it is big or old enough it is renamed to
+     * {@code <label>.<sequence>.seg}, gets a manifest and a fresh file takes its place.
+     * The previous segment is compressed at that point, so a reader following the
+     * directory has a whole segment's time to read the rest of a renamed file.
+     */
+    private final class LabelWriter {
+        private final String label;
+        private final Path path;
+        private final ByteBuffer buffer;
+        private FileChannel channel;
+        private long nextSequence;
+        private long segmentOpened;
+        private long segmentBytes;
+        private long readings;
+        private int firstPatientId;
+        private int lastPatientId;
+        private long firstTimestamp;
+        private long lastTimestamp;
+        private Path uncompressed;
+        private SegmentManifest uncompressedManifest;
+        private Path uncompressedManifestPath;
+
+        LabelWriter(String label, Path path) throws IOException {
+            this.label = label;
+            this.path = path;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            if (rotating()) {
+                nextSequence = findNextSequence();
+                if (Files.exists(path) && Files.size(path) > 0) {
+                    // Left behind by an earlier run: its contents are unknown
+                    readings = -1;
+                    segmentBytes = Files.size(path);
+                    firstTimestamp = Long.MIN_VALUE;
+                    lastTimestamp = Long.MAX_VALUE;
+                    firstPatientId = Integer.MIN_VALUE;
+                    lastPatientId = Integer.MAX_VALUE;
+                    closeSegment();
+                }
+            }
+            openSegment();
+        }
+
+        /**
+         * Adds the readings of an encoder to the buffer, writing it first if they do not fit.
+         *
+         * @return {@code false} if the file was already closed
+         */
+        synchronized boolean append(ReadingEncoder encoder) throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                return false;
+            }
+            int length = encoder.size();
+            if (length > buffer.remaining()) {
+                drain();
+            }
+            if (length > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.wrap(encoder.array(), 0, length);
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+            } else {
+                buffer.put(encoder.array(), 0, length);
+            }
+            count(encoder);
+            segmentBytes += length;
+            if ((maxSegmentBytes > 0 && segmentBytes >= maxSegmentBytes) || segmentExpired()) {
+                rotate();
+            }
+            return true;
+        }
+
+        synchronized void flush() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                return;
+            }
+            drain();
+            if (readings > 0 && segmentExpired()) {
+                rotate();
+            }
+        }
+
+        synchronized void close() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                return;
+            }
+            drain();
+            channel.close();
+            if (rotating() && readings > 0) {
+                closeSegment();
+            }
+            compressPrevious();
+        }
+
+        private boolean segmentExpired() {
+            return maxSegmentMillis > 0 && System.currentTimeMillis() - segmentOpened >= maxSegmentMillis;
+        }
+
+        private boolean rotating() {
+            return maxSegmentBytes > 0 || maxSegmentMillis > 0;
+        }
+
+        private void count(ReadingEncoder encoder) {
+            if (encoder.getReadingCount() == 0) {
+                return;
+            }
+            if (readings == 0) {
+                firstPatientId = encoder.getMinPatientId();
+                lastPatientId = encoder.getMaxPatientId();
+                firstTimestamp = encoder.getMinTimestamp();
+                lastTimestamp = encoder.getMaxTimestamp();
+            } else {
+                firstPatientId = Math.min(firstPatientId, encoder.getMinPatientId());
+                lastPatientId = Math.max(lastPatientId, encoder.getMaxPatientId());
+                firstTimestamp = Math.min(firstTimestamp, encoder.getMinTimestamp());
+                lastTimestamp = Math.max(lastTimestamp, encoder.getMaxTimestamp());
+            }
+            readings += encoder.getReadingCount();
+        }
+
+        private void rotate() throws IOException {
+            drain();
+            channel.close();
+            closeSegment();
+            openSegment();
+        }
+
+        /**
+         * Renames the active file to the next segment and writes its manifest.
+         */
+        private void closeSegment() throws IOException {
+            compressPrevious();
+            String name = String.format("%s.%06d", label, nextSequence);
+            Path segment = path.resolveSibling(name + ".seg");
+            Path manifestPath = path.resolveSibling(name + ".manifest");
+            Files.move(path, segment);
+            SegmentManifest manifest = new SegmentManifest(label, nextSequence, segment.getFileName().toString(),
+                    readings, segmentBytes, firstTimestamp, lastTimestamp, firstPatientId, lastPatientId);
+            manifest.write(manifestPath);
+            nextSequence++;
+            if (compression != SegmentCompression.NONE) {
+                uncompressed = segment;
+                uncompressedManifest = manifest;
+                uncompressedManifestPath = manifestPath;
+            }
+        }
+
+        private void compressPrevious() {
+            if (uncompressed != null) {
+                Path segment = uncompressed;
+                SegmentManifest manifest = uncompressedManifest;
+                Path manifestPath = uncompressedManifestPath;
+                compressor.execute(() -> compress(segment, manifest, manifestPath));
+                uncompressed = null;
+            }
+        }
+
+        private void openSegment() throws IOException {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segmentOpened = System.currentTimeMillis();
+            segmentBytes = 0;
+            readings = 0;
+        }
+
+        private long findNextSequence() throws IOException {
+            long next = 0;
+            String prefix = label + ".";
+            try (DirectoryStream<Path> manifests = Files.newDirectoryStream(path.getParent(),
+                    prefix + "*.manifest")) {
+                for (Path manifest : manifests) {
+                    String name = manifest.getFileName().toString();
+                    try {
+                        long sequence = Long.parseLong(name.substring(prefix.length(), name.length() - 9));
+                        next = Math.max(next, sequence + 1);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+            return next;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A gzip stream with a chosen compression level.
+     */
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+        LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+
+/**
+ * A reusable batch of generated readings, kept in parallel primitive arrays.
+ *
+ * <p>The batch generators fill it for a whole range of patients in one pass and hand
+ * it to {@link OutputStrategy#output(OutputBatch)} at once, so no strings or objects
+ * are created per reading until an output actually needs text. The arrays grow as
+ * needed and are kept when the batch is cleared.
+ */
+public class OutputBatch {
+    private int[] patientIds;
+    private ReadingType[] types;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param initialCapacity the number of readings the batch holds before growing
+     */
+    public OutputBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        types = new ReadingType[capacity];
+        timestamps = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Appends a reading.
+     *
+     * @param patientId the unique ID of the patient
+     * @param type      the type of the reading
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param value     the reading value
+     */
+    public void add(int patientId, ReadingType type, long timestamp, double value) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            types = Arrays.copyOf(types, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        types[size] = type;
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Creates a copy holding just the readings of this batch, for handing it to
+     * another thread while this one is reused.
+     *
+     * @return the copy
+     */
+    public OutputBatch copy() {
+        OutputBatch copy = new OutputBatch(size);
+        System.arraycopy(patientIds, 0, copy.patientIds, 0, size);
+        System.arraycopy(types, 0, copy.types, 0, size);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    public ReadingType getType(int index) {
+        return types[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+}
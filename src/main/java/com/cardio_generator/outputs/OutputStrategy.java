@@ -17,4 +17,33 @@ public interface OutputStrategy {
      * @param data the actual health data in string format
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * Outputs a reading given as a number. By default the value is formatted and passed
+     * to {@link #output(int, long, String, String)}; strategies that can encode the number
+     * directly override this.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     * @throws IllegalArgumentException if the type code is unknown
+     */
+    default void output(int patientId, long timestamp, int typeCode, double value) {
+        ReadingType type = ReadingType.requireCode(typeCode);
+        output(patientId, timestamp, type.getLabel(), type.formatData(value));
+    }
+
+    /**
+     * Outputs a batch of readings. By default every reading is passed to
+     * {@link #output(int, long, int, double)}; strategies that can write a whole batch
+     * more cheaply override this.
+     *
+     * @param batch the readings to output
+     */
+    default void output(OutputBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            output(batch.getPatientId(i), batch.getTimestamp(i), batch.getType(i).getCode(), batch.getValue(i));
+        }
+    }
 }
@@ -0,0 +1,13 @@
+package com.cardio_generator.outputs;
+
+/**
+ * What an asynchronous output does with a reading when the queue of a sink is full.
+ */
+public enum OverflowPolicy {
+    /** Wait for space, slowing generation down to the speed of the sink. */
+    BLOCK,
+    /** Drop the new reading. */
+    DROP_NEWEST,
+    /** Drop the oldest queued readings to make space for the new one. */
+    DROP_OLDEST
+}
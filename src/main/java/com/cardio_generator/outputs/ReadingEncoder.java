@@ -0,0 +1,267 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes readings as text lines straight into a reusable byte buffer, without
+ * building a {@code String} per reading.
+ *
+ * <p>Two line formats are supported: the comma separated one of the socket outputs,
+ * {@code patientId,timestamp,label,data}, and the one of the file and console outputs,
+ * {@code Patient ID: .., Timestamp: .., Label: .., Data: ..}. Typed values are written
+ * with up to six decimals, trailing zeros removed, which is more than any simulated
+ * reading needs; whole numbers keep their {@code .0} as with {@code Double.toString}.
+ *
+ * <p>The encoder also keeps the range of patient IDs and timestamps of the readings it
+ * holds, for outputs that index what they write.
+ *
+ * <p>An encoder is not thread safe; each writer keeps its own.
+ */
+public class ReadingEncoder {
+    private static final byte[][] LABELS = new byte[ReadingType.values().length][];
+    private static final byte[] TRIGGERED = ascii("triggered");
+    private static final byte[] RESOLVED = ascii("resolved");
+    private static final byte[] PATIENT_ID = ascii("Patient ID: ");
+    private static final byte[] TIMESTAMP = ascii(", Timestamp: ");
+    private static final byte[] LABEL = ascii(", Label: ");
+    private static final byte[] DATA = ascii(", Data: ");
+    private static final long SCALE = 1_000_000;
+    private static final int DECIMALS = 6;
+    private static final double MAX_FIXED = 1e12;
+
+    static {
+        for (ReadingType type : ReadingType.values()) {
+            LABELS[type.getCode()] = ascii(type.getLabel());
+        }
+    }
+
+    private byte[] bytes;
+    private int size;
+    private int readings;
+    private int minPatientId;
+    private int maxPatientId;
+    private long minTimestamp;
+    private long maxTimestamp;
+
+    /**
+     * Constructs an empty encoder.
+     *
+     * @param initialCapacity the number of bytes the buffer holds before growing
+     */
+    public ReadingEncoder(int initialCapacity) {
+        bytes = new byte[Math.max(64, initialCapacity)];
+    }
+
+    /**
+     * Appends {@code patientId,timestamp,label,data} and a newline.
+     */
+    public void appendCsv(int patientId, long timestamp, ReadingType type, double value) {
+        count(patientId, timestamp);
+        appendLong(patientId);
+        appendByte(',');
+        appendLong(timestamp);
+        appendByte(',');
+        appendBytes(LABELS[type.getCode()]);
+        appendByte(',');
+        appendValue(type, value);
+        appendByte('\n');
+    }
+
+    /**
+     * Appends {@code patientId,timestamp,label,data} and a newline for an already
+     * formatted reading.
+     */
+    public void appendCsv(int patientId, long timestamp, String label, String data) {
+        count(patientId, timestamp);
+        appendLong(patientId);
+        appendByte(',');
+        appendLong(timestamp);
+        appendByte(',');
+        appendString(label);
+        appendByte(',');
+        appendString(data);
+        appendByte('\n');
+    }
+
+    /**
+     * Appends {@code Patient ID: .., Timestamp: .., Label: .., Data: ..} and a newline.
+     */
+    public void appendRecord(int patientId, long timestamp, ReadingType type, double value) {
+        count(patientId, timestamp);
+        appendBytes(PATIENT_ID);
+        appendLong(patientId);
+        appendBytes(TIMESTAMP);
+        appendLong(timestamp);
+        appendBytes(LABEL);
+        appendBytes(LABELS[type.getCode()]);
+        appendBytes(DATA);
+        appendValue(type, value);
+        appendByte('\n');
+    }
+
+    /**
+     * Appends {@code Patient ID: .., Timestamp: .., Label: .., Data: ..} and a newline for
+     * an already formatted reading.
+     */
+    public void appendRecord(int patientId, long timestamp, String label, String data) {
+        count(patientId, timestamp);
+        appendBytes(PATIENT_ID);
+        appendLong(patientId);
+        appendBytes(TIMESTAMP);
+        appendLong(timestamp);
+        appendBytes(LABEL);
+        appendString(label);
+        appendBytes(DATA);
+        appendString(data);
+        appendByte('\n');
+    }
+
+    /**
+     * Returns the encoded bytes as a buffer ready for writing. The buffer shares the
+     * encoder's array, so it is only valid until the next append or clear.
+     *
+     * @return the encoded bytes
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        readings = 0;
+    }
+
+    public int getReadingCount() {
+        return readings;
+    }
+
+    public int getMinPatientId() {
+        return minPatientId;
+    }
+
+    public int getMaxPatientId() {
+        return maxPatientId;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    private void count(int patientId, long timestamp) {
+        if (readings++ == 0) {
+            minPatientId = patientId;
+            maxPatientId = patientId;
+            minTimestamp = timestamp;
+            maxTimestamp = timestamp;
+            return;
+        }
+        minPatientId = Math.min(minPatientId, patientId);
+        maxPatientId = Math.max(maxPatientId, patientId);
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+    }
+
+    private void appendValue(ReadingType type, double value) {
+        if (type == ReadingType.ALERT) {
+            appendBytes(value != 0 ? TRIGGERED : RESOLVED);
+            return;
+        }
+        appendDouble(value);
+        if (type == ReadingType.SATURATION) {
+            appendByte('%');
+        }
+    }
+
+    private void appendDouble(double value) {
+        if (Double.isNaN(value) || Math.abs(value) >= MAX_FIXED) {
+            appendString(Double.toString(value));
+            return;
+        }
+        long scaled = Math.round(Math.abs(value) * SCALE);
+        if (value < 0 && scaled != 0) {
+            appendByte('-');
+        }
+        appendLong(scaled / SCALE);
+        appendByte('.');
+        long fraction = scaled % SCALE;
+        int digits = DECIMALS;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        size += digits;
+    }
+
+    private void appendLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                appendString(Long.toString(value));
+                return;
+            }
+            appendByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void appendString(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            bytes[size++] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+    }
+
+    private void appendBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    private void appendByte(char c) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,111 @@
+package com.cardio_generator.outputs;
+
+/**
+ * The types of readings produced by the simulator, with the integer code used by the
+ * binary outputs and the label used by the text outputs.
+ *
+ * <p>The text outputs send most values as {@code Double.toString(value)}. Saturation
+ * gets a trailing {@code %} and alerts are sent as {@code triggered} or {@code resolved},
+ * which map to the values 1 and 0.
+ */
+public enum ReadingType {
+    ECG("ECG"),
+    SATURATION("Saturation"),
+    SYSTOLIC_PRESSURE("SystolicPressure"),
+    DIASTOLIC_PRESSURE("DiastolicPressure"),
+    CHOLESTEROL("Cholesterol"),
+    WHITE_BLOOD_CELLS("WhiteBloodCells"),
+    RED_BLOOD_CELLS("RedBloodCells"),
+    ALERT("Alert");
+
+    private static final ReadingType[] BY_CODE = values();
+
+    private final String label;
+
+    ReadingType(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getCode() {
+        return ordinal();
+    }
+
+    /**
+     * Formats a value the way the text outputs have always sent it.
+     *
+     * @param value the reading value
+     * @return the data string for this type
+     */
+    public String formatData(double value) {
+        switch (this) {
+            case SATURATION:
+                return Double.toString(value) + "%";
+            case ALERT:
+                return value != 0 ? "triggered" : "resolved";
+            default:
+                return Double.toString(value);
+        }
+    }
+
+    /**
+     * Parses a data string produced by {@link #formatData(double)}.
+     *
+     * @param data the data string
+     * @return the reading value
+     * @throws NumberFormatException if the data is not a number
+     */
+    public static double parseData(String data) {
+        if (data.endsWith("%")) {
+            return Double.parseDouble(data.substring(0, data.length() - 1));
+        } else if (data.equals("triggered")) {
+            return 1.0;
+        } else if (data.equals("resolved")) {
+            return 0.0;
+        }
+        return Double.parseDouble(data);
+    }
+
+    /**
+     * Looks up a type by its code.
+     *
+     * @param code the code of the type
+     * @return the type, or {@code null} if the code is unknown
+     */
+    public static ReadingType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Looks up a type by its code, for callers that cannot handle an unknown one.
+     *
+     * @param code the code of the type
+     * @return the type
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static ReadingType requireCode(int code) {
+        ReadingType type = fromCode(code);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown reading type code: " + code);
+        }
+        return type;
+    }
+
+    /**
+     * Looks up a type by its label.
+     *
+     * @param label the label, e.g. "Saturation"
+     * @return the type, or {@code null} if the label is unknown
+     */
+    public static ReadingType fromLabel(String label) {
+        for (ReadingType type : BY_CODE) {
+            if (type.label.equals(label)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
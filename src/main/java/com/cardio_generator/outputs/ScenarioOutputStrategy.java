@@ -0,0 +1,291 @@
+package com.cardio_generator.outputs;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cardio_generator.ScenarioScript;
+import com.cardio_generator.ScenarioScript.Event;
+import com.cardio_generator.generators.PatientRandoms;
+
+/**
+ * Injects the clinical events of a {@link ScenarioScript} into the readings on their way
+ * to another output strategy, so that the alert strategies and alert delivery can be
+ * load tested at realistic and at worst-case alert volumes.
+ *
+ * <p>Episodes are scheduled on the timestamps of the readings, so scenarios work the
+ * same on the wall clock and in simulated time. Each patient and event has its own
+ * random stream, drawn only when an episode is scheduled: the next onset is drawn when
+ * the previous episode ends. Episodes therefore depend only on the seed, the patient
+ * and the time, not on how many readings arrive or how generator threads interleave.
+ *
+ * <p>While an episode runs, the readings of the patient are changed: saturation is held
+ * at 84 to 90%, blood pressure drifts up or down by 15/10 mmHg per hour, and ECG
+ * readings carry a heart rate of 110 to 180 bpm, which is how {@code HeartRateStrategy}
+ * reads them. An ECG waveform is passed on unchanged, since its samples are voltages
+ * rather than heart rates. Manual alerts add a triggered alert reading when the episode
+ * starts and a resolved one when it ends. Patients already in an episode when the run
+ * starts are picked with the share of the script.
+ */
+public class ScenarioOutputStrategy implements OutputStrategy {
+    private static final int LOCK_STRIPES = 64;
+    private static final Event[] EVENTS = Event.values();
+
+    private final OutputStrategy delegate;
+    private final ScenarioScript script;
+    private final int firstPatientId;
+    private final int patientCount;
+    private final boolean ecgWaveform;
+    // Per event and patient
+    private final SplittableRandom[][] randoms;
+    private final boolean[] seen;
+    // Per event and patient; an end of 0 means no episode is running
+    private final long[][] episodeStarts;
+    private final long[][] episodeEnds;
+    private final long[][] nextOnsets;
+    // Per event and patient: saturation level, pressure direction or heart rate of the episode
+    private final double[][] levels;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLong[] episodeCounts = new AtomicLong[EVENTS.length];
+    private final ThreadLocal<OutputBatch> batches = ThreadLocal.withInitial(() -> new OutputBatch(1024));
+
+    /**
+     * Constructs a scenario for a range of patient IDs. Readings of other patients are
+     * passed on unchanged.
+     *
+     * @param delegate       the output strategy that receives the readings
+     * @param script         the events to inject
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     */
+    public ScenarioOutputStrategy(OutputStrategy delegate, ScenarioScript script, int firstPatientId,
+            int patientCount, long seed) {
+        this(delegate, script, firstPatientId, patientCount, seed, false);
+    }
+
+    /**
+     * Constructs a scenario for a range of patient IDs. Readings of other patients are
+     * passed on unchanged.
+     *
+     * @param delegate       the output strategy that receives the readings
+     * @param script         the events to inject
+     * @param firstPatientId the ID of the first patient
+     * @param patientCount   the number of patients
+     * @param seed           the seed of the run
+     * @param ecgWaveform    whether ECG readings are waveform samples, which tachycardia
+     *                       episodes leave unchanged
+     */
+    public ScenarioOutputStrategy(OutputStrategy delegate, ScenarioScript script, int firstPatientId,
+            int patientCount, long seed, boolean ecgWaveform) {
+        this.delegate = delegate;
+        this.script = script;
+        this.firstPatientId = firstPatientId;
+        this.patientCount = patientCount;
+        this.ecgWaveform = ecgWaveform;
+        this.randoms = new SplittableRandom[EVENTS.length][];
+        for (Event event : EVENTS) {
+            randoms[event.ordinal()] = PatientRandoms.create(seed, "Scenario." + event.getName(), firstPatientId,
+                    patientCount);
+        }
+        this.seen = new boolean[patientCount];
+        this.episodeStarts = new long[EVENTS.length][patientCount];
+        this.episodeEnds = new long[EVENTS.length][patientCount];
+        this.nextOnsets = new long[EVENTS.length][patientCount];
+        this.levels = new double[EVENTS.length][patientCount];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        for (int i = 0; i < EVENTS.length; i++) {
+            episodeCounts[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        ReadingType type = ReadingType.fromLabel(label);
+        if (type == null) {
+            delegate.output(patientId, timestamp, label, data);
+            return;
+        }
+        try {
+            output(patientId, timestamp, type.getCode(), ReadingType.parseData(data));
+        } catch (NumberFormatException e) {
+            delegate.output(patientId, timestamp, label, data);
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        int index = patientId - firstPatientId;
+        ReadingType type = ReadingType.fromCode(typeCode);
+        if (index < 0 || index >= patientCount || type == null) {
+            delegate.output(patientId, timestamp, typeCode, value);
+            return;
+        }
+        OutputBatch injected = batches.get();
+        injected.clear();
+        double adjusted;
+        synchronized (locks[index % LOCK_STRIPES]) {
+            advance(index, timestamp, injected);
+            adjusted = apply(index, type, timestamp, value);
+        }
+        for (int i = 0; i < injected.size(); i++) {
+            delegate.output(patientId, injected.getTimestamp(i), injected.getType(i).getCode(), injected.getValue(i));
+        }
+        delegate.output(patientId, timestamp, typeCode, adjusted);
+    }
+
+    @Override
+    public void output(OutputBatch batch) {
+        OutputBatch adjusted = batches.get();
+        adjusted.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            int patientId = batch.getPatientId(i);
+            int index = patientId - firstPatientId;
+            ReadingType type = batch.getType(i);
+            long timestamp = batch.getTimestamp(i);
+            double value = batch.getValue(i);
+            if (index >= 0 && index < patientCount) {
+                synchronized (locks[index % LOCK_STRIPES]) {
+                    advance(index, timestamp, adjusted);
+                    value = apply(index, type, timestamp, value);
+                }
+            }
+            adjusted.add(patientId, type, timestamp, value);
+        }
+        delegate.output(adjusted);
+    }
+
+    /**
+     * Returns the number of episodes of an event started so far.
+     *
+     * @param event the event
+     * @return the number of episodes
+     */
+    public long getEpisodeCount(Event event) {
+        return episodeCounts[event.ordinal()].get();
+    }
+
+    /**
+     * Prints the number of episodes started per event.
+     */
+    public void printReport() {
+        StringBuilder report = new StringBuilder("Scenario episodes started:");
+        for (Event event : EVENTS) {
+            report.append(' ').append(event.getName()).append('=').append(getEpisodeCount(event));
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Ends the episodes of a patient that are over and starts the ones whose onset has
+     * come, adding the alert readings of manual alerts to the given batch. Alert readings
+     * carry the time of the onset or end, not of the reading that noticed it.
+     */
+    private void advance(int index, long timestamp, OutputBatch injected) {
+        boolean first = !seen[index];
+        seen[index] = true;
+        for (Event event : EVENTS) {
+            int e = event.ordinal();
+            double share = script.getShare(event);
+            if (share <= 0) {
+                continue;
+            }
+            SplittableRandom random = randoms[e][index];
+            if (first) {
+                // First reading: join the steady state, possibly part way into an episode
+                if (random.nextDouble() < share) {
+                    long durationMillis = script.getDurationSeconds(event) * 1000;
+                    start(event, index, timestamp - (long) (random.nextDouble() * durationMillis), timestamp,
+                            injected);
+                } else {
+                    nextOnsets[e][index] = timestamp + onsetDelay(event, random);
+                }
+            }
+            while (true) {
+                long end = episodeEnds[e][index];
+                if (end != 0) {
+                    if (timestamp < end) {
+                        break;
+                    }
+                    episodeEnds[e][index] = 0;
+                    nextOnsets[e][index] = end + onsetDelay(event, random);
+                    if (event == Event.MANUAL_ALERT) {
+                        injected.add(firstPatientId + index, ReadingType.ALERT, end, 0);
+                    }
+                } else {
+                    long onset = nextOnsets[e][index];
+                    if (timestamp < onset) {
+                        break;
+                    }
+                    start(event, index, onset, onset, injected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the time from the end of an episode to the onset of the next one.
+     */
+    private long onsetDelay(Event event, SplittableRandom random) {
+        if (script.getShare(event) >= 1) {
+            return 0;
+        }
+        double millis = -Math.log(1 - random.nextDouble()) / script.getOnsetRate(event) * 1000;
+        return millis < Long.MAX_VALUE / 2 ? (long) millis : Long.MAX_VALUE / 2;
+    }
+
+    private void start(Event event, int index, long start, long timestamp, OutputBatch injected) {
+        int e = event.ordinal();
+        SplittableRandom random = randoms[e][index];
+        episodeStarts[e][index] = start;
+        episodeEnds[e][index] = start + script.getDurationSeconds(event) * 1000;
+        episodeCounts[e].incrementAndGet();
+        switch (event) {
+            case HYPOXEMIA:
+                levels[e][index] = 84 + random.nextInt(7);
+                break;
+            case BP_TREND:
+                levels[e][index] = random.nextBoolean() ? 1 : -1;
+                break;
+            case TACHYCARDIA:
+                levels[e][index] = 110 + random.nextInt(71);
+                break;
+            default:
+                injected.add(firstPatientId + index, ReadingType.ALERT, timestamp, 1);
+        }
+    }
+
+    /**
+     * Changes a reading according to the episodes the patient is in.
+     */
+    private double apply(int index, ReadingType type, long timestamp, double value) {
+        switch (type) {
+            case SATURATION:
+                if (active(Event.HYPOXEMIA, index)) {
+                    return Math.min(value, levels[Event.HYPOXEMIA.ordinal()][index]);
+                }
+                return value;
+            case SYSTOLIC_PRESSURE:
+            case DIASTOLIC_PRESSURE:
+                if (active(Event.BP_TREND, index)) {
+                    int e = Event.BP_TREND.ordinal();
+                    double hours = (timestamp - episodeStarts[e][index]) / 3_600_000.0;
+                    double perHour = type == ReadingType.SYSTOLIC_PRESSURE ? 15 : 10;
+                    return Math.round(value + levels[e][index] * perHour * hours);
+                }
+                return value;
+            case ECG:
+                if (!ecgWaveform && active(Event.TACHYCARDIA, index)) {
+                    return levels[Event.TACHYCARDIA.ordinal()][index];
+                }
+                return value;
+            default:
+                return value;
+        }
+    }
+
+    private boolean active(Event event, int index) {
+        return episodeEnds[event.ordinal()][index] != 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cardio_generator.outputs;
+
+import java.util.zip.Deflater;
+
+/**
+ * How {@link FileOutputStrategy} compresses segments once they are closed.
+ */
+public enum SegmentCompression {
+    /** Keep segments as plain text. */
+    NONE(Deflater.NO_COMPRESSION),
+    /** Gzip with the default compression level. */
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+    /** Gzip with the fastest level, trading size for compression speed. */
+    FAST(Deflater.BEST_SPEED);
+
+    private final int level;
+
+    SegmentCompression(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
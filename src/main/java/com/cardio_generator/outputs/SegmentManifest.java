@@ -0,0 +1,172 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Describes one closed segment of a label file: which file holds it and the range of
+ * timestamps and patient IDs of its readings, so readers can skip segments that cannot
+ * hold what they look for without opening them.
+ *
+ * <p>Manifests are small {@code key=value} files named {@code <label>.<sequence>.manifest}
+ * next to the segment. A segment whose contents are not known, such as an active file
+ * left behind by an earlier run, gets a manifest covering all timestamps and patients.
+ */
+public class SegmentManifest {
+    private final String label;
+    private final long sequence;
+    private final String segmentFile;
+    private final long readings;
+    private final long bytes;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int firstPatientId;
+    private final int lastPatientId;
+
+    /**
+     * Constructs a manifest.
+     *
+     * @param label          the label of the readings in the segment
+     * @param sequence       the number of the segment, counting up per label
+     * @param segmentFile    the file name of the segment, in the same directory
+     * @param readings       the number of readings, or -1 if unknown
+     * @param bytes          the size of the segment before compression
+     * @param firstTimestamp the earliest reading timestamp
+     * @param lastTimestamp  the latest reading timestamp
+     * @param firstPatientId the lowest patient ID
+     * @param lastPatientId  the highest patient ID
+     */
+    public SegmentManifest(String label, long sequence, String segmentFile, long readings, long bytes,
+            long firstTimestamp, long lastTimestamp, int firstPatientId, int lastPatientId) {
+        this.label = label;
+        this.sequence = sequence;
+        this.segmentFile = segmentFile;
+        this.readings = readings;
+        this.bytes = bytes;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.firstPatientId = firstPatientId;
+        this.lastPatientId = lastPatientId;
+    }
+
+    /**
+     * Returns a copy pointing at another file, e.g. the segment once it is compressed.
+     *
+     * @param segmentFile the new file name
+     * @return the manifest
+     */
+    public SegmentManifest withSegmentFile(String segmentFile) {
+        return new SegmentManifest(label, sequence, segmentFile, readings, bytes,
+                firstTimestamp, lastTimestamp, firstPatientId, lastPatientId);
+    }
+
+    /**
+     * Reads a manifest file.
+     *
+     * @param path the manifest file
+     * @return the manifest
+     * @throws IOException if the file cannot be read or is incomplete
+     */
+    public static SegmentManifest read(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return new SegmentManifest(properties.getProperty("label"),
+                    Long.parseLong(properties.getProperty("sequence")),
+                    properties.getProperty("segment"),
+                    Long.parseLong(properties.getProperty("readings")),
+                    Long.parseLong(properties.getProperty("bytes")),
+                    Long.parseLong(properties.getProperty("firstTimestamp")),
+                    Long.parseLong(properties.getProperty("lastTimestamp")),
+                    Integer.parseInt(properties.getProperty("firstPatientId")),
+                    Integer.parseInt(properties.getProperty("lastPatientId")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid segment manifest " + path, e);
+        }
+    }
+
+    /**
+     * Writes the manifest, replacing the file at once so readers never see half of it.
+     *
+     * @param path the manifest file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        String text = "label=" + label + "\n"
+                + "sequence=" + sequence + "\n"
+                + "segment=" + segmentFile + "\n"
+                + "readings=" + readings + "\n"
+                + "bytes=" + bytes + "\n"
+                + "firstTimestamp=" + firstTimestamp + "\n"
+                + "lastTimestamp=" + lastTimestamp + "\n"
+                + "firstPatientId=" + firstPatientId + "\n"
+                + "lastPatientId=" + lastPatientId + "\n";
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks whether the segment can hold readings in a time range.
+     *
+     * @param from the start of the range in milliseconds, inclusive
+     * @param to   the end of the range in milliseconds, inclusive
+     * @return {@code false} if the segment certainly has no reading in the range
+     */
+    public boolean overlaps(long from, long to) {
+        return firstTimestamp <= to && lastTimestamp >= from;
+    }
+
+    /**
+     * Checks whether the segment can hold readings of a patient.
+     *
+     * @param patientId the unique ID of the patient
+     * @return {@code false} if the segment certainly has no reading of the patient
+     */
+    public boolean mayContainPatient(int patientId) {
+        return firstPatientId <= patientId && patientId <= lastPatientId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getSegmentFile() {
+        return segmentFile;
+    }
+
+    public long getReadings() {
+        return readings;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int getFirstPatientId() {
+        return firstPatientId;
+    }
+
+    public int getLastPatientId() {
+        return lastPatientId;
+    }
+}
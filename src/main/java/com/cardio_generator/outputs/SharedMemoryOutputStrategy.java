@@ -0,0 +1,107 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code SharedMemoryOutputStrategy} is an implementation of {@code OutputStrategy} that
+ * writes binary readings into a {@link SharedMemoryRing}, for a storage process on the
+ * same host that reads them with {@code SharedMemoryDataReader}.
+ *
+ * <p>The generators run on many threads, so writes are serialized with a lock to keep
+ * the ring single-producer. When the consumer falls behind and the ring is full the
+ * reading is dropped and counted rather than blocking generation.
+ */
+public class SharedMemoryOutputStrategy implements OutputStrategy {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final SharedMemoryRing ring;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates the ring file.
+     *
+     * @param file     the file backing the ring, ideally on a tmpfs such as /dev/shm
+     * @param capacity the number of readings the ring can hold
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public SharedMemoryOutputStrategy(Path file, int capacity) throws IOException {
+        this.ring = SharedMemoryRing.create(file, capacity);
+        System.out.println("Shared memory ring of " + ring.getCapacity() + " readings created at " + file);
+    }
+
+    /**
+     * Writes a reading into the ring
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param label the type or category of health data (e.g., "ECG", "Blood Pressure")
+     * @param data the actual health data in string format
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        ReadingType type = ReadingType.fromLabel(label);
+        if (type == null) {
+            System.err.println("Unknown label for shared memory output: " + label);
+            dropped.increment();
+            return;
+        }
+        double value;
+        try {
+            value = ReadingType.parseData(data);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid data for shared memory output: " + data);
+            dropped.increment();
+            return;
+        }
+        output(patientId, timestamp, type.getCode(), value);
+    }
+
+    /**
+     * Writes a reading into the ring without any formatting or parsing.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     */
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        boolean written;
+        synchronized (ring) {
+            written = ring.offer(patientId, typeCode, timestamp, value);
+        }
+        if (!written) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Writes a batch into the ring under one lock, without formatting the values.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(OutputBatch batch) {
+        int written = 0;
+        synchronized (ring) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (ring.offer(batch.getPatientId(i), batch.getType(i).getCode(), batch.getTimestamp(i),
+                        batch.getValue(i))) {
+                    written++;
+                }
+            }
+        }
+        dropped.add(batch.size() - written);
+    }
+
+    /**
+     * Returns the number of readings dropped because the ring was full.
+     *
+     * @return the dropped reading count
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
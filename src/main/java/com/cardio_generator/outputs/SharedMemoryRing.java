@@ -0,0 +1,244 @@
+package com.cardio_generator.outputs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single-producer/single-consumer ring of fixed-size binary readings in a
+ * memory-mapped file, shared by {@link SharedMemoryOutputStrategy} and the matching
+ * reader in the storage process on the same host.
+ *
+ * <p>Layout (native byte order):
+ * <pre>
+ *   0   int  magic
+ *   4   int  capacity (records, a power of two)
+ *   8   int  generation, incremented each time the producer creates the ring
+ *   64  long write sequence, owned by the producer
+ *   128 long read sequence, owned by the consumer
+ *   192 records of 24 bytes: int patientId, int type code, long timestamp, double value
+ * </pre>
+ * The sequences sit on separate cache lines. A record is written with plain stores and
+ * published by a release store of the write sequence; the consumer reads the sequence
+ * with an acquire load before reading the record, so no locks or system calls are
+ * needed on either side. The header is published the same way: the magic is stored
+ * last with release semantics and the consumer loads it with acquire semantics before
+ * reading the capacity.
+ *
+ * <p>A restarted producer resets both sequences and bumps the generation. The consumer
+ * checks the generation before each drain and, when it changed, maps the file again,
+ * re-reads the capacity and starts from the new sequences. The read sequence is
+ * published with a compare-and-set, so a drain racing with the reset cannot move it
+ * past the new producer's write sequence.
+ */
+public final class SharedMemoryRing implements Closeable {
+    public static final int RECORD_SIZE = 24;
+
+    private static final int MAGIC = 0x43524E47; // "CRNG"
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int GENERATION_OFFSET = 8;
+    private static final int WRITE_SEQUENCE_OFFSET = 64;
+    private static final int READ_SEQUENCE_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    // Replaced by the consumer when the producer recreates the ring
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int mask;
+    private int generation;
+
+    // Cached copy of the other side's sequence, refreshed only when it looks full/empty
+    private long cachedReadSequence;
+    private long cachedWriteSequence;
+
+    private SharedMemoryRing(Path file, FileChannel channel, MappedByteBuffer buffer, int capacity,
+            int generation) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.generation = generation;
+    }
+
+    /**
+     * Creates (or resets) the ring file on the producer side.
+     *
+     * @param file     the file backing the ring, ideally on a tmpfs such as /dev/shm
+     * @param capacity the number of records, rounded up to a power of two
+     * @return the ring
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static SharedMemoryRing create(Path file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        if ((long) size * RECORD_SIZE > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Ring capacity too large: " + capacity);
+        }
+        // Not truncated: a consumer may still have the old file mapped
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) size * RECORD_SIZE);
+        buffer.order(ByteOrder.nativeOrder());
+        // A ring left by an earlier run is hidden until its header is rewritten
+        INTS.setVolatile(buffer, 0, 0);
+        int generation = buffer.getInt(GENERATION_OFFSET) + 1;
+        buffer.putInt(CAPACITY_OFFSET, size);
+        INTS.setRelease(buffer, GENERATION_OFFSET, generation);
+        LONGS.setRelease(buffer, READ_SEQUENCE_OFFSET, 0L);
+        LONGS.setRelease(buffer, WRITE_SEQUENCE_OFFSET, 0L);
+        INTS.setRelease(buffer, 0, MAGIC);
+        return new SharedMemoryRing(file, channel, buffer, size, generation);
+    }
+
+    /**
+     * Opens an existing ring file on the consumer side.
+     *
+     * @param file the file created by the producer
+     * @return the ring
+     * @throws NoSuchFileException if the file is missing
+     * @throws IOException if the file is not a ring, or its header is not published yet
+     */
+    public static SharedMemoryRing open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a shared memory ring: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            if ((int) INTS.getAcquire(buffer, 0) != MAGIC) {
+                throw new IOException("Not a shared memory ring: " + file);
+            }
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            int generation = buffer.getInt(GENERATION_OFFSET);
+            if (HEADER_SIZE + (long) capacity * RECORD_SIZE > size) {
+                throw new IOException("Shared memory ring is shorter than its capacity: " + file);
+            }
+            SharedMemoryRing ring = new SharedMemoryRing(file, channel, buffer, capacity, generation);
+            ring.cachedWriteSequence = ring.readSequence();
+            return ring;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a record. Must only be called by one producer thread at a time.
+     *
+     * @return {@code false} if the ring is full and the record was not written
+     */
+    public boolean offer(int patientId, int typeCode, long timestamp, double value) {
+        long sequence = (long) LONGS.get(buffer, WRITE_SEQUENCE_OFFSET);
+        if (sequence - cachedReadSequence >= capacity) {
+            cachedReadSequence = (long) LONGS.getAcquire(buffer, READ_SEQUENCE_OFFSET);
+            if (sequence - cachedReadSequence >= capacity) {
+                return false;
+            }
+        }
+        int offset = HEADER_SIZE + (int) (sequence & mask) * RECORD_SIZE;
+        buffer.putInt(offset, patientId);
+        buffer.putInt(offset + 4, typeCode);
+        buffer.putLong(offset + 8, timestamp);
+        buffer.putDouble(offset + 16, value);
+        LONGS.setRelease(buffer, WRITE_SEQUENCE_OFFSET, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code maxRecords} available records to the consumer and frees their
+     * slots. Must only be called by one consumer thread at a time.
+     *
+     * @param consumer   receives the records
+     * @param maxRecords the maximum number of records to take
+     * @return the number of records taken
+     */
+    public int drain(RecordConsumer consumer, int maxRecords) {
+        if ((int) INTS.getAcquire(buffer, 0) != MAGIC) {
+            return 0; // the producer is rewriting the header
+        }
+        if ((int) INTS.getAcquire(buffer, GENERATION_OFFSET) != generation && !reattach()) {
+            return 0;
+        }
+        long sequence = readSequence();
+        if (sequence >= cachedWriteSequence) {
+            cachedWriteSequence = (long) LONGS.getAcquire(buffer, WRITE_SEQUENCE_OFFSET);
+        }
+        if (cachedWriteSequence < sequence) {
+            return 0; // reset by a restart whose generation is not visible yet
+        }
+        int count = (int) Math.min(maxRecords, cachedWriteSequence - sequence);
+        for (int i = 0; i < count; i++) {
+            int offset = HEADER_SIZE + (int) ((sequence + i) & mask) * RECORD_SIZE;
+            consumer.accept(buffer.getInt(offset), buffer.getInt(offset + 4),
+                    buffer.getLong(offset + 8), buffer.getDouble(offset + 16));
+        }
+        if (count > 0) {
+            LONGS.compareAndSet(buffer, READ_SEQUENCE_OFFSET, sequence, sequence + count);
+        }
+        return count;
+    }
+
+    /**
+     * Maps the ring again after the producer recreated it, which may have changed its
+     * capacity and has reset both sequences.
+     *
+     * @return {@code false} if the new header is not published yet
+     */
+    private boolean reattach() {
+        SharedMemoryRing fresh;
+        try {
+            fresh = open(file);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing shared memory ring " + file + ": " + e.getMessage());
+        }
+        channel = fresh.channel;
+        buffer = fresh.buffer;
+        capacity = fresh.capacity;
+        mask = fresh.mask;
+        generation = fresh.generation;
+        cachedWriteSequence = fresh.cachedWriteSequence;
+        cachedReadSequence = 0;
+        return true;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private long readSequence() {
+        return (long) LONGS.get(buffer, READ_SEQUENCE_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives the records drained from the ring.
+     */
+    public interface RecordConsumer {
+        void accept(int patientId, int typeCode, long timestamp, double value);
+    }
+}
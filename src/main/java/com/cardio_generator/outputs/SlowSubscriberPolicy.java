@@ -0,0 +1,12 @@
+package com.cardio_generator.outputs;
+
+/**
+ * What a socket output does with a subscriber whose write buffer is full because it
+ * reads more slowly than readings are generated.
+ */
+public enum SlowSubscriberPolicy {
+    /** Close the connection; the client can reconnect and knows it missed data. */
+    DISCONNECT,
+    /** Keep the connection and skip readings until the buffer has room again. */
+    SAMPLE
+}
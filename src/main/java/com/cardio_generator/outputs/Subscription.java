@@ -0,0 +1,124 @@
+package com.cardio_generator.outputs;
+
+import java.util.BitSet;
+
+/**
+ * The readings a client of a socket output wants to receive.
+ *
+ * <p>Clients choose them by sending a line of text:
+ * <pre>
+ *   subscribe                                    every reading (the default)
+ *   subscribe patients=1-30,42                   readings of patients 1 to 30 and 42
+ *   subscribe patients=7 labels=ECG,Saturation   the ECG and saturation of patient 7
+ *   unsubscribe                                  no readings
+ * </pre>
+ * A new {@code subscribe} replaces the previous one.
+ */
+public final class Subscription {
+    /** The largest patient ID a client can subscribe to, which bounds the routing tables. */
+    public static final int MAX_PATIENT_ID = 1 << 20;
+    public static final Subscription ALL = new Subscription(null, -1);
+    public static final Subscription NONE = new Subscription(new BitSet(), 0);
+
+    private final BitSet patients;
+    private final int typeMask;
+
+    /**
+     * @param patients the patient IDs, or {@code null} for all patients
+     * @param typeMask a bit per {@link ReadingType} code, or -1 for all labels
+     */
+    Subscription(BitSet patients, int typeMask) {
+        this.patients = patients;
+        this.typeMask = typeMask;
+    }
+
+    /**
+     * Parses a {@code subscribe} or {@code unsubscribe} command.
+     *
+     * @param command the line sent by the client
+     * @return the subscription
+     * @throws IllegalArgumentException if the command is not valid
+     */
+    public static Subscription parse(String command) {
+        String[] words = command.trim().split("\\s+");
+        if (words[0].equals("unsubscribe") && words.length == 1) {
+            return NONE;
+        }
+        if (!words[0].equals("subscribe")) {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        BitSet patients = null;
+        int typeMask = -1;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].startsWith("patients=")) {
+                patients = parsePatients(words[i].substring(9));
+            } else if (words[i].startsWith("labels=")) {
+                typeMask = parseLabels(words[i].substring(7));
+            } else {
+                throw new IllegalArgumentException("Unknown filter: " + words[i]);
+            }
+        }
+        return patients == null && typeMask == -1 ? ALL : new Subscription(patients, typeMask);
+    }
+
+    private static BitSet parsePatients(String list) {
+        BitSet patients = new BitSet();
+        for (String part : list.split(",")) {
+            int dash = part.indexOf('-', 1);
+            int first;
+            int last;
+            try {
+                first = Integer.parseInt(dash < 0 ? part : part.substring(0, dash));
+                last = dash < 0 ? first : Integer.parseInt(part.substring(dash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid patient ID: " + part);
+            }
+            if (first < 0 || last < first || last > MAX_PATIENT_ID) {
+                throw new IllegalArgumentException("Invalid patient range: " + part);
+            }
+            patients.set(first, last + 1);
+        }
+        return patients;
+    }
+
+    private static int parseLabels(String list) {
+        int typeMask = 0;
+        for (String label : list.split(",")) {
+            ReadingType type = ReadingType.fromLabel(label);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown label: " + label);
+            }
+            typeMask |= 1 << type.getCode();
+        }
+        return typeMask;
+    }
+
+    public boolean isAll() {
+        return patients == null && typeMask == -1;
+    }
+
+    /**
+     * Returns the subscribed patient IDs.
+     *
+     * @return the patient IDs, or {@code null} for all patients
+     */
+    BitSet getPatients() {
+        return patients;
+    }
+
+    /**
+     * Checks whether a reading is subscribed to.
+     *
+     * @param patientId the ID of the patient
+     * @param typeCode  the code of the {@link ReadingType}, or -1 for a label that has none,
+     *                  which only subscriptions to all labels receive
+     * @return whether the reading is sent to the client
+     */
+    public boolean matches(int patientId, int typeCode) {
+        return includesType(typeCode) && (patients == null || patientId >= 0 && patients.get(patientId));
+    }
+
+    boolean includesType(int typeCode) {
+        return typeMask == -1 || typeCode >= 0 && (typeMask & 1 << typeCode) != 0;
+    }
+}
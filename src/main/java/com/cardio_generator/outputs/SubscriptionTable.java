@@ -0,0 +1,236 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An immutable routing table from readings to the clients of a socket output whose
+ * {@link Subscription} includes them.
+ *
+ * <p>The clients are numbered in slots, and the table keeps a bit set of slots per reading
+ * type and per subscribed patient ID, runs of patients with the same subscribers sharing one
+ * set. Matching a reading ANDs two of these sets, so its cost depends on the number of
+ * clients that want the reading rather than on the number of clients. The outputs rebuild
+ * the table whenever a client connects, subscribes or leaves.
+ *
+ * @param <T> the type of the clients
+ */
+final class SubscriptionTable<T> {
+    private static final int UNKNOWN_TYPE = ReadingType.values().length;
+
+    private final Object[] members;
+    private final long[] unfiltered;
+    private final long[] anyPatient;
+    private final long[][] byType;
+    private final long[][] byPatient;
+    private final boolean allUnfiltered;
+
+    private SubscriptionTable(Object[] members, long[] unfiltered, long[] anyPatient, long[][] byType,
+            long[][] byPatient, boolean allUnfiltered) {
+        this.members = members;
+        this.unfiltered = unfiltered;
+        this.anyPatient = anyPatient;
+        this.byType = byType;
+        this.byPatient = byPatient;
+        this.allUnfiltered = allUnfiltered;
+    }
+
+    /**
+     * Builds the table for the given clients.
+     *
+     * @param members        the clients, numbered in slots by their order
+     * @param subscriptionOf returns the subscription of a client
+     * @param <T>            the type of the clients
+     * @return the table
+     */
+    static <T> SubscriptionTable<T> build(List<T> members, Function<T, Subscription> subscriptionOf) {
+        Object[] slots = members.toArray();
+        int words = (slots.length + 63) >>> 6;
+        long[] unfiltered = new long[words];
+        long[] anyPatient = new long[words];
+        long[][] byType = new long[UNKNOWN_TYPE + 1][words];
+        boolean allUnfiltered = true;
+        long[] events = new long[16];
+        int eventCount = 0;
+        int maxPatientId = -1;
+        for (int slot = 0; slot < slots.length; slot++) {
+            @SuppressWarnings("unchecked")
+            Subscription subscription = subscriptionOf.apply((T) slots[slot]);
+            long bit = 1L << slot;
+            int word = slot >>> 6;
+            if (subscription.isAll()) {
+                unfiltered[word] |= bit;
+            } else {
+                allUnfiltered = false;
+            }
+            for (int type = 0; type < UNKNOWN_TYPE; type++) {
+                if (subscription.includesType(type)) {
+                    byType[type][word] |= bit;
+                }
+            }
+            if (subscription.includesType(-1)) {
+                byType[UNKNOWN_TYPE][word] |= bit;
+            }
+            BitSet patients = subscription.getPatients();
+            if (patients == null) {
+                anyPatient[word] |= bit;
+                continue;
+            }
+            // A run of subscribed patients becomes an event where the slot is added and one
+            // where it is removed, sorted by patient ID below
+            for (int start = patients.nextSetBit(0); start >= 0; start = patients.nextSetBit(start)) {
+                int end = patients.nextClearBit(start);
+                if (eventCount + 2 > events.length) {
+                    events = Arrays.copyOf(events, events.length * 2);
+                }
+                events[eventCount++] = (long) start << 32 | 1L << 31 | slot;
+                events[eventCount++] = (long) end << 32 | slot;
+                maxPatientId = Math.max(maxPatientId, end - 1);
+                start = end;
+            }
+        }
+        return new SubscriptionTable<>(slots, unfiltered, anyPatient, byType,
+                patientSets(events, eventCount, maxPatientId, words), allUnfiltered);
+    }
+
+    /**
+     * Sweeps the sorted run events, sharing one set of slots among all patients between
+     * two events.
+     */
+    private static long[][] patientSets(long[] events, int eventCount, int maxPatientId, int words) {
+        long[][] byPatient = new long[maxPatientId + 1][];
+        Arrays.sort(events, 0, eventCount);
+        long[] current = new long[words];
+        int e = 0;
+        while (e < eventCount) {
+            int patientId = (int) (events[e] >>> 32);
+            while (e < eventCount && (int) (events[e] >>> 32) == patientId) {
+                int slot = (int) (events[e] & 0x7FFFFFFF);
+                if ((events[e] & 1L << 31) != 0) {
+                    current[slot >>> 6] |= 1L << slot;
+                } else {
+                    current[slot >>> 6] &= ~(1L << slot);
+                }
+                e++;
+            }
+            int next = e < eventCount ? (int) (events[e] >>> 32) : maxPatientId + 1;
+            long[] shared = isEmpty(current) ? null : current.clone();
+            Arrays.fill(byPatient, patientId, Math.min(next, maxPatientId + 1), shared);
+        }
+        return byPatient;
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return members.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int slot) {
+        return (T) members[slot];
+    }
+
+    /**
+     * Returns whether every client receives every reading, in which case the outputs skip
+     * the routing.
+     *
+     * @return {@code true} if no client has a filter
+     */
+    boolean isUnfiltered() {
+        return allUnfiltered;
+    }
+
+    /**
+     * Finds the clients that receive a reading.
+     *
+     * @param patientId the ID of the patient
+     * @param typeCode  the code of the {@link ReadingType}, or -1 for a label that has none
+     * @param slots     receives the slots of the clients, at least {@link #size()} long
+     * @return the number of slots found
+     */
+    int match(int patientId, int typeCode, int[] slots) {
+        return match(patientId, typeCode, slots, false);
+    }
+
+    private int match(int patientId, int typeCode, int[] slots, boolean filteredOnly) {
+        long[] type = byType[typeCode < 0 || typeCode >= UNKNOWN_TYPE ? UNKNOWN_TYPE : typeCode];
+        long[] patient = patientId >= 0 && patientId < byPatient.length ? byPatient[patientId] : null;
+        int count = 0;
+        for (int w = 0; w < type.length; w++) {
+            long matched = type[w] & (patient == null ? anyPatient[w] : anyPatient[w] | patient[w]);
+            if (filteredOnly) {
+                matched &= ~unfiltered[w];
+            }
+            while (matched != 0) {
+                slots[count++] = w << 6 | Long.numberOfTrailingZeros(matched);
+                matched &= matched - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Splits encoded readings among the clients. Clients without a filter share one buffer
+     * of all readings; the others get a buffer of just the lines they subscribed to.
+     *
+     * @param batch    the readings
+     * @param lines    the readings encoded as lines, in the order of the batch
+     * @param ends     the end offset of every line in {@code lines}
+     * @param readings receives the number of readings per slot, at least {@link #size()} long
+     * @return a buffer per slot, {@code null} for clients that receive none of the readings
+     */
+    ByteBuffer[] route(OutputBatch batch, byte[] lines, int[] ends, int[] readings) {
+        int[] slots = new int[members.length];
+        int[] sizes = new int[members.length];
+        Arrays.fill(readings, 0, members.length, 0);
+        for (int i = 0; i < batch.size(); i++) {
+            int length = ends[i] - (i == 0 ? 0 : ends[i - 1]);
+            int count = match(batch.getPatientId(i), batch.getType(i).getCode(), slots, true);
+            for (int k = 0; k < count; k++) {
+                sizes[slots[k]] += length;
+                readings[slots[k]]++;
+            }
+        }
+        ByteBuffer[] parts = new ByteBuffer[members.length];
+        byte[][] arrays = new byte[members.length][];
+        for (int slot = 0; slot < members.length; slot++) {
+            if (sizes[slot] > 0) {
+                arrays[slot] = new byte[sizes[slot]];
+                sizes[slot] = 0;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            int start = i == 0 ? 0 : ends[i - 1];
+            int count = match(batch.getPatientId(i), batch.getType(i).getCode(), slots, true);
+            for (int k = 0; k < count; k++) {
+                int slot = slots[k];
+                System.arraycopy(lines, start, arrays[slot], sizes[slot], ends[i] - start);
+                sizes[slot] += ends[i] - start;
+            }
+        }
+        ByteBuffer all = null;
+        for (int slot = 0; slot < members.length; slot++) {
+            if ((unfiltered[slot >>> 6] & 1L << slot) != 0) {
+                if (all == null) {
+                    all = ByteBuffer.wrap(Arrays.copyOf(lines, ends[batch.size() - 1]));
+                }
+                parts[slot] = all.duplicate();
+                readings[slot] = batch.size();
+            } else if (arrays[slot] != null) {
+                parts[slot] = ByteBuffer.wrap(arrays[slot]);
+            }
+        }
+        return parts;
+    }
+}
@@ -1,46 +1,126 @@
 package com.cardio_generator.outputs;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@code TcpOutputStrategy} is an implementation of the {@code OutputStrategy} interface that sends data
- * over a TCP connection. It starts a TCP server on a specified port and waits for a client to connect.
- * Once a client is connected, it transmits formatted patient data to the client.
+ * over TCP connections. It starts a TCP server on a specified port and sends formatted patient data to
+ * every client that connects.
  *
  * <p>Data is formatted as: {@code patientId,timestamp,label,data}
- * <p>The server accepts a single client connection in a separate thread to avoid blocking the main thread.
+ * <p>A single non-blocking I/O thread accepts clients and writes to them through a selector, so the
+ * generator threads never wait for a socket.
+ * <p>For a consumer on the same host the server can listen on a Unix domain socket instead,
+ * which skips the loopback TCP stack.
+ * <p>Readings are encoded once by a {@link ReadingEncoder} and the same bytes are queued for every
+ * subscriber, up to a bounded number of bytes each; the I/O thread sends a subscriber's queue with
+ * gathering writes. A subscriber that cannot keep up is disconnected or sampled, as set by the
+ * {@link SlowSubscriberPolicy}, and never slows down generation or the other subscribers.
+ * <p>A client can narrow down the readings it receives by sending a {@link Subscription}
+ * command, e.g. {@code subscribe patients=1-30 labels=ECG}, as a line of text.
  *
  */
 
-public class TcpOutputStrategy implements OutputStrategy {
+public class TcpOutputStrategy implements OutputStrategy, Closeable {
+    public static final int DEFAULT_SUBSCRIBER_BUFFER = 4 * 1024 * 1024;
+    private static final int MAX_GATHER = 64;
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private final int subscriberBufferBytes;
+    private final SlowSubscriberPolicy slowSubscriberPolicy;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile SubscriptionTable<Subscriber> table = SubscriptionTable.build(List.of(), s -> s.subscription);
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final LongAdder droppedReadings = new LongAdder();
+    private final ThreadLocal<ReadingEncoder> encoders = ThreadLocal.withInitial(() -> new ReadingEncoder(8192));
+    private final ThreadLocal<int[]> matches = ThreadLocal.withInitial(() -> new int[64]);
+    private volatile boolean running;
 
     public TcpOutputStrategy(int port) {
+        this(port, DEFAULT_SUBSCRIBER_BUFFER, SlowSubscriberPolicy.DISCONNECT);
+    }
+
+    /**
+     * Starts the server on a TCP port.
+     *
+     * @param port                  the port to listen on
+     * @param subscriberBufferBytes the bytes queued per subscriber before it counts as slow
+     * @param slowSubscriberPolicy  what to do with a slow subscriber
+     */
+    public TcpOutputStrategy(int port, int subscriberBufferBytes, SlowSubscriberPolicy slowSubscriberPolicy) {
+        this.subscriberBufferBytes = subscriberBufferBytes;
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
         try {
-            serverSocket = new ServerSocket(port);
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
             System.out.println("TCP Server started on port " + port);
+            start("tcp-output-" + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+    /**
+     * Starts the server on a Unix domain socket. A stale socket file left at the path
+     * by an earlier run is removed first.
+     *
+     * @param socketPath the file system path of the socket
+     */
+    public TcpOutputStrategy(Path socketPath) {
+        this(socketPath, DEFAULT_SUBSCRIBER_BUFFER, SlowSubscriberPolicy.DISCONNECT);
+    }
+
+    /**
+     * Starts the server on a Unix domain socket. A stale socket file left at the path
+     * by an earlier run is removed first.
+     *
+     * @param socketPath            the file system path of the socket
+     * @param subscriberBufferBytes the bytes queued per subscriber before it counts as slow
+     * @param slowSubscriberPolicy  what to do with a slow subscriber
+     */
+    public TcpOutputStrategy(Path socketPath, int subscriberBufferBytes, SlowSubscriberPolicy slowSubscriberPolicy) {
+        this.subscriberBufferBytes = subscriberBufferBytes;
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
+        try {
+            Files.deleteIfExists(socketPath);
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+            System.out.println("Unix domain socket server started on " + socketPath);
+            start("unix-output");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private void start(String threadName) throws IOException {
+        selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        Thread ioThread = new Thread(this::run, threadName);
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
     /**
      * Prints out all filled data
      *
@@ -51,9 +131,323 @@ public class TcpOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (!subscribers.isEmpty()) {
+            ReadingEncoder encoder = encoders.get();
+            encoder.clear();
+            encoder.appendCsv(patientId, timestamp, label, data);
+            ReadingType type = ReadingType.fromLabel(label);
+            publish(encoder, patientId, type == null ? -1 : type.getCode());
+        }
+    }
+
+    /**
+     * Sends a reading given as a number, encoded without intermediate strings.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     * @throws IllegalArgumentException if the type code is unknown
+     */
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        ReadingType type = ReadingType.requireCode(typeCode);
+        if (!subscribers.isEmpty()) {
+            ReadingEncoder encoder = encoders.get();
+            encoder.clear();
+            encoder.appendCsv(patientId, timestamp, type, value);
+            publish(encoder, patientId, typeCode);
+        }
+    }
+
+    /**
+     * Sends all readings of a batch as one chunk, or the part a subscriber subscribed to.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(OutputBatch batch) {
+        SubscriptionTable<Subscriber> table = this.table;
+        if (table.size() == 0 || batch.isEmpty()) {
+            return;
+        }
+        ReadingEncoder encoder = encoders.get();
+        encoder.clear();
+        int[] ends = table.isUnfiltered() ? null : new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            encoder.appendCsv(batch.getPatientId(i), batch.getTimestamp(i), batch.getType(i), batch.getValue(i));
+            if (ends != null) {
+                ends[i] = encoder.size();
+            }
+        }
+        if (ends == null) {
+            publish(table, encoder);
+            return;
+        }
+        int[] readings = new int[table.size()];
+        ByteBuffer[] parts = table.route(batch, encoder.array(), ends, readings);
+        for (int slot = 0; slot < parts.length; slot++) {
+            if (parts[slot] != null && !table.get(slot).offer(parts[slot])) {
+                droppedReadings.add(readings[slot]);
+            }
+        }
+        wakeUp();
+    }
+
+    /**
+     * Returns the number of subscribers readings are routed to.
+     *
+     * @return the number of connected clients
+     */
+    public int getSubscriberCount() {
+        return table.size();
+    }
+
+    /**
+     * Returns the number of readings not sent to a subscriber because it was too slow.
+     *
+     * @return the number of readings, summed over all subscribers
+     */
+    public long getDroppedReadings() {
+        return droppedReadings.sum();
+    }
+
+    /**
+     * Stops the server and disconnects all subscribers.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Queues an encoded reading for the subscribers that want it.
+     */
+    private void publish(ReadingEncoder encoder, int patientId, int typeCode) {
+        SubscriptionTable<Subscriber> table = this.table;
+        if (table.isUnfiltered()) {
+            publish(table, encoder);
+            return;
+        }
+        int[] slots = matches.get();
+        if (slots.length < table.size()) {
+            slots = new int[table.size() * 2];
+            matches.set(slots);
+        }
+        int count = table.match(patientId, typeCode, slots);
+        if (count == 0) {
+            return;
+        }
+        ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOf(encoder.array(), encoder.size()));
+        for (int k = 0; k < count; k++) {
+            if (!table.get(slots[k]).offer(chunk.duplicate())) {
+                droppedReadings.increment();
+            }
+        }
+        wakeUp();
+    }
+
+    /**
+     * Queues the encoded readings for every subscriber.
+     */
+    private void publish(SubscriptionTable<Subscriber> table, ReadingEncoder encoder) {
+        ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOf(encoder.array(), encoder.size()));
+        for (int slot = 0; slot < table.size(); slot++) {
+            if (!table.get(slot).offer(chunk.duplicate())) {
+                droppedReadings.add(encoder.getReadingCount());
+            }
+        }
+        wakeUp();
+    }
+
+    /**
+     * Wakes up the I/O thread, at most once until it has run.
+     */
+    private void wakeUp() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Publishes a new routing table after a subscriber joined, left or subscribed.
+     */
+    private void updateTable() {
+        table = SubscriptionTable.build(subscribers, s -> s.subscription);
+    }
+
+    /**
+     * The I/O thread: accepts subscribers and sends their queues.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select(100);
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid() && key.isReadable()) {
+                        ((Subscriber) key.attachment()).receive();
+                    }
+                }
+                selector.selectedKeys().clear();
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.send();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.disconnect(null);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client;
+        while ((client = serverChannel.accept()) != null) {
+            client.configureBlocking(false);
+            Subscriber subscriber = new Subscriber(client);
+            subscriber.key = client.register(selector, SelectionKey.OP_READ, subscriber);
+            subscribers.add(subscriber);
+            updateTable();
+            System.out.println("Client connected: " + client.getRemoteAddress());
+        }
+    }
+
+    /**
+     * A connected client and the chunks queued for it.
+     */
+    private final class Subscriber {
+        private final SocketChannel channel;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private final ByteBuffer commands = ByteBuffer.allocate(1024);
+        private Subscription subscription = Subscription.ALL;
+        private SelectionKey key;
+        private long queuedBytes;
+        private boolean overflowed;
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queues a chunk unless the subscriber is too far behind.
+         *
+         * @return {@code false} if the chunk was dropped
+         */
+        synchronized boolean offer(ByteBuffer chunk) {
+            if (overflowed) {
+                return false;
+            }
+            if (queuedBytes + chunk.remaining() > subscriberBufferBytes) {
+                overflowed = slowSubscriberPolicy == SlowSubscriberPolicy.DISCONNECT;
+                return false;
+            }
+            queue.add(chunk);
+            queuedBytes += chunk.remaining();
+            return true;
+        }
+
+        /**
+         * Writes as much of the queue as the socket takes without blocking, and only
+         * asks the selector about writability while something is left.
+         */
+        void send() {
+            int count;
+            synchronized (this) {
+                if (overflowed) {
+                    disconnect("too slow, " + queuedBytes + " bytes behind");
+                    return;
+                }
+                count = 0;
+                for (ByteBuffer chunk : queue) {
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                    gather[count++] = chunk;
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+            long written;
+            try {
+                written = channel.write(gather, 0, count);
+            } catch (IOException e) {
+                disconnect(e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                queuedBytes -= written;
+                while (!queue.isEmpty() && !queue.peek().hasRemaining()) {
+                    queue.poll();
+                }
+                key.interestOps(queue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            Arrays.fill(gather, 0, count, null);
+        }
+
+        /**
+         * Reads subscription commands sent by the client, one per line.
+         */
+        void receive() {
+            try {
+                if (channel.read(commands) < 0) {
+                    disconnect("closed by client");
+                    return;
+                }
+            } catch (IOException e) {
+                disconnect(e.getMessage());
+                return;
+            }
+            commands.flip();
+            int start = 0;
+            for (int i = 0; i < commands.limit(); i++) {
+                if (commands.get(i) == '\n') {
+                    String command = new String(commands.array(), start, i - start, StandardCharsets.US_ASCII);
+                    try {
+                        subscription = Subscription.parse(command);
+                        updateTable();
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid subscription: " + e.getMessage());
+                    }
+                    start = i + 1;
+                }
+            }
+            commands.position(start);
+            commands.compact();
+            if (!commands.hasRemaining()) {
+                System.err.println("Subscription command too long, discarded");
+                commands.clear();
+            }
+        }
+
+        void disconnect(String reason) {
+            if (subscribers.remove(this)) {
+                updateTable();
+            }
+            if (reason != null) {
+                System.err.println("Client disconnected: " + reason);
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
         }
     }
 }
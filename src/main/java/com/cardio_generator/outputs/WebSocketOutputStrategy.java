@@ -1,15 +1,68 @@
 package com.cardio_generator.outputs;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.TextFrame;
 import org.java_websocket.server.WebSocketServer;
 
+import java.io.Closeable;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
-public class WebSocketOutputStrategy implements OutputStrategy {
+/**
+ * {@code WebSocketOutputStrategy} is an implementation of {@code OutputStrategy} that sends
+ * every reading as a text message to all connected WebSocket clients.
+ *
+ * <p>Data is formatted as: {@code patientId,timestamp,label,data}
+ * <p>Each generator thread encodes its readings with its own {@link ReadingEncoder} and
+ * hands the bytes to the connections as a text frame, so no message string is built.
+ * <p>With tick frames enabled, a batch of readings (one tick of a patient group) is encoded
+ * once into a single text frame of newline separated lines, and that same frame is sent to
+ * every connection, so the cost per reading does not grow with the number of clients.
+ * <p>The frames waiting in the send queue of every connection are checked before sending.
+ * A connection with more than the allowed number queued is disconnected, or skips frames
+ * until it has caught up, as set by the {@link SlowSubscriberPolicy}.
+ * <p>A client can narrow down the readings it receives by sending a {@link Subscription}
+ * command as a text message, e.g. {@code subscribe patients=1-30 labels=ECG}.
+ */
+public class WebSocketOutputStrategy implements OutputStrategy, Closeable {
+    public static final int DEFAULT_MAX_QUEUED_FRAMES = 1000;
 
     private WebSocketServer server;
+    private final boolean tickFrames;
+    private final int maxQueuedFrames;
+    private final SlowSubscriberPolicy slowSubscriberPolicy;
+    private final List<WebSocket> connections = new CopyOnWriteArrayList<>();
+    private volatile SubscriptionTable<WebSocket> table = SubscriptionTable.build(List.of(), c -> c.getAttachment());
+    private final LongAdder droppedReadings = new LongAdder();
+    private final LongAccumulator peakQueuedFrames = new LongAccumulator(Math::max, 0);
+    private final ThreadLocal<ReadingEncoder> encoders = ThreadLocal.withInitial(() -> new ReadingEncoder(256));
+    private final ThreadLocal<int[]> matches = ThreadLocal.withInitial(() -> new int[64]);
 
     public WebSocketOutputStrategy(int port) {
+        this(port, false, DEFAULT_MAX_QUEUED_FRAMES, SlowSubscriberPolicy.DISCONNECT);
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @param port                 the port to listen on
+     * @param tickFrames           whether to send each batch as one multi-line frame instead of
+     *                             a frame per reading
+     * @param maxQueuedFrames      the frames a connection may have queued before it counts as slow
+     * @param slowSubscriberPolicy what to do with a slow connection
+     */
+    public WebSocketOutputStrategy(int port, boolean tickFrames, int maxQueuedFrames,
+            SlowSubscriberPolicy slowSubscriberPolicy) {
+        this.tickFrames = tickFrames;
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
         server = new SimpleWebSocketServer(new InetSocketAddress(port));
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
@@ -17,14 +70,205 @@ public class WebSocketOutputStrategy implements OutputStrategy {
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (connections.isEmpty()) {
+            return;
+        }
+        ReadingEncoder encoder = encoders.get();
+        encoder.clear();
+        encoder.appendCsv(patientId, timestamp, label, data);
+        ReadingType type = ReadingType.fromLabel(label);
+        broadcast(encoder, patientId, type == null ? -1 : type.getCode());
+    }
+
+    /**
+     * Sends a reading given as a number, encoded without intermediate strings.
+     *
+     * @param patientId the unique ID of the patient
+     * @param timestamp the time when the data was generated in milliseconds
+     * @param typeCode the code of the {@link ReadingType} of the data
+     * @param value the actual health data
+     * @throws IllegalArgumentException if the type code is unknown
+     */
+    @Override
+    public void output(int patientId, long timestamp, int typeCode, double value) {
+        ReadingType type = ReadingType.requireCode(typeCode);
+        if (connections.isEmpty()) {
+            return;
+        }
+        ReadingEncoder encoder = encoders.get();
+        encoder.clear();
+        encoder.appendCsv(patientId, timestamp, type, value);
+        broadcast(encoder, patientId, typeCode);
+    }
+
+    /**
+     * Sends a batch as one frame when tick frames are enabled, otherwise a frame per reading.
+     *
+     * @param batch the readings to output
+     */
+    @Override
+    public void output(OutputBatch batch) {
+        if (!tickFrames) {
+            OutputStrategy.super.output(batch);
+            return;
         }
+        if (connections.isEmpty() || batch.size() == 0) {
+            return;
+        }
+        SubscriptionTable<WebSocket> table = this.table;
+        ReadingEncoder encoder = encoders.get();
+        encoder.clear();
+        int[] ends = table.isUnfiltered() ? null : new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            encoder.appendCsv(batch.getPatientId(i), batch.getTimestamp(i), batch.getType(i), batch.getValue(i));
+            if (ends != null) {
+                ends[i] = encoder.size();
+            }
+        }
+        if (ends == null) {
+            TextFrame frame = frame(ByteBuffer.wrap(encoder.array(), 0, encoder.size()));
+            for (int slot = 0; slot < table.size(); slot++) {
+                send(table.get(slot), frame, batch.size());
+            }
+            return;
+        }
+        int[] readings = new int[table.size()];
+        ByteBuffer[] parts = table.route(batch, encoder.array(), ends, readings);
+        TextFrame shared = null;
+        for (int slot = 0; slot < parts.length; slot++) {
+            if (parts[slot] == null) {
+                continue;
+            }
+            TextFrame frame;
+            if (readings[slot] == batch.size()) {
+                // Every client receiving the whole batch shares one frame
+                if (shared == null) {
+                    shared = frame(parts[slot]);
+                }
+                frame = shared;
+            } else {
+                frame = frame(parts[slot]);
+            }
+            send(table.get(slot), frame, readings[slot]);
+        }
+    }
+
+    /**
+     * Returns the number of connections readings are routed to.
+     *
+     * @return the number of open connections
+     */
+    public int getConnectionCount() {
+        return table.size();
+    }
+
+    /**
+     * Returns the number of readings not sent to a connection because it was too slow.
+     *
+     * @return the number of readings, summed over all connections
+     */
+    public long getDroppedReadings() {
+        return droppedReadings.sum();
+    }
+
+    /**
+     * Returns the most frames seen waiting in the send queue of a single connection.
+     *
+     * @return the deepest send queue observed
+     */
+    public long getPeakQueuedFrames() {
+        return peakQueuedFrames.get();
+    }
+
+    /**
+     * Returns the port the server listens on, which is only known once it has started
+     * when it was created with port 0.
+     *
+     * @return the port, or 0 or less while the server is starting
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     */
+    @Override
+    public void close() {
+        try {
+            server.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Broadcasts an encoded reading to the connections subscribed to it.
+     */
+    private void broadcast(ReadingEncoder encoder, int patientId, int typeCode) {
+        SubscriptionTable<WebSocket> table = this.table;
+        TextFrame frame = frame(ByteBuffer.wrap(encoder.array(), 0, encoder.size()));
+        if (table.isUnfiltered()) {
+            for (int slot = 0; slot < table.size(); slot++) {
+                send(table.get(slot), frame, 1);
+            }
+            return;
+        }
+        int[] slots = matches.get();
+        if (slots.length < table.size()) {
+            slots = new int[table.size() * 2];
+            matches.set(slots);
+        }
+        int count = table.match(patientId, typeCode, slots);
+        for (int k = 0; k < count; k++) {
+            send(table.get(slots[k]), frame, 1);
+        }
+    }
+
+    /**
+     * Creates a text frame of encoded lines, without the last newline. A frame can be sent
+     * to several connections, since the library only reads its payload when framing it for
+     * a connection.
+     */
+    private static TextFrame frame(ByteBuffer lines) {
+        TextFrame frame = new TextFrame();
+        lines.limit(lines.limit() - 1);
+        frame.setPayload(lines);
+        frame.setFin(true);
+        return frame;
+    }
+
+    /**
+     * Sends a frame unless the connection is too far behind.
+     */
+    private void send(WebSocket conn, TextFrame frame, int readings) {
+        int queued = ((WebSocketImpl) conn).outQueue.size();
+        peakQueuedFrames.accumulate(queued);
+        if (queued >= maxQueuedFrames) {
+            droppedReadings.add(readings);
+            if (slowSubscriberPolicy == SlowSubscriberPolicy.DISCONNECT && connections.remove(conn)) {
+                updateTable();
+                System.err.println("Disconnecting slow client " + conn.getRemoteSocketAddress()
+                        + ", " + queued + " frames behind");
+                ((WebSocketImpl) conn).closeConnection(CloseFrame.TRY_AGAIN_LATER, "Client too slow");
+            }
+            return;
+        }
+        try {
+            conn.sendFrame(frame);
+        } catch (WebsocketNotConnectedException e) {
+            // The client is closing; it is removed from the connections shortly
+        }
+    }
+
+    /**
+     * Publishes a new routing table after a connection opened, closed or subscribed.
+     */
+    private synchronized void updateTable() {
+        table = SubscriptionTable.build(connections, c -> c.getAttachment());
     }
 
-    private static class SimpleWebSocketServer extends WebSocketServer {
+    private class SimpleWebSocketServer extends WebSocketServer {
 
         public SimpleWebSocketServer(InetSocketAddress address) {
             super(address);
@@ -33,16 +277,28 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
+            conn.setAttachment(Subscription.ALL);
+            connections.add(conn);
+            updateTable();
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
+            if (connections.remove(conn)) {
+                updateTable();
+            }
         }
 
         @Override
         public void onMessage(WebSocket conn, String message) {
-            // Not used in this context
+            try {
+                conn.setAttachment(Subscription.parse(message));
+                updateTable();
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid subscription from " + conn.getRemoteSocketAddress() + ": "
+                        + e.getMessage());
+            }
         }
 
         @Override
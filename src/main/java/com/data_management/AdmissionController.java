@@ -0,0 +1,417 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.cardio_generator.outputs.ReadingType;
+
+/**
+ * Admission control in front of a {@link ReadingSink}, normally the {@link DataStorage}.
+ *
+ * <p>Readers hand their batches to this controller, which queues them for a single
+ * writer thread. The queue depth, in readings, is compared against a budget:
+ * <ul>
+ *   <li>{@link IngestPriority#CRITICAL} readings (the vitals and alerts the alert
+ *       strategies read) are not deferred or shed, but once the queue reaches the hard
+ *       limit the reader handing them over waits until the writer has made room, so
+ *       overload slows the sources down instead of growing the queue without bound;</li>
+ *   <li>{@link IngestPriority#LOW} readings are deferred once the depth reaches the low
+ *       threshold, {@link IngestPriority#NORMAL} ones once it reaches the normal
+ *       threshold;</li>
+ *   <li>above the budget, non-critical readings are shed.</li>
+ * </ul>
+ * Deferred readings are admitted again once the queue has drained below the low
+ * threshold. When the deferred buffer is full, further deferred readings are shed.
+ * Shed and deferred counts are kept per record type. ECG, which the waveform generator
+ * can send at hundreds of samples per second, is {@link IngestPriority#NORMAL} by
+ * default so that it can be shed; {@link #setPriority} changes the class of any type.
+ *
+ * <p>After {@link #close()} the controller rejects further readings, counting them in
+ * {@link #getRejectedCount()}, since its writer thread is no longer there to store them.
+ */
+public class AdmissionController implements ReadingSink, Closeable {
+    private static final double LOW_THRESHOLD_FRACTION = 0.5;
+    private static final double NORMAL_THRESHOLD_FRACTION = 0.8;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final int DEFAULT_HARD_LIMIT_FACTOR = 2;
+
+    private final ReadingSink target;
+    private final int budget;
+    private final int hardLimit;
+    private final int deferredCapacity;
+    private volatile int lowThreshold;
+    private volatile int normalThreshold;
+
+    private final Map<String, IngestPriority> priorities = new ConcurrentHashMap<>();
+    private final BlockingQueue<ReadingBatch> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedReadings = new AtomicInteger();
+    private final Object space = new Object(); // signalled when the writer has stored a batch
+    private final ArrayDeque<ReadingBatch> deferred = new ArrayDeque<>();
+    private int deferredReadings; // guarded by deferred
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final Map<String, LongAdder> deferredCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> shedCounts = new ConcurrentHashMap<>();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Held shared while a batch is queued and exclusively by close(), so nothing is queued
+    // after the writer's final drain
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed; // guarded by closeLock
+
+    /**
+     * Constructs a controller with a hard limit of twice the budget and starts its
+     * writer thread.
+     *
+     * @param target           where admitted readings are written
+     * @param budget           the queue depth, in readings, above which non-critical
+     *                         readings are shed
+     * @param deferredCapacity the number of readings that can wait for re-admission
+     */
+    public AdmissionController(ReadingSink target, int budget, int deferredCapacity) {
+        this(target, budget, budget * DEFAULT_HARD_LIMIT_FACTOR, deferredCapacity);
+    }
+
+    /**
+     * Constructs a controller and starts its writer thread.
+     *
+     * @param target           where admitted readings are written
+     * @param budget           the queue depth, in readings, above which non-critical
+     *                         readings are shed
+     * @param hardLimit        the queue depth, in readings, at which readers wait before
+     *                         queueing more, critical readings included
+     * @param deferredCapacity the number of readings that can wait for re-admission
+     */
+    public AdmissionController(ReadingSink target, int budget, int hardLimit, int deferredCapacity) {
+        if (hardLimit < budget) {
+            throw new IllegalArgumentException("The hard limit must not be below the budget");
+        }
+        this.target = target;
+        this.budget = budget;
+        this.hardLimit = hardLimit;
+        this.deferredCapacity = deferredCapacity;
+        this.lowThreshold = (int) (budget * LOW_THRESHOLD_FRACTION);
+        this.normalThreshold = (int) (budget * NORMAL_THRESHOLD_FRACTION);
+
+        priorities.put(ReadingType.SATURATION.getLabel(), IngestPriority.CRITICAL);
+        priorities.put(ReadingType.SYSTOLIC_PRESSURE.getLabel(), IngestPriority.CRITICAL);
+        priorities.put(ReadingType.DIASTOLIC_PRESSURE.getLabel(), IngestPriority.CRITICAL);
+        priorities.put(ReadingType.ALERT.getLabel(), IngestPriority.CRITICAL);
+        priorities.put(ReadingType.CHOLESTEROL.getLabel(), IngestPriority.LOW);
+        priorities.put(ReadingType.WHITE_BLOOD_CELLS.getLabel(), IngestPriority.LOW);
+        priorities.put(ReadingType.RED_BLOOD_CELLS.getLabel(), IngestPriority.LOW);
+
+        writer = new Thread(this::drain, "ingest-admission");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Changes the priority class of a record type. Unlisted types are
+     * {@link IngestPriority#NORMAL}.
+     *
+     * @param recordType the record type, e.g. "Cholesterol"
+     * @param priority   the priority class
+     */
+    public void setPriority(String recordType, IngestPriority priority) {
+        priorities.put(recordType, priority);
+    }
+
+    /**
+     * Changes the queue depths at which low and normal priority readings are deferred.
+     *
+     * @param lowThreshold    the depth at which low priority readings are deferred
+     * @param normalThreshold the depth at which normal priority readings are deferred
+     */
+    public void setThresholds(int lowThreshold, int normalThreshold) {
+        if (lowThreshold > normalThreshold || normalThreshold > budget) {
+            throw new IllegalArgumentException("Thresholds must satisfy low <= normal <= budget");
+        }
+        this.lowThreshold = lowThreshold;
+        this.normalThreshold = normalThreshold;
+    }
+
+    /**
+     * Admits, defers or sheds each reading of the batch depending on its priority and
+     * the current queue depth. The batch is copied, so the caller may reuse it. If the
+     * admitted readings would take the queue past the hard limit, this waits until the
+     * writer has made room. Once the controller is closed the whole batch is rejected.
+     *
+     * @param batch the readings to add
+     */
+    @Override
+    public void addPatientData(ReadingBatch batch) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                rejected.add(batch.size());
+                System.err.println("Admission control is closed, rejecting " + batch.size() + " readings");
+                return;
+            }
+            admit(batch);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private void admit(ReadingBatch batch) {
+        int depth = queuedReadings.get();
+        ReadingBatch admittedBatch = new ReadingBatch(batch.size());
+        ReadingBatch deferredBatch = null;
+        for (int i = 0; i < batch.size(); i++) {
+            String recordType = batch.getRecordType(i);
+            IngestPriority priority = priorities.getOrDefault(recordType, IngestPriority.NORMAL);
+            if (priority == IngestPriority.CRITICAL || depth < thresholdFor(priority)) {
+                copy(batch, i, admittedBatch);
+            } else if (depth >= budget) {
+                count(shedCounts, recordType);
+            } else {
+                if (deferredBatch == null) {
+                    deferredBatch = new ReadingBatch(batch.size() - i);
+                }
+                copy(batch, i, deferredBatch);
+            }
+        }
+        if (!admittedBatch.isEmpty()) {
+            awaitSpace(admittedBatch.size());
+            enqueue(admittedBatch);
+        }
+        if (deferredBatch != null) {
+            defer(deferredBatch);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queuedReadings.get();
+    }
+
+    public int getDeferredDepth() {
+        synchronized (deferred) {
+            return deferredReadings;
+        }
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * Returns how many readings arrived after {@link #close()} and were not stored.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns how many batches had to wait for the queue to drop below the hard limit.
+     *
+     * @return the throttled batch count
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Returns how many readings of a type were shed.
+     *
+     * @param recordType the record type
+     * @return the shed count
+     */
+    public long getShedCount(String recordType) {
+        LongAdder count = shedCounts.get(recordType);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Returns how many readings of a type were deferred, including ones later admitted.
+     *
+     * @param recordType the record type
+     * @return the deferred count
+     */
+    public long getDeferredCount(String recordType) {
+        LongAdder count = deferredCounts.get(recordType);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the shed counts of all types that had readings shed.
+     *
+     * @return the shed count per record type, ordered by type
+     */
+    public Map<String, Long> getShedCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        shedCounts.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Prints the queue depth and the deferred and shed counts per type.
+     */
+    public void printReport() {
+        System.out.printf("Admission: queue %d/%d (limit %d), deferred %d/%d, admitted %d, throttled %d, "
+                + "rejected %d%n", getQueueDepth(), budget, hardLimit, getDeferredDepth(), deferredCapacity,
+                getAdmittedCount(), getThrottledCount(), getRejectedCount());
+        Set<String> types = new TreeSet<>(deferredCounts.keySet());
+        types.addAll(shedCounts.keySet());
+        for (String type : types) {
+            System.out.printf("  %s: deferred %d, shed %d%n", type, getDeferredCount(type), getShedCount(type));
+        }
+    }
+
+    /**
+     * Stops accepting work and writes everything still queued or deferred. Readings
+     * handed to the controller afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int thresholdFor(IngestPriority priority) {
+        return priority == IngestPriority.LOW ? lowThreshold : normalThreshold;
+    }
+
+    /**
+     * Blocks the calling reader while queueing the readings would pass the hard limit.
+     * A batch larger than the limit is let through once the queue is empty.
+     */
+    private void awaitSpace(int readings) {
+        if (queuedReadings.get() + readings <= hardLimit) {
+            return;
+        }
+        throttled.increment();
+        synchronized (space) {
+            int depth;
+            while ((depth = queuedReadings.get()) > 0 && depth + readings > hardLimit) {
+                try {
+                    space.wait(POLL_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void enqueue(ReadingBatch batch) {
+        queuedReadings.addAndGet(batch.size());
+        admitted.add(batch.size());
+        queue.add(batch);
+    }
+
+    private void defer(ReadingBatch batch) {
+        synchronized (deferred) {
+            int space = deferredCapacity - deferredReadings;
+            ReadingBatch kept = batch;
+            if (batch.size() > space) {
+                kept = new ReadingBatch(Math.max(space, 1));
+                for (int i = 0; i < batch.size(); i++) {
+                    if (i < space) {
+                        copy(batch, i, kept);
+                    } else {
+                        count(shedCounts, batch.getRecordType(i));
+                    }
+                }
+            }
+            for (int i = 0; i < kept.size(); i++) {
+                count(deferredCounts, kept.getRecordType(i));
+            }
+            if (!kept.isEmpty()) {
+                deferred.add(kept);
+                deferredReadings += kept.size();
+            }
+        }
+    }
+
+    /**
+     * Moves deferred batches back into the queue while it stays below the low threshold.
+     */
+    private void readmitDeferred() {
+        synchronized (deferred) {
+            ReadingBatch batch;
+            while ((batch = deferred.peek()) != null
+                    && queuedReadings.get() + batch.size() <= Math.max(lowThreshold, batch.size())) {
+                deferred.poll();
+                deferredReadings -= batch.size();
+                enqueue(batch);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            while (running) {
+                ReadingBatch batch = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    write(batch);
+                }
+                if (queuedReadings.get() < lowThreshold) {
+                    readmitDeferred();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Shutting down: write whatever is left, deferred readings last
+        ReadingBatch batch;
+        while ((batch = queue.poll()) != null) {
+            write(batch);
+        }
+        synchronized (deferred) {
+            while ((batch = deferred.poll()) != null) {
+                deferredReadings -= batch.size();
+                target.addPatientData(batch);
+            }
+        }
+    }
+
+    private void write(ReadingBatch batch) {
+        try {
+            target.addPatientData(batch);
+        } catch (RuntimeException e) {
+            System.err.println("Error storing admitted readings: " + e.getMessage());
+        } finally {
+            queuedReadings.addAndGet(-batch.size());
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+
+    private static void copy(ReadingBatch from, int index, ReadingBatch to) {
+        to.add(from.getPatientId(index), from.getMeasurementValue(index),
+                from.getRecordType(index), from.getTimestamp(index));
+    }
+
+    private static void count(Map<String, LongAdder> counts, String recordType) {
+        counts.computeIfAbsent(recordType, k -> new LongAdder()).increment();
+    }
+}
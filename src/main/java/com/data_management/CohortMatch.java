@@ -0,0 +1,22 @@
+package com.data_management;
+
+/**
+ * A patient found by a {@link CohortQuery} ranking, with the score it was ranked by.
+ */
+public class CohortMatch {
+    private final int patientId;
+    private final double score;
+
+    public CohortMatch(int patientId, double score) {
+        this.patientId = patientId;
+        this.score = score;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,237 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Answers questions about all patients of a {@link DataStorage}, such as which patients
+ * had a low saturation for more than 5 minutes in the last hour, or which 20 have the
+ * most variable systolic pressure.
+ *
+ * <p>The shards of the storage are scanned in parallel on a fixed pool of threads. Each
+ * shard is read in place under its lock, so predicates and scores see the patients
+ * without their records being copied; they are best built from
+ * {@link Patient#aggregate(String, long, long)} and
+ * {@link Patient#forEachValue(String, long, long, SeriesVisitor)}, and should be quick,
+ * since ingest into a shard waits while it is scanned.
+ *
+ * <p>A selection with a limit stops all shards once enough patients are found. A ranking
+ * keeps the best {@code k} patients per shard, and the shards share the lowest score that
+ * is certainly in the overall top {@code k}, so patients that cannot reach it are not
+ * kept, or with an upper bound on the score, not even scored.
+ */
+public class CohortQuery implements Closeable {
+    private static final Comparator<CohortMatch> BEST_FIRST = Comparator.comparingDouble(CohortMatch::getScore)
+            .reversed().thenComparingInt(CohortMatch::getPatientId);
+
+    private final DataStorage dataStorage;
+    private final ExecutorService workers;
+
+    /**
+     * Constructs a query engine.
+     *
+     * @param dataStorage the storage to query
+     * @param threads     the number of threads that scan shards in parallel
+     */
+    public CohortQuery(DataStorage dataStorage, int threads) {
+        this.dataStorage = dataStorage;
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "cohort-query-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finds all patients that match a predicate.
+     *
+     * @param predicate the condition a patient has to meet
+     * @return the IDs of the matching patients, in ascending order
+     * @throws InterruptedException if interrupted while waiting for the shards
+     */
+    public List<Integer> select(Predicate<Patient> predicate) throws InterruptedException {
+        return select(predicate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds up to {@code limit} patients that match a predicate and stops scanning once
+     * they are found. Which patients are returned when more match depends on the order
+     * the shards are scanned in.
+     *
+     * @param predicate the condition a patient has to meet
+     * @param limit     the most patients to return
+     * @return the IDs of the matching patients, in ascending order
+     * @throws InterruptedException if interrupted while waiting for the shards
+     */
+    public List<Integer> select(Predicate<Patient> predicate, int limit) throws InterruptedException {
+        AtomicInteger found = new AtomicInteger();
+        List<List<Integer>> perShard = runShards(shard -> {
+            List<Integer> matches = new ArrayList<>();
+            dataStorage.forEachPatient(shard, patient -> {
+                if (found.get() < limit && predicate.test(patient) && found.getAndIncrement() < limit) {
+                    matches.add(patient.getPatientId());
+                }
+            });
+            return matches;
+        });
+        List<Integer> result = new ArrayList<>();
+        perShard.forEach(result::addAll);
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Ranks the patients by a score and returns the {@code k} highest. Patients with a
+     * score of {@code NaN}, e.g. without readings in the range, are left out.
+     *
+     * @param score computes the score of a patient
+     * @param k     the number of patients to return
+     * @return the best patients, highest score first and ties by patient ID
+     * @throws InterruptedException if interrupted while waiting for the shards
+     */
+    public List<CohortMatch> top(ToDoubleFunction<Patient> score, int k) throws InterruptedException {
+        return top(score, null, k);
+    }
+
+    /**
+     * Ranks the patients by a score and returns the {@code k} highest, only scoring the
+     * patients whose upper bound beats the current {@code k}-th best score. A cheap bound
+     * saves scoring most patients once good candidates have been found.
+     *
+     * @param score      computes the score of a patient
+     * @param upperBound computes a value the score of a patient cannot exceed, or
+     *                   {@code null} to score every patient
+     * @param k          the number of patients to return
+     * @return the best patients, highest score first and ties by patient ID
+     * @throws InterruptedException if interrupted while waiting for the shards
+     */
+    public List<CohortMatch> top(ToDoubleFunction<Patient> score, ToDoubleFunction<Patient> upperBound, int k)
+            throws InterruptedException {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // Any shard's k-th best score is a lower bound of the overall k-th best
+        DoubleAccumulator threshold = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        List<PriorityQueue<CohortMatch>> perShard = runShards(shard -> {
+            PriorityQueue<CohortMatch> best = new PriorityQueue<>(BEST_FIRST.reversed());
+            dataStorage.forEachPatient(shard, patient -> {
+                double bar = threshold.get();
+                if (upperBound != null && upperBound.applyAsDouble(patient) < bar) {
+                    return;
+                }
+                double value = score.applyAsDouble(patient);
+                if (Double.isNaN(value) || value < bar) {
+                    return;
+                }
+                CohortMatch match = new CohortMatch(patient.getPatientId(), value);
+                if (best.size() < k) {
+                    best.add(match);
+                } else if (BEST_FIRST.compare(match, best.peek()) < 0) {
+                    best.poll();
+                    best.add(match);
+                }
+                if (best.size() == k) {
+                    threshold.accumulate(best.peek().getScore());
+                }
+            });
+            return best;
+        });
+        List<CohortMatch> result = new ArrayList<>();
+        perShard.forEach(result::addAll);
+        result.sort(BEST_FIRST);
+        return new ArrayList<>(result.subList(0, Math.min(k, result.size())));
+    }
+
+    /**
+     * Returns a predicate for patients whose readings of a type stayed below a threshold
+     * for at least a given time within a range. A stretch starts at the first reading
+     * below the threshold and ends at the next reading at or above it, or at the last
+     * reading of the range.
+     *
+     * @param recordType        the type of record, e.g., "Saturation"
+     * @param threshold         the value the readings are below
+     * @param minDurationMillis the shortest stretch that matches
+     * @param startTime         the start of the time range, in milliseconds since epoch
+     * @param endTime           the end of the time range, in milliseconds since epoch
+     * @return the predicate
+     */
+    public static Predicate<Patient> below(String recordType, double threshold, long minDurationMillis,
+                                           long startTime, long endTime) {
+        return patient -> {
+            long[] stretch = {Long.MIN_VALUE, Long.MIN_VALUE, 0}; // start, last reading, longest
+            patient.forEachValue(recordType, startTime, endTime, (timestamp, value) -> {
+                if (value < threshold) {
+                    if (stretch[0] == Long.MIN_VALUE) {
+                        stretch[0] = timestamp;
+                    }
+                    stretch[1] = timestamp;
+                } else if (stretch[0] != Long.MIN_VALUE) {
+                    stretch[2] = Math.max(stretch[2], timestamp - stretch[0]);
+                    stretch[0] = Long.MIN_VALUE;
+                }
+            });
+            if (stretch[0] != Long.MIN_VALUE) {
+                stretch[2] = Math.max(stretch[2], stretch[1] - stretch[0]);
+            }
+            return stretch[2] >= minDurationMillis;
+        };
+    }
+
+    /**
+     * Returns a score of the standard deviation of a patient's readings of a type within
+     * a range, {@code NaN} without readings.
+     *
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since epoch
+     * @param endTime    the end of the time range, in milliseconds since epoch
+     * @return the score
+     */
+    public static ToDoubleFunction<Patient> standardDeviation(String recordType, long startTime, long endTime) {
+        return patient -> patient.aggregate(recordType, startTime, endTime).getStandardDeviation();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private interface ShardTask<T> {
+        T run(int shard);
+    }
+
+    private <T> List<T> runShards(ShardTask<T> task) throws InterruptedException {
+        List<Callable<T>> calls = new ArrayList<>();
+        for (int shard = 0; shard < dataStorage.getShardCount(); shard++) {
+            int index = shard;
+            calls.add(() -> task.run(index));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : workers.invokeAll(calls)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Cohort query failed", e.getCause());
+            }
+        }
+        return results;
+    }
+}
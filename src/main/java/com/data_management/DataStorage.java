@@ -5,6 +5,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import com.alerts.AlertGenerator;
 
 /**
@@ -12,14 +17,42 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ *
+ * <p>Patients are spread over a fixed number of shards, each with its own lock, so
+ * readers ingesting from several sources only contend when they write to the same shard.
+ * Every shard also counts its writes, so caches of query results can tell cheaply
+ * whether the data behind them has changed.
+ *
+ * <p>Consumers that want to react to new data rather than poll {@link #getRecords} can
+ * subscribe to a {@link RecordPublisher}, which is fed under the same shard locks, so
+ * the records of a patient arrive in the order they were stored.
  */
-public class DataStorage {
-    private Map<Integer, Patient> patientMap;
+public class DataStorage implements ReadingSink {
+    private static final int SHARD_COUNT = 16;
+    // One version per 64 byte cache line, so writers to different shards do not contend
+    private static final int VERSION_STRIDE = 8;
+
+    private final Map<Integer, Patient>[] shards;
+    private final AtomicLongArray versions = new AtomicLongArray(SHARD_COUNT * VERSION_STRIDE);
+    private final List<RecordPublisher> publishers = new CopyOnWriteArrayList<>();
     private static volatile DataStorage instance; // Singleton instance
 
     // Private constructor to prevent instantiation
     private DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.shards = newShards();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new HashMap<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Patient>[] newShards() {
+        // Java cannot create generic arrays; the array never escapes with another type
+        return (Map<Integer, Patient>[]) new Map<?, ?>[SHARD_COUNT];
+    }
+
+    private static int shardIndex(int patientId) {
+        return Math.floorMod(patientId, SHARD_COUNT);
     }
 
     /**
@@ -38,6 +71,16 @@ public class DataStorage {
         return instance;
     }
 
+    /**
+     * Creates a storage separate from the singleton instance, for components and tests
+     * that must not see, or leave behind, the patients of the shared storage.
+     *
+     * @return a new, empty storage
+     */
+    public static DataStorage newInstance() {
+        return new DataStorage();
+    }
+
     /**
      * Adds or updates patient data in the storage.
      * If the patient does not exist, a new Patient object is created and added to
@@ -52,10 +95,112 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
+        int index = shardIndex(patientId);
+        Map<Integer, Patient> shard = shards[index];
+        synchronized (shard) {
+            addToShard(shard, patientId, measurementValue, recordType, timestamp);
+            incrementVersion(index);
+            for (RecordPublisher publisher : publishers) {
+                publisher.publish(patientId, measurementValue, recordType, timestamp);
+            }
+        }
+    }
+
+    /**
+     * Adds every reading in a batch, acquiring each shard's lock at most once.
+     * The batch is not modified and can be cleared and reused by the caller afterwards.
+     *
+     * @param batch the readings to add
+     */
+    @Override
+    public void addPatientData(ReadingBatch batch) {
+        int size = batch.size();
+        int[] shardOf = new int[size];
+        int[] shardCounts = new int[SHARD_COUNT];
+        for (int i = 0; i < size; i++) {
+            shardOf[i] = shardIndex(batch.getPatientId(i));
+            shardCounts[shardOf[i]]++;
+        }
+        for (int s = 0; s < SHARD_COUNT; s++) {
+            if (shardCounts[s] == 0) {
+                continue;
+            }
+            Map<Integer, Patient> shard = shards[s];
+            synchronized (shard) {
+                for (int i = 0; i < size; i++) {
+                    if (shardOf[i] == s) {
+                        addToShard(shard, batch.getPatientId(i), batch.getMeasurementValue(i),
+                                batch.getRecordType(i), batch.getTimestamp(i));
+                    }
+                }
+                incrementVersion(s);
+                for (RecordPublisher publisher : publishers) {
+                    publisher.publish(batch, shardOf, s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a publisher of the records added from now on for some patients and record
+     * types. Close it when it is no longer needed.
+     *
+     * @param patientIds     the patients to publish, or {@code null} for all
+     * @param recordTypes    the record types to publish, e.g. "Saturation", or {@code null}
+     *                       for all
+     * @param bufferCapacity the batches buffered per subscriber before batches are dropped
+     *                       for it
+     * @return the publisher
+     */
+    public RecordPublisher createPublisher(Set<Integer> patientIds, Set<String> recordTypes, int bufferCapacity) {
+        RecordPublisher publisher = new RecordPublisher(this, patientIds, recordTypes, bufferCapacity);
+        publishers.add(publisher);
+        return publisher;
+    }
+
+    void removePublisher(RecordPublisher publisher) {
+        publishers.remove(publisher);
+    }
+
+    /**
+     * Counts a write to a shard. Called with the shard's lock held, so a plain increment
+     * published with release semantics is enough.
+     */
+    private void incrementVersion(int shard) {
+        int index = shard * VERSION_STRIDE;
+        versions.setRelease(index, versions.getPlain(index) + 1);
+    }
+
+    /**
+     * Returns a number that changes whenever data of the patient, or of another patient
+     * in the same shard, is added.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the version of the patient's shard
+     */
+    public long getVersion(int patientId) {
+        return versions.get(shardIndex(patientId) * VERSION_STRIDE);
+    }
+
+    /**
+     * Returns a number that changes whenever any data is added.
+     *
+     * @return the sum of the versions of all shards
+     */
+    public long getVersion() {
+        long version = 0;
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            version += versions.get(shard * VERSION_STRIDE);
+        }
+        return version;
+    }
+
+    private static void addToShard(Map<Integer, Patient> shard, int patientId, double measurementValue,
+                                   String recordType, long timestamp) {
+        Patient patient = shard.get(patientId);
         if (patient == null) {
             patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            shard.put(patientId, patient);
         }
         patient.addRecord(measurementValue, recordType, timestamp);
     }
@@ -74,20 +219,109 @@ public class DataStorage {
      *         range
      */
     public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
-        Patient patient = patientMap.get(patientId);
-        if (patient != null) {
-            return patient.getRecords(startTime, endTime);
+        Map<Integer, Patient> shard = shards[shardIndex(patientId)];
+        synchronized (shard) {
+            Patient patient = shard.get(patientId);
+            if (patient != null) {
+                return patient.getRecords(startTime, endTime);
+            }
         }
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Computes the count, minimum, maximum, mean and standard deviation of one type of
+     * reading of a patient within a time range, without copying the records.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix epoch
+     * @return the statistics, with a count of 0 if there are no matching records
+     */
+    public SeriesAggregate aggregate(int patientId, String recordType, long startTime, long endTime) {
+        Map<Integer, Patient> shard = shards[shardIndex(patientId)];
+        synchronized (shard) {
+            Patient patient = shard.get(patientId);
+            if (patient != null) {
+                return patient.aggregate(recordType, startTime, endTime);
+            }
+        }
+        return SeriesAggregate.empty(startTime, endTime);
+    }
+
+    /**
+     * Computes the statistics of one type of reading of a patient for consecutive buckets
+     * of a time range, e.g. the minimum saturation per 15 minutes.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordType     the type of record, e.g., "Saturation"
+     * @param startTime      the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime        the end of the time range, in milliseconds since the Unix epoch
+     * @param intervalMillis the length of a bucket in milliseconds
+     * @return the statistics of every bucket, in time order
+     * @see Patient#aggregate(String, long, long, long)
+     */
+    public List<SeriesAggregate> aggregate(int patientId, String recordType, long startTime, long endTime,
+                                           long intervalMillis) {
+        Map<Integer, Patient> shard = shards[shardIndex(patientId)];
+        synchronized (shard) {
+            Patient patient = shard.get(patientId);
+            if (patient != null) {
+                return patient.aggregate(recordType, startTime, endTime, intervalMillis);
+            }
+        }
+        return new Patient(patientId).aggregate(recordType, startTime, endTime, intervalMillis);
+    }
+
+    /**
+     * Runs an action on a patient holding the lock of its shard, so the action can copy
+     * what it needs without other records being copied.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param action    the action, which should return quickly as writes to the shard wait
+     * @param <T>       the type of the result
+     * @return the result of the action, or {@code null} if there is no such patient
+     */
+    <T> T withPatient(int patientId, Function<Patient, T> action) {
+        Map<Integer, Patient> shard = shards[shardIndex(patientId)];
+        synchronized (shard) {
+            Patient patient = shard.get(patientId);
+            return patient == null ? null : action.apply(patient);
+        }
+    }
+
+    int getShardCount() {
+        return SHARD_COUNT;
+    }
+
+    /**
+     * Runs an action for every patient of one shard, holding the shard's lock, so the
+     * patients can be read in place without copying their records.
+     *
+     * @param shard  the index of the shard, below {@link #getShardCount()}
+     * @param action the action to run for every patient
+     */
+    void forEachPatient(int shard, Consumer<Patient> action) {
+        Map<Integer, Patient> patients = shards[shard];
+        synchronized (patients) {
+            patients.values().forEach(action);
+        }
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
      * @return a list of all patients
      */
     public List<Patient> getAllPatients() {
-        return new ArrayList<>(patientMap.values());
+        List<Patient> patients = new ArrayList<>();
+        for (Map<Integer, Patient> shard : shards) {
+            synchronized (shard) {
+                patients.addAll(shard.values());
+            }
+        }
+        return patients;
     }
 
     /**
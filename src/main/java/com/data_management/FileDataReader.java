@@ -1,15 +1,75 @@
-
-
 package com.data_management;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+import com.cardio_generator.outputs.ColumnarFormat;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.SegmentManifest;
+
+/**
+ * {@code FileDataReader} reads patient data from files in a directory.
+ *
+ * <p>{@link #readData(DataStorage, URI)} does a one-shot read of {@code output.txt}.
+ * {@link #follow(ReadingSink)} tails every {@code .txt} file in the directory, as
+ * written by {@code FileOutputStrategy}, and only reads the bytes appended since the
+ * last read. Both the {@code id,value,label,timestamp} format and the simulator's
+ * {@code Patient ID: .., Timestamp: .., Label: .., Data: ..} format are understood.
+ *
+ * <p>When the output rotates its files, the rest of a file renamed to a segment is
+ * still read while following, and {@link #readSegments(ReadingSink, long, long)} reads
+ * the closed segments of a time range, skipping the others by their manifests.
+ *
+ * <p>Binary columnar files ({@code *.hcb}, see {@link ColumnarFormat}) are read with
+ * {@link #readBinary(ReadingSink, long, long)}. They are memory-mapped and only the
+ * blocks whose index entry matches the patient and time range are touched, so large
+ * historical loads are bound by I/O rather than by parsing text.
+ */
+public class FileDataReader implements DataReader, Closeable {
 
-public class FileDataReader implements DataReader {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 1024;
 
     private String directoryPath;
+    private final Map<Path, TailState> tailStates = new HashMap<>();
+    // Read positions of files that were renamed away, by file key, until they reappear as segments
+    private final Map<Object, TailState> rotatedStates = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, TailState> eldest) {
+            return size() > 64;
+        }
+    };
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ReadingBatch batch = new ReadingBatch(BATCH_SIZE);
+    private WatchService watchService;
+    private volatile boolean following;
+    private volatile long latestTimestamp;
 
     public FileDataReader(String directoryPath) {this.directoryPath = directoryPath;}
 
@@ -33,4 +93,575 @@ public class FileDataReader implements DataReader {
             }
         }
     }
+
+    /**
+     * Starts watching the directory and catches up on everything already in it.
+     * Called implicitly by {@link #follow(ReadingSink)}; call it directly when the
+     * reader is driven through {@link #pollUpdates(ReadingSink)}.
+     *
+     * @param sink where the existing data is added, usually the {@link DataStorage}
+     * @return the number of records read while catching up
+     * @throws IOException if the directory cannot be watched or read
+     */
+    public synchronized int startFollowing(ReadingSink sink) throws IOException {
+        if (watchService != null) {
+            return 0;
+        }
+        Path directory = Paths.get(directoryPath);
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        following = true;
+        // Register first, then scan, so appends made during the scan are not missed
+        return rescan(sink);
+    }
+
+    /**
+     * Tails the directory until {@link #close()} is called or the thread is interrupted.
+     * New lines are added to the storage as soon as the file system reports the append.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @throws IOException if there is an error reading the files
+     */
+    public void follow(ReadingSink sink) throws IOException {
+        startFollowing(sink);
+        try {
+            while (following) {
+                WatchKey key = watchService.take();
+                processEvents(key, sink);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close() was called while waiting
+        }
+    }
+
+    /**
+     * Reads whatever was appended since the last call without blocking.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @return the number of records read
+     * @throws IOException if there is an error reading the files
+     */
+    public int pollUpdates(ReadingSink sink) throws IOException {
+        if (watchService == null) {
+            return startFollowing(sink);
+        }
+        int records = 0;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            records += processEvents(key, sink);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the newest reading timestamp seen while following.
+     *
+     * @return the timestamp in milliseconds since epoch, or 0 if nothing was read yet
+     */
+    public long getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    /**
+     * Stops following and releases the watch service.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        following = false;
+        if (watchService != null) {
+            watchService.close();
+        }
+        for (TailState state : tailStates.values()) {
+            state.closeChannel();
+        }
+        for (TailState state : rotatedStates.values()) {
+            state.closeChannel();
+        }
+    }
+
+    private synchronized int processEvents(WatchKey key, ReadingSink sink) throws IOException {
+        Path directory = (Path) key.watchable();
+        int records = 0;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                records += rescan(sink);
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                records += detach(file, sink);
+            } else if (file.getFileName().toString().endsWith(".seg")) {
+                records += readRotated(file, sink);
+            } else if (isDataFile(file)) {
+                records += readAppended(file, sink);
+            }
+        }
+        key.reset();
+        return records;
+    }
+
+    private int rescan(ReadingSink sink) throws IOException {
+        int records = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directoryPath), "*.txt")) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    records += readAppended(file, sink);
+                }
+            }
+        }
+        return records;
+    }
+
+    private boolean isDataFile(Path file) {
+        return file.getFileName().toString().endsWith(".txt") && Files.isRegularFile(file);
+    }
+
+    /**
+     * Reads the complete lines appended to a file since its stored offset. A partial
+     * last line is left in the file until its newline arrives. If the file was replaced
+     * (different file key), the old file is first read to its end through the channel
+     * still open on it, then reading restarts at the beginning of the new file. A
+     * truncated file is read again from the beginning.
+     */
+    private int readAppended(Path file, ReadingSink sink) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return detach(file, sink);
+        }
+        TailState state = tailStates.computeIfAbsent(file, k -> new TailState());
+        Object fileKey = attributes.fileKey();
+        int records = 0;
+        if (!Objects.equals(state.fileKey, fileKey)) {
+            // Rotated: readings appended just before the rename are still in the old file
+            records += drain(file, state, sink);
+        }
+        if (!Objects.equals(state.fileKey, fileKey) || attributes.size() < state.offset) {
+            // The old offset no longer refers to this file
+            state.closeChannel();
+            state.fileKey = fileKey;
+            state.offset = 0;
+        }
+        if (attributes.size() == state.offset) {
+            return records;
+        }
+        return records + readLines(file, state, sink);
+    }
+
+    /**
+     * Stops following a file that was renamed or deleted. What was appended to it since
+     * the last read is read first, and its position is kept in case the file reappears
+     * as a segment.
+     */
+    private int detach(Path file, ReadingSink sink) throws IOException {
+        TailState state = tailStates.get(file);
+        if (state == null) {
+            return 0;
+        }
+        try {
+            if (state.fileKey != null
+                    && state.fileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey())) {
+                return 0; // the event is about the file this one already replaced
+            }
+        } catch (NoSuchFileException e) {
+            // Gone indeed
+        }
+        tailStates.remove(file);
+        int records = drain(file, state, sink);
+        if (state.fileKey != null) {
+            rotatedStates.put(state.fileKey, state);
+        }
+        return records;
+    }
+
+    /**
+     * Reads a file that is no longer at its path to its end, through the channel opened
+     * on it by earlier reads, and closes the channel.
+     */
+    private int drain(Path file, TailState state, ReadingSink sink) throws IOException {
+        if (state.channel == null) {
+            return 0;
+        }
+        try {
+            return readLines(file, state, sink);
+        } finally {
+            state.closeChannel();
+        }
+    }
+
+    /**
+     * Reads the rest of a followed file that was renamed to a segment.
+     */
+    private int readRotated(Path segment, ReadingSink sink) throws IOException {
+        Object fileKey;
+        try {
+            fileKey = Files.readAttributes(segment, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        TailState state = fileKey == null ? null : rotatedStates.remove(fileKey);
+        if (state == null) {
+            return 0;
+        }
+        try {
+            return readLines(segment, state, sink);
+        } finally {
+            state.closeChannel();
+        }
+    }
+
+    /**
+     * Reads complete lines from the stored offset. The channel stays open between reads,
+     * so a file that is renamed away can still be read to its end.
+     */
+    private int readLines(Path file, TailState state, ReadingSink sink) throws IOException {
+        int records = 0;
+        try {
+            if (state.channel == null) {
+                state.channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            FileChannel channel = state.channel;
+            long position = state.offset;
+            byte[] bytes = readBuffer.array();
+            while (true) {
+                readBuffer.clear();
+                int read = channel.read(readBuffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        records += parseLine(bytes, lineStart, i);
+                        lineStart = i + 1;
+                        if (batch.isFull()) {
+                            flush(sink);
+                        }
+                    }
+                }
+                if (lineStart == 0) {
+                    if (read < readBuffer.capacity()) {
+                        break; // partial last line, wait for its newline
+                    }
+                    System.err.println("Skipping over-long line in " + file);
+                    lineStart = read;
+                }
+                position += lineStart;
+            }
+            state.offset = position;
+        } catch (NoSuchFileException e) {
+            tailStates.remove(file);
+        } catch (IOException e) {
+            state.closeChannel();
+            throw e;
+        } finally {
+            flush(sink);
+        }
+        return records;
+    }
+
+    private void flush(ReadingSink sink) {
+        if (!batch.isEmpty()) {
+            sink.addPatientData(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Reads the closed segments written by a rotating {@code FileOutputStrategy} and adds
+     * the readings of a time range. Segments whose manifest shows they hold nothing in
+     * the range are not opened; compressed segments are decompressed on the fly.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @param from the start of the range in milliseconds, inclusive
+     * @param to   the end of the range in milliseconds, inclusive
+     * @return the number of records read
+     * @throws IOException if the directory cannot be read
+     */
+    public synchronized int readSegments(ReadingSink sink, long from, long to) throws IOException {
+        Path directory = Paths.get(directoryPath);
+        int records = 0;
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(directory, "*.manifest")) {
+            for (Path manifestPath : manifests) {
+                SegmentManifest manifest;
+                try {
+                    manifest = SegmentManifest.read(manifestPath);
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable manifest " + manifestPath + ": " + e.getMessage());
+                    continue;
+                }
+                if (manifest.overlaps(from, to)) {
+                    records += readSegment(directory.resolve(manifest.getSegmentFile()), sink, from, to);
+                }
+            }
+        } finally {
+            flush(sink);
+        }
+        return records;
+    }
+
+    /**
+     * Reads the readings of a time range from the binary columnar files in the directory.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @param from the start of the range in milliseconds, inclusive
+     * @param to   the end of the range in milliseconds, inclusive
+     * @return the number of records read
+     * @throws IOException if the files cannot be read
+     */
+    public int readBinary(ReadingSink sink, long from, long to) throws IOException {
+        return readBinary(sink, Integer.MIN_VALUE, Integer.MAX_VALUE, from, to);
+    }
+
+    /**
+     * Reads the readings of one patient in a time range from the binary columnar files
+     * in the directory.
+     *
+     * @param sink      where the readings are added, usually the {@link DataStorage}
+     * @param patientId the unique ID of the patient
+     * @param from      the start of the range in milliseconds, inclusive
+     * @param to        the end of the range in milliseconds, inclusive
+     * @return the number of records read
+     * @throws IOException if the files cannot be read
+     */
+    public int readBinary(ReadingSink sink, int patientId, long from, long to) throws IOException {
+        return readBinary(sink, patientId, patientId, from, to);
+    }
+
+    private synchronized int readBinary(ReadingSink sink, int firstPatientId, int lastPatientId, long from, long to)
+            throws IOException {
+        int records = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directoryPath),
+                "*" + ColumnarFormat.EXTENSION)) {
+            for (Path file : files) {
+                records += readBinaryFile(file, sink, firstPatientId, lastPatientId, from, to);
+            }
+        } finally {
+            flush(sink);
+        }
+        return records;
+    }
+
+    /**
+     * Reads one columnar file, using its block index when the file was closed and the
+     * block headers when it was not.
+     */
+    private int readBinaryFile(Path file, ReadingSink sink, int firstPatientId, int lastPatientId,
+            long from, long to) throws IOException {
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < ColumnarFormat.FILE_HEADER_BYTES) {
+                return 0;
+            }
+            // Files up to 2 GB are mapped at once, larger ones block by block
+            ByteBuffer whole = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+            ByteBuffer header = region(channel, whole, 0, ColumnarFormat.FILE_HEADER_BYTES);
+            if (header.getInt(0) != ColumnarFormat.FILE_MAGIC) {
+                System.err.println("Skipping " + file + ": not a columnar reading file");
+                return 0;
+            }
+            ByteBuffer trailer = size >= ColumnarFormat.FILE_HEADER_BYTES + ColumnarFormat.TRAILER_BYTES
+                    ? region(channel, whole, size - ColumnarFormat.TRAILER_BYTES, ColumnarFormat.TRAILER_BYTES)
+                    : null;
+            if (trailer != null && trailer.getInt(12) == ColumnarFormat.FOOTER_MAGIC) {
+                long indexOffset = trailer.getLong(0);
+                int blockCount = trailer.getInt(8);
+                ByteBuffer index = region(channel, whole, indexOffset,
+                        (long) blockCount * ColumnarFormat.INDEX_ENTRY_BYTES);
+                for (int b = 0; b < blockCount; b++) {
+                    int entry = b * ColumnarFormat.INDEX_ENTRY_BYTES;
+                    int count = index.getInt(entry + 8);
+                    if (index.getLong(entry + 16) <= to && index.getLong(entry + 24) >= from
+                            && index.getInt(entry + 32) <= lastPatientId
+                            && index.getInt(entry + 36) >= firstPatientId) {
+                        ByteBuffer block = region(channel, whole, index.getLong(entry),
+                                ColumnarFormat.blockBytes(count));
+                        records += readBlock(block, count, sink, firstPatientId, lastPatientId, from, to);
+                    }
+                }
+                return records;
+            }
+            long offset = ColumnarFormat.FILE_HEADER_BYTES;
+            while (offset + ColumnarFormat.BLOCK_HEADER_BYTES <= size) {
+                ByteBuffer blockHeader = region(channel, whole, offset, ColumnarFormat.BLOCK_HEADER_BYTES);
+                int count = blockHeader.getInt(4);
+                int bytes = ColumnarFormat.blockBytes(count);
+                if (blockHeader.getInt(0) != ColumnarFormat.BLOCK_MAGIC || count <= 0 || offset + bytes > size) {
+                    break; // the end of what was written before the writer stopped
+                }
+                if (blockHeader.getLong(8) <= to && blockHeader.getLong(16) >= from
+                        && blockHeader.getInt(24) <= lastPatientId && blockHeader.getInt(28) >= firstPatientId) {
+                    records += readBlock(region(channel, whole, offset, bytes), count, sink,
+                            firstPatientId, lastPatientId, from, to);
+                }
+                offset += bytes;
+            }
+        }
+        return records;
+    }
+
+    private static ByteBuffer region(FileChannel channel, ByteBuffer whole, long offset, long length)
+            throws IOException {
+        ByteBuffer region = whole != null
+                ? whole.slice((int) offset, (int) length)
+                : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return region.order(ColumnarFormat.ORDER);
+    }
+
+    /**
+     * Adds the readings of a block that fall in the patient and time range. The patient
+     * column is sorted, so the first patient is found by binary search.
+     */
+    private int readBlock(ByteBuffer block, int count, ReadingSink sink, int firstPatientId, int lastPatientId,
+            long from, long to) {
+        int timestamps = ColumnarFormat.timestampsOffset(count);
+        int values = ColumnarFormat.valuesOffset(count);
+        int patientIds = ColumnarFormat.patientIdsOffset(count);
+        int types = ColumnarFormat.typesOffset(count);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (block.getInt(patientIds + 4 * middle) < firstPatientId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int records = 0;
+        for (int k = low; k < count; k++) {
+            int patientId = block.getInt(patientIds + 4 * k);
+            if (patientId > lastPatientId) {
+                break;
+            }
+            long timestamp = block.getLong(timestamps + 8 * k);
+            ReadingType type = ReadingType.fromCode(block.get(types + k));
+            if (timestamp < from || timestamp > to || type == null) {
+                continue;
+            }
+            add(patientId, block.getDouble(values + 8 * k), type.getLabel(), timestamp);
+            records++;
+            if (batch.isFull()) {
+                flush(sink);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads one segment. The segment can be compressed and removed after the manifest was
+     * read, so a {@code .seg} that is gone when it is opened is read from its {@code .gz}.
+     */
+    private int readSegment(Path segment, ReadingSink sink, long from, long to) throws IOException {
+        boolean compressed = segment.toString().endsWith(".gz");
+        InputStream opened;
+        try {
+            opened = Files.newInputStream(segment);
+        } catch (NoSuchFileException e) {
+            if (!compressed) {
+                return readSegment(segment.resolveSibling(segment.getFileName() + ".gz"), sink, from, to);
+            }
+            System.err.println("Segment " + segment + " is gone");
+            return 0;
+        }
+        int records = 0;
+        try (InputStream file = opened;
+                InputStream in = compressed ? new GZIPInputStream(file, 64 * 1024) : file;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8),
+                        READ_BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                records += parseLine(line, from, to);
+                if (batch.isFull()) {
+                    flush(sink);
+                }
+            }
+        }
+        return records;
+    }
+
+    private int parseLine(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end <= start) {
+            return 0;
+        }
+        return parseLine(new String(bytes, start, end - start, StandardCharsets.UTF_8),
+                Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses a line and adds its reading if it falls in the time range.
+     */
+    private int parseLine(String line, long from, long to) {
+        if (line.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (line.startsWith("Patient ID:")) {
+                // Patient ID: %d, Timestamp: %d, Label: %s, Data: %s
+                String[] parts = line.split(", ", 4);
+                int patientId = Integer.parseInt(valueOf(parts[0]));
+                long timestamp = Long.parseLong(valueOf(parts[1]));
+                String label = valueOf(parts[2]);
+                double value = ReadingType.parseData(valueOf(parts[3]));
+                if (timestamp < from || timestamp > to) {
+                    return 0;
+                }
+                add(patientId, value, label, timestamp);
+            } else {
+                // id,value,label,timestamp
+                String[] parts = line.split(",");
+                long timestamp = Long.parseLong(parts[3].trim());
+                if (timestamp < from || timestamp > to) {
+                    return 0;
+                }
+                add(Integer.parseInt(parts[0].trim()), ReadingType.parseData(parts[1].trim()),
+                        parts[2].trim(), timestamp);
+            }
+            return 1;
+        } catch (RuntimeException e) {
+            System.err.println("Skipping invalid line: " + line);
+            return 0;
+        }
+    }
+
+    private void add(int patientId, double value, String label, long timestamp) {
+        batch.add(patientId, value, label, timestamp);
+        if (timestamp > latestTimestamp) {
+            latestTimestamp = timestamp;
+        }
+    }
+
+    private static String valueOf(String field) {
+        return field.substring(field.indexOf(':') + 1).trim();
+    }
+
+    /**
+     * Read position of one followed file.
+     */
+    private static class TailState {
+        private Object fileKey;
+        private long offset;
+        private FileChannel channel;
+
+        void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing followed file: " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
 }
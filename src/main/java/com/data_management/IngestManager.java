@@ -0,0 +1,358 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges readings from many simulator endpoints, for example one
+ * {@code HealthDataSimulator} per ward, into one {@link DataStorage}.
+ *
+ * <p>Every source is tagged with an id and gets its own {@link SourceStats}. TCP, Unix
+ * domain socket and file tail sources share a small pool of I/O threads: each thread
+ * waits on one selector for its socket sources and polls its file sources in between.
+ * WebSocket sources run on the connection thread of the Java-WebSocket library, which
+ * cannot be shared, but are counted in the same statistics.
+ */
+public class IngestManager implements Closeable {
+    private static final long FILE_POLL_INTERVAL_MS = 5;
+
+    private final DataStorage dataStorage;
+    private final ReadingSink sink;
+    private final IoWorker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final Map<String, SourceStats> sourceStats = new ConcurrentHashMap<>();
+    private final List<WebSocketClient> webSocketClients = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Constructs a manager and starts its I/O threads.
+     *
+     * @param dataStorage the storage all sources are merged into
+     * @param ioThreads   the number of threads shared by the socket and file sources
+     * @throws IOException if a selector cannot be opened
+     */
+    public IngestManager(DataStorage dataStorage, int ioThreads) throws IOException {
+        this(dataStorage, ioThreads, null);
+    }
+
+    /**
+     * Constructs a manager whose sources all go through admission control. Close the
+     * manager before the controller, so no source hands it readings afterwards.
+     *
+     * @param dataStorage the storage all sources are merged into
+     * @param ioThreads   the number of threads shared by the socket and file sources
+     * @param admission   the admission controller in front of the storage, or {@code null}
+     * @throws IOException if a selector cannot be opened
+     */
+    public IngestManager(DataStorage dataStorage, int ioThreads, AdmissionController admission)
+            throws IOException {
+        this.dataStorage = dataStorage;
+        this.sink = admission != null ? admission : dataStorage;
+        this.workers = new IoWorker[Math.max(1, ioThreads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new IoWorker("ingest-io-" + i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Adds a {@code TcpOutputStrategy} feed.
+     *
+     * @param sourceId the tag of the source, e.g. the ward name
+     * @param server   {@code tcp://host:port} or {@code unix:/path}
+     * @throws IOException if the connection fails
+     */
+    public void addSocketSource(String sourceId, URI server) throws IOException {
+        SocketDataReader reader = new SocketDataReader();
+        reader.connect(server);
+        SocketSource source = new SocketSource(newStats(sourceId, "socket"), reader);
+        IoWorker worker = nextWorker();
+        worker.submit(() -> {
+            try {
+                reader.register(worker.selector, source);
+            } catch (IOException e) {
+                worker.fail(source, e);
+            }
+        });
+    }
+
+    /**
+     * Adds a directory written by {@code FileOutputStrategy}, which is tailed.
+     *
+     * @param sourceId  the tag of the source
+     * @param directory the output directory of the simulator
+     */
+    public void addFileSource(String sourceId, String directory) {
+        FileSource source = new FileSource(newStats(sourceId, "file"), new FileDataReader(directory));
+        IoWorker worker = nextWorker();
+        worker.submit(() -> worker.fileSources.add(source));
+    }
+
+    /**
+     * Adds a {@code WebSocketOutputStrategy} feed.
+     *
+     * @param sourceId the tag of the source
+     * @param server   the WebSocket URI of the simulator
+     */
+    public void addWebSocketSource(String sourceId, URI server) {
+        WebSocketClient client = new WebSocketClient(server, dataStorage);
+        client.setSourceStats(newStats(sourceId, "websocket"));
+        client.setSink(sink);
+        webSocketClients.add(client);
+        client.connect();
+    }
+
+    /**
+     * Returns the statistics of all sources, ordered by source id.
+     *
+     * @return the statistics of every source added so far
+     */
+    public List<SourceStats> getSourceStats() {
+        List<SourceStats> stats = new ArrayList<>(sourceStats.values());
+        stats.sort(Comparator.comparing(SourceStats::getSourceId));
+        return stats;
+    }
+
+    /**
+     * Prints the throughput and lag of every source at a fixed rate.
+     *
+     * @param period   the time between two reports
+     * @param timeUnit the time unit of the period
+     */
+    public synchronized void startReporting(long period, TimeUnit timeUnit) {
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ingest-report");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::printReport, period, period, timeUnit);
+        }
+    }
+
+    /**
+     * Prints one line per source with its total, throughput and lag.
+     */
+    public void printReport() {
+        long now = System.currentTimeMillis();
+        for (SourceStats stats : getSourceStats()) {
+            System.out.printf("Source %s (%s): %d records, %.1f records/s, lag %d ms%s%n",
+                    stats.getSourceId(), stats.getSourceType(), stats.getRecords(),
+                    stats.sampleThroughput(now), stats.getLagMillis(now),
+                    stats.isConnected() ? "" : ", disconnected");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        for (IoWorker worker : workers) {
+            worker.shutdown();
+        }
+        for (WebSocketClient client : webSocketClients) {
+            client.close();
+        }
+    }
+
+    private SourceStats newStats(String sourceId, String sourceType) {
+        SourceStats stats = new SourceStats(sourceId, sourceType);
+        if (sourceStats.putIfAbsent(sourceId, stats) != null) {
+            throw new IllegalArgumentException("Duplicate source id: " + sourceId);
+        }
+        return stats;
+    }
+
+    private IoWorker nextWorker() {
+        return workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+    }
+
+    /**
+     * A source driven by an I/O thread.
+     */
+    private abstract static class PolledSource {
+        final SourceStats stats;
+
+        PolledSource(SourceStats stats) {
+            this.stats = stats;
+        }
+
+        abstract int poll(ReadingSink sink) throws IOException;
+
+        abstract long latestTimestamp();
+
+        abstract boolean isFinished();
+
+        abstract void close() throws IOException;
+    }
+
+    private static class SocketSource extends PolledSource {
+        private final SocketDataReader reader;
+
+        SocketSource(SourceStats stats, SocketDataReader reader) {
+            super(stats);
+            this.reader = reader;
+        }
+
+        @Override
+        int poll(ReadingSink sink) throws IOException {
+            return reader.poll(sink);
+        }
+
+        @Override
+        long latestTimestamp() {
+            return reader.getLatestTimestamp();
+        }
+
+        @Override
+        boolean isFinished() {
+            return reader.isEndOfStream();
+        }
+
+        @Override
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class FileSource extends PolledSource {
+        private final FileDataReader reader;
+
+        FileSource(SourceStats stats, FileDataReader reader) {
+            super(stats);
+            this.reader = reader;
+        }
+
+        @Override
+        int poll(ReadingSink sink) throws IOException {
+            return reader.pollUpdates(sink);
+        }
+
+        @Override
+        long latestTimestamp() {
+            return reader.getLatestTimestamp();
+        }
+
+        @Override
+        boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * One shared I/O thread. Sources are only touched by this thread; other threads hand
+     * work to it through {@link #submit(Runnable)}.
+     */
+    private class IoWorker extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final List<FileSource> fileSources = new ArrayList<>();
+        private volatile boolean running = true;
+
+        IoWorker(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        void submit(Runnable task) {
+            pending.add(task);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    Runnable task;
+                    while ((task = pending.poll()) != null) {
+                        task.run();
+                    }
+                    selector.select(fileSources.isEmpty() ? 0 : FILE_POLL_INTERVAL_MS);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        poll((PolledSource) key.attachment());
+                    }
+                    for (FileSource source : new ArrayList<>(fileSources)) {
+                        poll(source);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Ingest thread " + getName() + " stopped: " + e.getMessage());
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void poll(PolledSource source) {
+            try {
+                int records = source.poll(sink);
+                source.stats.recordIngested(records, source.latestTimestamp());
+                if (source.isFinished()) {
+                    System.out.println("Source " + source.stats.getSourceId() + " closed the connection");
+                    remove(source);
+                }
+            } catch (IOException e) {
+                fail(source, e);
+            }
+        }
+
+        void fail(PolledSource source, IOException e) {
+            System.err.println("Source " + source.stats.getSourceId() + " failed: " + e.getMessage());
+            remove(source);
+        }
+
+        private void remove(PolledSource source) {
+            source.stats.setConnected(false);
+            fileSources.remove(source);
+            try {
+                source.close();
+            } catch (IOException e) {
+                System.err.println("Error closing source " + source.stats.getSourceId() + ": " + e.getMessage());
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                remove((PolledSource) key.attachment());
+            }
+            for (FileSource source : new ArrayList<>(fileSources)) {
+                remove(source);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+}
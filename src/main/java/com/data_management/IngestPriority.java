@@ -0,0 +1,13 @@
+package com.data_management;
+
+/**
+ * Priority classes used by {@link AdmissionController} when ingest falls behind.
+ */
+public enum IngestPriority {
+    /** Readings the alert strategies depend on; always admitted. */
+    CRITICAL,
+    /** Deferred once the queue passes the normal threshold. */
+    NORMAL,
+    /** Deferred first, once the queue passes the low threshold. */
+    LOW
+}
@@ -2,17 +2,27 @@ package com.data_management;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ *
+ * <p>The values of every record type are also kept in a {@link SeriesIndex}, so
+ * statistics over a time range are computed without scanning the records. The index is
+ * brought up to date lazily by the queries, which therefore write to it; all access to
+ * the records and the indexes holds the lock of {@code series}, so a patient obtained from
+ * {@link DataStorage#getAllPatients()} can be queried while records are added. Inside
+ * {@link DataStorage}, which already holds the shard lock, that lock is uncontended.
  */
 public class Patient {
     private int patientId;
     private List<PatientRecord> patientRecords;
+    private final Map<String, SeriesIndex> series = new HashMap<>();
 
     /**
      * Constructs a new Patient with a specified ID.
@@ -38,7 +48,10 @@ public class Patient {
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
         PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        synchronized (series) {
+            this.patientRecords.add(record);
+            series.computeIfAbsent(recordType, type -> new SeriesIndex()).add(timestamp, measurementValue);
+        }
     }
 
     /**
@@ -53,17 +66,107 @@ public class Patient {
      *         range
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-            List<PatientRecord> filteredRecords = new ArrayList<>();
+        List<PatientRecord> filteredRecords = new ArrayList<>();
+        synchronized (series) {
             for (PatientRecord record : patientRecords) {
                 if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
                     filteredRecords.add(record);
                 }
             }
+        }
         // Sort by timestamp to have a consistent order
         filteredRecords.sort(Comparator.comparingLong(PatientRecord::getTimestamp));
         return filteredRecords;
     }
 
+    /**
+     * Computes the count, minimum, maximum, mean and standard deviation of the values of
+     * one record type within a time range, in O(log n) of the number of records. The
+     * first query after new records also updates the index for them, under the lock of
+     * this patient's indexes, so it is safe to call concurrently with
+     * {@link #addRecord(double, String, long)}.
+     *
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the statistics, with a count of 0 if there are no matching records
+     */
+    public SeriesAggregate aggregate(String recordType, long startTime, long endTime) {
+        synchronized (series) {
+            SeriesIndex index = series.get(recordType);
+            return index == null ? SeriesAggregate.empty(startTime, endTime) : index.aggregate(startTime, endTime);
+        }
+    }
+
+    /**
+     * Computes the statistics of one record type for consecutive buckets of a time range.
+     * The buckets start at {@code startTime} and are {@code intervalMillis} long, except
+     * for the last one, which ends at {@code endTime}. Buckets without records are
+     * included with a count of 0. Like {@link #aggregate(String, long, long)} it may be
+     * called concurrently with {@link #addRecord(double, String, long)}.
+     *
+     * @param recordType     the type of record, e.g., "Saturation"
+     * @param startTime      the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX epoch
+     * @param intervalMillis the length of a bucket in milliseconds
+     * @return the statistics of every bucket, in time order
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public List<SeriesAggregate> aggregate(String recordType, long startTime, long endTime, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Bucket interval must be positive: " + intervalMillis);
+        }
+        List<SeriesAggregate> buckets = new ArrayList<>();
+        synchronized (series) {
+            SeriesIndex index = series.get(recordType);
+            for (long start = startTime; start <= endTime; start += intervalMillis) {
+                long end = endTime - start < intervalMillis ? endTime : start + intervalMillis - 1;
+                buckets.add(index == null ? SeriesAggregate.empty(start, end) : index.aggregate(start, end));
+                if (end == endTime) {
+                    break;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Passes the values of one record type within a time range to a visitor, in time
+     * order, without creating records. The visitor runs holding the lock of this
+     * patient's indexes and should not block.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @param visitor    receives the timestamp and value of every reading
+     */
+    public void forEachValue(String recordType, long startTime, long endTime, SeriesVisitor visitor) {
+        synchronized (series) {
+            SeriesIndex index = series.get(recordType);
+            if (index != null) {
+                index.forEach(startTime, endTime, visitor);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the newest record of every record type.
+     *
+     * @return the newest records, by record type
+     */
+    public Map<String, PatientRecord> getLatestRecords() {
+        Map<String, PatientRecord> latest = new HashMap<>();
+        synchronized (series) {
+            for (Map.Entry<String, SeriesIndex> entry : series.entrySet()) {
+                PatientRecord record = entry.getValue().latest(patientId, entry.getKey());
+                if (record != null) {
+                    latest.put(entry.getKey(), record);
+                }
+            }
+        }
+        return latest;
+    }
+
     // Getter method
     public int getPatientId() {
         return patientId;
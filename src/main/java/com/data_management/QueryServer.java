@@ -0,0 +1,501 @@
+package com.data_management;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A read-only HTTP interface to a {@link DataStorage}, answering with JSON:
+ * <pre>
+ *   GET /patients                                          the patient IDs
+ *   GET /patients/{id}/records?from=&amp;to=&amp;type=             the records in a time range
+ *   GET /patients/{id}/latest                              the newest record of every type
+ *   GET /patients/{id}/aggregate?type=&amp;from=&amp;to=&amp;interval=  statistics, optionally per bucket
+ *   GET /alerts?since=&amp;limit=                               the newest alert readings
+ * </pre>
+ * Times are in milliseconds since epoch; {@code from}, {@code to} and {@code since}
+ * default to the whole series.
+ *
+ * <p>Requests run on their own threads. Each copies what it needs while holding the lock
+ * of a shard only briefly, and encodes the response outside of it, writing it to the
+ * connection as it goes rather than building it in memory first.
+ *
+ * <p>Responses up to {@value #MAX_CACHED_BYTES} bytes are cached for a short time, so a
+ * dashboard polled by many viewers is computed once. A cached response is only used while
+ * the {@link DataStorage#getVersion(int) version} of the data behind it is unchanged, so
+ * new readings invalidate it without the writers having to know about the cache.
+ */
+public class QueryServer implements Closeable {
+    public static final long DEFAULT_CACHE_TTL_MILLIS = 1000;
+    private static final int MAX_CACHED_BYTES = 256 * 1024;
+    private static final int MAX_CACHE_ENTRIES = 1024;
+    private static final int DEFAULT_ALERT_LIMIT = 100;
+    private static final int MAX_BUCKETS = 10_000;
+
+    private final DataStorage dataStorage;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final long cacheTtlMillis;
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * Starts the server.
+     *
+     * @param dataStorage    the storage to query
+     * @param port           the port to listen on, or 0 for any free port
+     * @param threads        the number of threads answering requests
+     * @param cacheTtlMillis how long responses are cached, or 0 to not cache them
+     * @throws IOException if the port cannot be opened
+     */
+    public QueryServer(DataStorage dataStorage, int port, int threads, long cacheTtlMillis) throws IOException {
+        this.dataStorage = dataStorage;
+        this.cacheTtlMillis = cacheTtlMillis;
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "query-server-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+        server.start();
+        System.out.println("Query server started on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish for up to a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Only GET is supported");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String key = exchange.getRequestURI().toString();
+            String[] parts = path.split("/");
+            int patientId = parts.length >= 3 && parts[1].equals("patients") ? parseInt(parts[2], "patient ID") : -1;
+            long version = patientId >= 0 ? dataStorage.getVersion(patientId) : dataStorage.getVersion();
+
+            CachedResponse cached = cache.get(key);
+            if (cached != null && cached.version == version && System.currentTimeMillis() < cached.expiresAt) {
+                cacheHits.increment();
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, cached.body.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(cached.body);
+                }
+                return;
+            }
+            cacheMisses.increment();
+
+            JsonBody response = route(parts, patientId, parseQuery(exchange.getRequestURI().getRawQuery()));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            CachingStream stream = new CachingStream(exchange.getResponseBody(), cacheTtlMillis > 0);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                response.write(out);
+            }
+            if (stream.copy != null) {
+                cache(key, new CachedResponse(stream.copy.toByteArray(), version,
+                        System.currentTimeMillis() + cacheTtlMillis));
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (NoSuchElementException e) {
+            sendError(exchange, 404, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Loads the data a request asks for and returns how to encode it.
+     */
+    private JsonBody route(String[] parts, int patientId, Map<String, String> params) {
+        long from = parseLong(params.getOrDefault("from", String.valueOf(Long.MIN_VALUE)), "from");
+        long to = parseLong(params.getOrDefault("to", String.valueOf(Long.MAX_VALUE)), "to");
+        if (parts.length == 2 && parts[1].equals("patients")) {
+            return patientIds();
+        } else if (parts.length == 2 && parts[1].equals("alerts")) {
+            return alerts(parseLong(params.getOrDefault("since", String.valueOf(Long.MIN_VALUE)), "since"),
+                    parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_ALERT_LIMIT)), "limit"));
+        } else if (parts.length == 4 && patientId >= 0) {
+            switch (parts[3]) {
+                case "records":
+                    return records(patientId, params.get("type"), from, to);
+                case "latest":
+                    return latest(patientId);
+                case "aggregate":
+                    String type = params.get("type");
+                    if (type == null) {
+                        throw new IllegalArgumentException("Missing parameter: type");
+                    }
+                    String interval = params.get("interval");
+                    return aggregate(patientId, type, from, to, interval == null ? 0 : parseLong(interval, "interval"));
+                default:
+                    break;
+            }
+        }
+        throw new NoSuchElementException("Unknown path: " + String.join("/", parts));
+    }
+
+    private JsonBody patientIds() {
+        int[] ids = dataStorage.getAllPatients().stream().mapToInt(Patient::getPatientId).sorted().toArray();
+        return out -> {
+            out.write('[');
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(Integer.toString(ids[i]));
+            }
+            out.write(']');
+        };
+    }
+
+    private JsonBody records(int patientId, String type, long from, long to) {
+        if (type == null) {
+            List<PatientRecord> records = dataStorage.getRecords(patientId, from, to);
+            return out -> {
+                out.write('[');
+                for (int i = 0; i < records.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeRecord(out, records.get(i));
+                }
+                out.write(']');
+            };
+        }
+        // One series: copy its primitives under the lock rather than creating records
+        Series series = dataStorage.withPatient(patientId, patient -> {
+            Series copy = new Series();
+            patient.forEachValue(type, from, to, copy);
+            return copy;
+        });
+        requirePatient(series, patientId);
+        return out -> {
+            out.write('[');
+            for (int i = 0; i < series.size; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write("{\"patientId\":" + patientId + ",\"type\":");
+                writeString(out, type);
+                out.write(",\"timestamp\":" + series.timestamps[i] + ",\"value\":");
+                writeNumber(out, series.values[i]);
+                out.write('}');
+            }
+            out.write(']');
+        };
+    }
+
+    private JsonBody latest(int patientId) {
+        Map<String, PatientRecord> latest = dataStorage.withPatient(patientId, Patient::getLatestRecords);
+        requirePatient(latest, patientId);
+        return out -> {
+            out.write('{');
+            boolean first = true;
+            for (Map.Entry<String, PatientRecord> entry : latest.entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(out, entry.getKey());
+                out.write(':');
+                writeRecord(out, entry.getValue());
+            }
+            out.write('}');
+        };
+    }
+
+    private JsonBody aggregate(int patientId, String type, long from, long to, long interval) {
+        if (interval > 0) {
+            long buckets;
+            try {
+                buckets = Math.subtractExact(to, from) / interval;
+            } catch (ArithmeticException e) {
+                buckets = Long.MAX_VALUE;
+            }
+            if (buckets < 0 || buckets >= MAX_BUCKETS) {
+                throw new IllegalArgumentException("Give from and to for at most " + MAX_BUCKETS + " buckets");
+            }
+            List<SeriesAggregate> aggregates = dataStorage.aggregate(patientId, type, from, to, interval);
+            return out -> {
+                out.write('[');
+                for (int i = 0; i < aggregates.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeAggregate(out, aggregates.get(i));
+                }
+                out.write(']');
+            };
+        }
+        SeriesAggregate aggregate = dataStorage.aggregate(patientId, type, from, to);
+        return out -> writeAggregate(out, aggregate);
+    }
+
+    /**
+     * Collects the newest alert readings of all patients, shard by shard. Only the
+     * {@code limit} newest seen so far are kept, in a heap with the oldest of them on
+     * top, so the work and memory do not grow with the number of stored alerts.
+     */
+    private JsonBody alerts(long since, int limit) {
+        int kept = Math.max(0, limit);
+        PriorityQueue<PatientRecord> heap = new PriorityQueue<>(Math.min(kept, 1024) + 1,
+                Comparator.comparingLong(PatientRecord::getTimestamp));
+        for (int shard = 0; shard < dataStorage.getShardCount() && kept > 0; shard++) {
+            dataStorage.forEachPatient(shard, patient -> patient.forEachValue("Alert", since, Long.MAX_VALUE,
+                    (timestamp, value) -> {
+                        if (heap.size() < kept) {
+                            heap.add(new PatientRecord(patient.getPatientId(), value, "Alert", timestamp));
+                        } else if (timestamp > heap.peek().getTimestamp()) {
+                            heap.poll();
+                            heap.add(new PatientRecord(patient.getPatientId(), value, "Alert", timestamp));
+                        }
+                    }));
+        }
+        List<PatientRecord> newest = new ArrayList<>(heap);
+        newest.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+        return out -> {
+            out.write('[');
+            for (int i = 0; i < newest.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                PatientRecord alert = newest.get(i);
+                out.write("{\"patientId\":" + alert.getPatientId() + ",\"timestamp\":" + alert.getTimestamp()
+                        + ",\"state\":\"" + (alert.getMeasurementValue() != 0 ? "triggered" : "resolved") + "\"}");
+            }
+            out.write(']');
+        };
+    }
+
+    private void cache(String key, CachedResponse response) {
+        if (cache.size() >= MAX_CACHE_ENTRIES) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(cached -> cached.expiresAt <= now);
+            if (cache.size() >= MAX_CACHE_ENTRIES) {
+                cache.clear();
+            }
+        }
+        cache.put(key, response);
+    }
+
+    private static void requirePatient(Object data, int patientId) {
+        if (data == null) {
+            throw new NoSuchElementException("No patient " + patientId);
+        }
+    }
+
+    private static void writeRecord(Writer out, PatientRecord record) throws IOException {
+        out.write("{\"patientId\":" + record.getPatientId() + ",\"type\":");
+        writeString(out, record.getRecordType());
+        out.write(",\"timestamp\":" + record.getTimestamp() + ",\"value\":");
+        writeNumber(out, record.getMeasurementValue());
+        out.write('}');
+    }
+
+    private static void writeAggregate(Writer out, SeriesAggregate aggregate) throws IOException {
+        out.write("{\"from\":" + aggregate.getStartTime() + ",\"to\":" + aggregate.getEndTime()
+                + ",\"count\":" + aggregate.getCount() + ",\"min\":");
+        writeNumber(out, aggregate.getMin());
+        out.write(",\"max\":");
+        writeNumber(out, aggregate.getMax());
+        out.write(",\"mean\":");
+        writeNumber(out, aggregate.getMean());
+        out.write(",\"stddev\":");
+        writeNumber(out, aggregate.getStandardDeviation());
+        out.write('}');
+    }
+
+    private static void writeNumber(Writer out, double value) throws IOException {
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter json = new StringWriter();
+        json.write("{\"error\":");
+        writeString(json, message == null ? "" : message);
+        json.write('}');
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Writes the JSON of a response.
+     */
+    private interface JsonBody {
+        void write(Writer out) throws IOException;
+    }
+
+    private static final class CachedResponse {
+        final byte[] body;
+        final long version;
+        final long expiresAt;
+
+        CachedResponse(byte[] body, long version, long expiresAt) {
+            this.body = body;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Passes a response to the connection and keeps a copy for the cache, until the
+     * response turns out too large to cache.
+     */
+    private static final class CachingStream extends OutputStream {
+        private final OutputStream body;
+        private ByteArrayOutputStream copy;
+
+        CachingStream(OutputStream body, boolean keepCopy) {
+            this.body = body;
+            this.copy = keepCopy ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            body.write(bytes, offset, length);
+            if (copy != null) {
+                if (copy.size() + length > MAX_CACHED_BYTES) {
+                    copy = null;
+                } else {
+                    copy.write(bytes, offset, length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            body.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * The readings of one series, copied out of the storage.
+     */
+    private static final class Series implements SeriesVisitor {
+        long[] timestamps = new long[64];
+        double[] values = new double[64];
+        int size;
+
+        @Override
+        public void visit(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size++] = value;
+        }
+    }
+}
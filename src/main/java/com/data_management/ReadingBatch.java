@@ -0,0 +1,89 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity batch of readings kept in parallel arrays, used by readers to hand
+ * many readings to {@link DataStorage} at once instead of one call per reading.
+ */
+public class ReadingBatch {
+    private final int[] patientIds;
+    private final double[] measurementValues;
+    private final String[] recordTypes;
+    private final long[] timestamps;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param capacity the maximum number of readings the batch can hold
+     */
+    public ReadingBatch(int capacity) {
+        this.patientIds = new int[capacity];
+        this.measurementValues = new double[capacity];
+        this.recordTypes = new String[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    /**
+     * Appends a reading to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time of the measurement in milliseconds since epoch
+     * @return {@code true} if the batch is full after adding the reading
+     * @throws IllegalStateException if the batch is already full
+     */
+    public boolean add(int patientId, double measurementValue, String recordType, long timestamp) {
+        if (size == patientIds.length) {
+            throw new IllegalStateException("Batch is full");
+        }
+        patientIds[size] = patientId;
+        measurementValues[size] = measurementValue;
+        recordTypes[size] = recordType;
+        timestamps[size] = timestamp;
+        size++;
+        return size == patientIds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return patientIds.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == patientIds.length;
+    }
+
+    /**
+     * Empties the batch so it can be reused.
+     */
+    public void clear() {
+        Arrays.fill(recordTypes, 0, size, null);
+        size = 0;
+    }
+
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    public double getMeasurementValue(int index) {
+        return measurementValues[index];
+    }
+
+    public String getRecordType(int index) {
+        return recordTypes[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+}
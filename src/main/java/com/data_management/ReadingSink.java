@@ -0,0 +1,16 @@
+package com.data_management;
+
+/**
+ * Receives batches of readings from a reader. {@link DataStorage} is the usual sink;
+ * {@link AdmissionController} can sit in front of it to protect ingest under overload.
+ */
+public interface ReadingSink {
+
+    /**
+     * Takes the readings of a batch. The caller may clear and reuse the batch as soon as
+     * this method returns.
+     *
+     * @param batch the readings to add
+     */
+    void addPatientData(ReadingBatch batch);
+}
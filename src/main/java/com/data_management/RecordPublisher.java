@@ -0,0 +1,123 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the records added to a {@link DataStorage} for a set of patients and record
+ * types, as a {@link java.util.concurrent.Flow.Publisher} of record batches. Create one
+ * with {@link DataStorage#createPublisher(Set, Set, int)}.
+ *
+ * <p>Every subscriber gets its own bounded buffer and receives batches only as far as it
+ * has requested them, on the threads of the common fork-join pool. Ingest never waits
+ * for a subscriber: a batch that does not fit in a subscriber's buffer is dropped for
+ * that subscriber and counted in {@link #getDroppedRecords()}.
+ *
+ * <p>Records of one patient are published in the order they were added. Closing the
+ * publisher completes its subscribers and stops the storage from feeding it.
+ */
+public class RecordPublisher extends SubmissionPublisher<List<PatientRecord>> {
+    private final DataStorage dataStorage;
+    private final Set<Integer> patientIds;
+    private final Set<String> recordTypes;
+    private final LongAdder droppedRecords = new LongAdder();
+
+    /**
+     * @param dataStorage    the storage that feeds the publisher
+     * @param patientIds     the patients to publish, or {@code null} for all
+     * @param recordTypes    the record types to publish, or {@code null} for all
+     * @param bufferCapacity the batches buffered per subscriber, rounded up to a power of two
+     */
+    RecordPublisher(DataStorage dataStorage, Set<Integer> patientIds, Set<String> recordTypes, int bufferCapacity) {
+        super(ForkJoinPool.commonPool(), bufferCapacity);
+        this.dataStorage = dataStorage;
+        this.patientIds = patientIds == null ? null : Set.copyOf(patientIds);
+        this.recordTypes = recordTypes == null ? null : Set.copyOf(recordTypes);
+    }
+
+    /**
+     * Returns whether a record is published.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of the record
+     * @return {@code true} if the record matches both filters
+     */
+    public boolean matches(int patientId, String recordType) {
+        return (patientIds == null || patientIds.contains(patientId))
+                && (recordTypes == null || recordTypes.contains(recordType));
+    }
+
+    /**
+     * Returns the number of records not delivered because a subscriber's buffer was full.
+     *
+     * @return the number of records, summed over all subscribers
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Publishes a single record if it matches.
+     */
+    void publish(int patientId, double measurementValue, String recordType, long timestamp) {
+        if (hasSubscribers() && matches(patientId, recordType)) {
+            List<PatientRecord> batch = new ArrayList<>(1);
+            batch.add(new PatientRecord(patientId, measurementValue, recordType, timestamp));
+            offer(batch);
+        }
+    }
+
+    /**
+     * Publishes the matching readings of a batch that belong to one shard as one batch.
+     */
+    void publish(ReadingBatch readings, int[] shardOf, int shard) {
+        if (!hasSubscribers()) {
+            return;
+        }
+        List<PatientRecord> batch = null;
+        for (int i = 0; i < readings.size(); i++) {
+            if (shardOf[i] == shard && matches(readings.getPatientId(i), readings.getRecordType(i))) {
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                }
+                batch.add(new PatientRecord(readings.getPatientId(i), readings.getMeasurementValue(i),
+                        readings.getRecordType(i), readings.getTimestamp(i)));
+            }
+        }
+        if (batch != null) {
+            offer(batch);
+        }
+    }
+
+    /**
+     * Offers a batch to the subscribers. Called by the storage with a shard lock held, so
+     * it never blocks and never throws: a publisher closed by a subscriber in the
+     * meantime simply receives nothing more.
+     */
+    private void offer(List<PatientRecord> batch) {
+        if (isClosed()) {
+            return;
+        }
+        try {
+            offer(batch, (subscriber, dropped) -> {
+                droppedRecords.add(dropped.size());
+                return false;
+            });
+        } catch (IllegalStateException e) {
+            // Closed between the check and the offer
+        }
+    }
+
+    /**
+     * Completes the subscribers and detaches the publisher from the storage.
+     */
+    @Override
+    public void close() {
+        dataStorage.removePublisher(this);
+        super.close();
+    }
+}
@@ -0,0 +1,79 @@
+package com.data_management;
+
+/**
+ * Summary statistics of the readings of one type of one patient within a time range.
+ *
+ * <p>For a range without readings the count is 0 and the other statistics are
+ * {@code NaN}. The standard deviation is that of the population, i.e. 0 for a single
+ * reading.
+ */
+public class SeriesAggregate {
+    private final long startTime;
+    private final long endTime;
+    private final int count;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double standardDeviation;
+
+    /**
+     * Constructs the statistics of a range.
+     *
+     * @param startTime         the start of the range, inclusive
+     * @param endTime           the end of the range, inclusive
+     * @param count             the number of readings
+     * @param min               the smallest value
+     * @param max               the largest value
+     * @param mean              the mean value
+     * @param standardDeviation the population standard deviation of the values
+     */
+    public SeriesAggregate(long startTime, long endTime, int count, double min, double max, double mean,
+                           double standardDeviation) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.standardDeviation = standardDeviation;
+    }
+
+    /**
+     * Returns the statistics of a range without readings.
+     *
+     * @param startTime the start of the range, inclusive
+     * @param endTime   the end of the range, inclusive
+     * @return statistics with a count of 0
+     */
+    public static SeriesAggregate empty(long startTime, long endTime) {
+        return new SeriesAggregate(startTime, endTime, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+}
@@ -0,0 +1,214 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * The readings of one type of one patient, kept sorted by timestamp and indexed for
+ * range aggregation.
+ *
+ * <p>Prefix sums of the values and of their squares give the count, mean and standard
+ * deviation of any range from two binary searches, and a segment tree over the values
+ * gives its minimum and maximum in O(log n). The sums are taken relative to the first
+ * value, which keeps the variance accurate for long series with a large mean.
+ *
+ * <p>Appending is O(1): the index is brought up to date from the first changed
+ * reading by the next query. A reading older than the newest one is inserted at its
+ * place, which moves only the readings after it.
+ *
+ * <p>This class is not thread-safe, and queries write to it; {@link Patient} guards
+ * every access with one lock per patient.
+ */
+class SeriesIndex {
+    private long[] timestamps = new long[16];
+    private double[] values = new double[16];
+    private double[] sums = new double[17];
+    private double[] squares = new double[17];
+    private int leafCapacity = 16;
+    private double[] minTree = new double[32];
+    private double[] maxTree = new double[32];
+    private int size;
+    private int dirtyFrom;
+    private double shift;
+
+    /**
+     * Adds a reading.
+     *
+     * @param timestamp the time of the reading in milliseconds since epoch
+     * @param value     the value of the reading
+     */
+    void add(long timestamp, double value) {
+        if (size == 0) {
+            shift = value;
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+        int position = size;
+        if (size > 0 && timestamp < timestamps[size - 1]) {
+            // Late reading: keep readings with equal timestamps in arrival order
+            position = upperBound(timestamp);
+            System.arraycopy(timestamps, position, timestamps, position + 1, size - position);
+            System.arraycopy(values, position, values, position + 1, size - position);
+        }
+        timestamps[position] = timestamp;
+        values[position] = value;
+        size++;
+        dirtyFrom = Math.min(dirtyFrom, position);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the newest reading as a record.
+     *
+     * @param patientId  the ID of the patient the series belongs to
+     * @param recordType the type of the series
+     * @return the newest record, or {@code null} if the series is empty
+     */
+    PatientRecord latest(int patientId, String recordType) {
+        return size == 0 ? null : new PatientRecord(patientId, values[size - 1], recordType, timestamps[size - 1]);
+    }
+
+    /**
+     * Aggregates the readings within a time range.
+     *
+     * @param startTime the start of the range, inclusive
+     * @param endTime   the end of the range, inclusive
+     * @return the statistics of the readings in the range
+     */
+    SeriesAggregate aggregate(long startTime, long endTime) {
+        repair();
+        int from = lowerBound(startTime);
+        int to = endTime == Long.MAX_VALUE ? size : lowerBound(endTime + 1);
+        int count = to - from;
+        if (count <= 0) {
+            return SeriesAggregate.empty(startTime, endTime);
+        }
+        double sum = sums[to] - sums[from];
+        double sumOfSquares = squares[to] - squares[from];
+        double variance = Math.max(0, (sumOfSquares - sum * sum / count) / count);
+        return new SeriesAggregate(startTime, endTime, count, min(from, to), max(from, to),
+                shift + sum / count, Math.sqrt(variance));
+    }
+
+    /**
+     * Passes the readings within a time range to a visitor, in time order.
+     *
+     * @param startTime the start of the range, inclusive
+     * @param endTime   the end of the range, inclusive
+     * @param visitor   receives the readings
+     */
+    void forEach(long startTime, long endTime, SeriesVisitor visitor) {
+        int to = endTime == Long.MAX_VALUE ? size : lowerBound(endTime + 1);
+        for (int i = lowerBound(startTime); i < to; i++) {
+            visitor.visit(timestamps[i], values[i]);
+        }
+    }
+
+    /**
+     * Recomputes the prefix sums and tree nodes that depend on readings added since the
+     * last query.
+     */
+    private void repair() {
+        if (dirtyFrom >= size) {
+            return;
+        }
+        for (int i = dirtyFrom; i < size; i++) {
+            double value = values[i] - shift;
+            sums[i + 1] = sums[i] + value;
+            squares[i + 1] = squares[i] + value * value;
+        }
+        int low = leafCapacity + dirtyFrom;
+        int high = leafCapacity + size - 1;
+        for (int node = low; node <= high; node++) {
+            minTree[node] = values[node - leafCapacity];
+            maxTree[node] = minTree[node];
+        }
+        while (low > 1) {
+            low >>= 1;
+            high >>= 1;
+            for (int node = low; node <= high; node++) {
+                minTree[node] = Math.min(minTree[2 * node], minTree[2 * node + 1]);
+                maxTree[node] = Math.max(maxTree[2 * node], maxTree[2 * node + 1]);
+            }
+        }
+        dirtyFrom = size;
+    }
+
+    /**
+     * Returns the smallest value of the readings {@code from} to {@code to - 1}. Only
+     * nodes that lie entirely within the range are visited, so leaves past the last
+     * reading are never read.
+     */
+    private double min(int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int low = from + leafCapacity, high = to + leafCapacity; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                min = Math.min(min, minTree[low++]);
+            }
+            if ((high & 1) == 1) {
+                min = Math.min(min, minTree[--high]);
+            }
+        }
+        return min;
+    }
+
+    private double max(int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int low = from + leafCapacity, high = to + leafCapacity; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                max = Math.max(max, maxTree[low++]);
+            }
+            if ((high & 1) == 1) {
+                max = Math.max(max, maxTree[--high]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Doubles the capacity. The tree is rebuilt by the next query, which is O(n) but only
+     * happens after n appends.
+     */
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        values = Arrays.copyOf(values, capacity);
+        sums = Arrays.copyOf(sums, capacity + 1);
+        squares = Arrays.copyOf(squares, capacity + 1);
+        leafCapacity = capacity;
+        minTree = new double[2 * capacity];
+        maxTree = new double[2 * capacity];
+        dirtyFrom = 0;
+    }
+
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int upperBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
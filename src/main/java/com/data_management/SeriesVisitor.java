@@ -0,0 +1,16 @@
+package com.data_management;
+
+/**
+ * Receives the readings of a series one at a time, see
+ * {@link Patient#forEachValue(String, long, long, SeriesVisitor)}.
+ */
+@FunctionalInterface
+public interface SeriesVisitor {
+    /**
+     * Called for every reading.
+     *
+     * @param timestamp the time of the reading in milliseconds since epoch
+     * @param value     the value of the reading
+     */
+    void visit(long timestamp, double value);
+}
@@ -0,0 +1,136 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.SharedMemoryRing;
+
+/**
+ * {@code SharedMemoryDataReader} is a {@link DataReader} that consumes the binary
+ * readings written by {@code SharedMemoryOutputStrategy} into a memory-mapped ring on
+ * the same host. Readings are copied straight from the mapping into a
+ * {@link ReadingBatch}; nothing is formatted or parsed.
+ *
+ * <p>When the ring is empty the reader spins briefly, then yields, then parks for a
+ * short time, so an idle reader costs almost no CPU while a busy one never makes a
+ * system call.
+ */
+public class SharedMemoryDataReader implements DataReader, Closeable {
+    private static final int BATCH_SIZE = 4096;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final int HEADER_WAIT_TRIES = 50;
+    private static final long RETRY_MILLIS = 100;
+
+    private final ReadingBatch batch = new ReadingBatch(BATCH_SIZE);
+    private final SharedMemoryRing.RecordConsumer toBatch = this::add;
+    private SharedMemoryRing ring;
+    private volatile boolean running;
+    private volatile long latestTimestamp;
+    private long unknownTypes;
+
+    /**
+     * Reads from the ring until {@link #close()} is called.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @param server      {@code shm:/path/to/ring} or a plain file URI of the ring
+     * @throws IOException if the ring cannot be opened
+     */
+    @Override
+    public void readData(DataStorage dataStorage, URI server) throws IOException {
+        open(Paths.get(server.getPath()));
+        int idle = 0;
+        while (running) {
+            if (poll(dataStorage) > 0) {
+                idle = 0;
+            } else if (++idle <= SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idle <= SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Maps the ring file, waiting for the producer to create it if needed. A file that
+     * exists but has no published header yet, because the producer is still creating or
+     * restarting it, is retried for up to {@value #HEADER_WAIT_TRIES} times
+     * {@value #RETRY_MILLIS} ms before giving up.
+     *
+     * @param file the ring file
+     * @throws IOException if the file exists but does not become a ring in time
+     */
+    public void open(Path file) throws IOException {
+        running = true;
+        int headerTries = 0;
+        while (running) {
+            try {
+                ring = SharedMemoryRing.open(file);
+                System.out.println("Attached to shared memory ring " + file);
+                return;
+            } catch (NoSuchFileException e) {
+                headerTries = 0;
+            } catch (IOException e) {
+                if (++headerTries >= HEADER_WAIT_TRIES) {
+                    throw e;
+                }
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS));
+        }
+    }
+
+    /**
+     * Moves every reading currently in the ring into the sink without waiting.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @return the number of readings added
+     */
+    public int poll(ReadingSink sink) {
+        int total = 0;
+        int drained;
+        while ((drained = ring.drain(toBatch, BATCH_SIZE - batch.size())) > 0) {
+            total += drained;
+            sink.addPatientData(batch);
+            batch.clear();
+        }
+        return total;
+    }
+
+    public long getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    public long getUnknownTypes() {
+        return unknownTypes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (ring != null) {
+            ring.close();
+        }
+    }
+
+    private void add(int patientId, int typeCode, long timestamp, double value) {
+        ReadingType type = ReadingType.fromCode(typeCode);
+        if (type == null) {
+            unknownTypes++;
+            return;
+        }
+        batch.add(patientId, value, type.getLabel(), timestamp);
+        if (timestamp > latestTimestamp) {
+            latestTimestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code SocketDataReader} is a {@link DataReader} that consumes the
+ * {@code patientId,timestamp,label,data} lines streamed by {@code TcpOutputStrategy}.
+ *
+ * <p>The connection is a non-blocking {@link SocketChannel} read into a direct
+ * {@link ByteBuffer}. Lines are parsed in place in the buffer; a line cut off at the
+ * end of a read is moved to the front of the buffer and completed by the next read.
+ * Parsed readings are handed to {@link DataStorage} in batches.
+ *
+ * <p>The server URI is either {@code tcp://host:port} or, for a simulator on the same
+ * host, {@code unix:/path/to/socket}, which skips the loopback TCP stack.
+ */
+public class SocketDataReader implements DataReader, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final int MAX_CACHED_LABELS = 64;
+    // Largest mantissa that a double represents exactly, see parseMeasurement
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ReadingBatch batch = new ReadingBatch(BATCH_SIZE);
+    private final byte[][] cachedLabelBytes = new byte[MAX_CACHED_LABELS][];
+    private final String[] cachedLabels = new String[MAX_CACHED_LABELS];
+    private int cachedLabelCount;
+
+    private SocketChannel channel;
+    private Selector selector;
+    private volatile boolean running;
+    private boolean endOfStream;
+    private long invalidLines;
+    private volatile long latestTimestamp;
+
+    /**
+     * Connects to the server and stores everything received until the server closes
+     * the connection or {@link #close()} is called.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @param server      {@code tcp://host:port} or {@code unix:/path}
+     * @throws IOException if the connection fails
+     */
+    @Override
+    public void readData(DataStorage dataStorage, URI server) throws IOException {
+        connect(server);
+        selector = Selector.open();
+        register(selector, null);
+        try {
+            while (running && !endOfStream) {
+                selector.select();
+                selector.selectedKeys().clear();
+                poll(dataStorage);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Opens the connection and switches it to non-blocking mode.
+     *
+     * @param server {@code tcp://host:port} or {@code unix:/path}
+     * @throws IOException if the connection fails
+     */
+    public void connect(URI server) throws IOException {
+        channel = SocketChannel.open(toAddress(server));
+        channel.configureBlocking(false);
+        running = true;
+        System.out.println("Connected to " + server);
+    }
+
+    /**
+     * Registers the connection for reads with a selector, so one thread can wait on
+     * many readers and call {@link #poll(ReadingSink)} on the ready ones.
+     *
+     * @param selector   the selector to register with
+     * @param attachment the object attached to the selection key
+     * @return the selection key
+     * @throws IOException if the connection is closed
+     */
+    public SelectionKey register(Selector selector, Object attachment) throws IOException {
+        return channel.register(selector, SelectionKey.OP_READ, attachment);
+    }
+
+    /**
+     * Reads everything currently available on the connection without blocking and
+     * adds the complete lines to the sink.
+     *
+     * @param sink where the readings are added, usually the {@link DataStorage}
+     * @return the number of readings added
+     * @throws IOException if reading from the connection fails
+     */
+    public int poll(ReadingSink sink) throws IOException {
+        int records = 0;
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            records += parseBuffer(sink);
+        }
+        if (read < 0) {
+            endOfStream = true;
+        }
+        if (!batch.isEmpty()) {
+            sink.addPatientData(batch);
+            batch.clear();
+        }
+        return records;
+    }
+
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    public long getInvalidLines() {
+        return invalidLines;
+    }
+
+    /**
+     * Returns the newest reading timestamp received.
+     *
+     * @return the timestamp in milliseconds since epoch, or 0 if nothing was read yet
+     */
+    public long getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (selector != null) {
+            selector.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private static SocketAddress toAddress(URI server) {
+        String scheme = server.getScheme();
+        if ("unix".equals(scheme)) {
+            return UnixDomainSocketAddress.of(server.getPath());
+        }
+        if ("tcp".equals(scheme)) {
+            return new InetSocketAddress(server.getHost(), server.getPort());
+        }
+        throw new IllegalArgumentException("Unsupported scheme, expected tcp or unix: " + server);
+    }
+
+    /**
+     * Parses the complete lines in the buffer and keeps an unfinished last line at the
+     * start of the buffer for the next read.
+     */
+    private int parseBuffer(ReadingSink sink) {
+        buffer.flip();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        int records = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                if (parseLine(lineStart, i)) {
+                    records++;
+                    if (batch.isFull()) {
+                        sink.addPatientData(batch);
+                        batch.clear();
+                    }
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart == 0 && limit == buffer.capacity()) {
+            // A line longer than the whole buffer can never be completed
+            invalidLines++;
+            lineStart = limit;
+        }
+        buffer.position(lineStart);
+        buffer.compact();
+        return records;
+    }
+
+    private boolean parseLine(int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return false;
+        }
+        try {
+            int firstComma = indexOf(',', start, end);
+            int secondComma = indexOf(',', firstComma + 1, end);
+            int thirdComma = indexOf(',', secondComma + 1, end);
+            int patientId = parseInt(start, firstComma);
+            long timestamp = parseLong(firstComma + 1, secondComma);
+            String label = label(secondComma + 1, thirdComma);
+            double value = parseMeasurement(thirdComma + 1, end);
+            batch.add(patientId, value, label, timestamp);
+            if (timestamp > latestTimestamp) {
+                latestTimestamp = timestamp;
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            invalidLines++;
+            byte[] line = new byte[end - start];
+            buffer.get(start, line);
+            System.err.println("Invalid message: " + new String(line, StandardCharsets.UTF_8));
+            return false;
+        }
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        throw new NumberFormatException("Missing field");
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && buffer.get(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimSpaces(int from, int to) {
+        while (to > from && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private int parseInt(int from, int to) {
+        long value = parseLong(from, to);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Patient ID out of range");
+        }
+        return (int) value;
+    }
+
+    private long parseLong(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        boolean negative = from < to && buffer.get(from) == '-';
+        if (negative) {
+            from++;
+        }
+        if (from == to || to - from > 18) {
+            throw new NumberFormatException("Invalid number");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the label between the two positions, reusing the String of a label seen
+     * before so the common case allocates nothing.
+     */
+    private String label(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        int length = to - from;
+        search:
+        for (int l = 0; l < cachedLabelCount; l++) {
+            byte[] candidate = cachedLabelBytes[l];
+            if (candidate.length != length) {
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                if (candidate[i] != buffer.get(from + i)) {
+                    continue search;
+                }
+            }
+            return cachedLabels[l];
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(from, bytes);
+        String label = new String(bytes, StandardCharsets.UTF_8);
+        if (cachedLabelCount < MAX_CACHED_LABELS) {
+            cachedLabelBytes[cachedLabelCount] = bytes;
+            cachedLabels[cachedLabelCount++] = label;
+        }
+        return label;
+    }
+
+    /**
+     * Parses the data field. Plain decimals with at most 15 significant digits are
+     * converted in place: the digits form an exact long mantissa and dividing it by an
+     * exact power of ten gives the correctly rounded double. Anything else (exponents,
+     * more than 22 fraction digits, even if they are zeros) falls back to
+     * {@link Double#parseDouble(String)}. A trailing
+     * {@code %} is ignored and the alert states map to 1 (triggered) and 0 (resolved).
+     */
+    private double parseMeasurement(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        if (to > from && buffer.get(to - 1) == '%') {
+            to--;
+        }
+        if (matches("triggered", from, to)) {
+            return 1.0;
+        }
+        if (matches("resolved", from, to)) {
+            return 0.0;
+        }
+        int i = from;
+        boolean negative = i < to && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && mantissa < MAX_EXACT_MANTISSA / 10
+                    && fractionDigits < POWERS_OF_TEN.length - 1) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits = true;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (i == to && digits && mantissa < MAX_EXACT_MANTISSA) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        byte[] text = new byte[to - from];
+        buffer.get(from, text);
+        return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+    }
+
+    private boolean matches(String word, int from, int to) {
+        if (to - from != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (buffer.get(from + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingest statistics for one tagged data source of an {@link IngestManager}.
+ *
+ * <p>Throughput is measured between two calls of {@link #sampleThroughput(long)}; lag is
+ * the age of the newest reading received from the source.
+ */
+public class SourceStats {
+    private final String sourceId;
+    private final String sourceType;
+    private final LongAdder records = new LongAdder();
+    private volatile long latestTimestamp;
+    private volatile boolean connected = true;
+
+    private long sampledRecords;
+    private long sampledAt = System.currentTimeMillis();
+
+    public SourceStats(String sourceId, String sourceType) {
+        this.sourceId = sourceId;
+        this.sourceType = sourceType;
+    }
+
+    /**
+     * Records that readings from this source were added to the storage.
+     *
+     * @param count           the number of readings
+     * @param newestTimestamp the newest reading timestamp the source has delivered so far
+     */
+    public void recordIngested(int count, long newestTimestamp) {
+        if (count > 0) {
+            records.add(count);
+        }
+        if (newestTimestamp > latestTimestamp) {
+            latestTimestamp = newestTimestamp;
+        }
+    }
+
+    /**
+     * Returns the readings per second since the previous call and starts a new interval.
+     *
+     * @param now the current time in milliseconds since epoch
+     * @return the throughput in readings per second
+     */
+    public synchronized double sampleThroughput(long now) {
+        long total = records.sum();
+        long elapsed = Math.max(1, now - sampledAt);
+        double throughput = (total - sampledRecords) * 1000.0 / elapsed;
+        sampledRecords = total;
+        sampledAt = now;
+        return throughput;
+    }
+
+    /**
+     * Returns how far this source is behind, measured by its newest reading.
+     *
+     * @param now the current time in milliseconds since epoch
+     * @return the lag in milliseconds, or -1 if nothing was received yet
+     */
+    public long getLagMillis(long now) {
+        long latest = latestTimestamp;
+        return latest == 0 ? -1 : Math.max(0, now - latest);
+    }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    public String getSourceType() {
+        return sourceType;
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public long getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+}
@@ -5,12 +5,19 @@ import java.net.URI;
 
 import org.java_websocket.handshake.ServerHandshake;
 
+import com.cardio_generator.outputs.ReadingType;
+
 /**
  * WebSocketClient connects to a server and reads data.
  * It implements the DataReader interface and uses a DataStorage instance to store received data.
  */
 public class WebSocketClient extends org.java_websocket.client.WebSocketClient implements DataReader {
+    private static final int BATCH_SIZE = 1024;
+
     private DataStorage dataStorage;
+    private SourceStats sourceStats;
+    private ReadingSink sink;
+    private final ReadingBatch batch = new ReadingBatch(BATCH_SIZE);
 
     /**
      * Constructs a new WebSocketClient with specific server URI and DataStorage.
@@ -34,25 +41,34 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient i
     }
 
     /**
-     * Called when a message is received from the server.
+     * Called when a message is received from the server. A message holds one reading, or
+     * several on separate lines when the server sends a frame per tick.
      *
      * @param message  the message received from the server
      */
     @Override
     public void onMessage(String message) {
-        System.out.println("Received message: " + message);
-        try {
-            processMessage(message);
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid message: " + e.getMessage());
+        int start = 0;
+        while (start <= message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            try {
+                processMessage(message.substring(start, end));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid message: " + e.getMessage());
+            }
+            start = end + 1;
         }
+        flush();
     }
 
     /**
      * Processes a message received from the WebSocket server.
      * The message is expected to be in the format: "patientId,timestamp,label,data"
      * where patientId is an int, timestamp is long, label is a String,
-     * and data is a double.
+     * and data is a number, a percentage such as "97.0%", or "triggered"/"resolved" for alerts.
      *
      * @param message the message string received from the WebSocket server
      * @throws IllegalArgumentException if the message format is invalid or can't be parsed
@@ -67,13 +83,36 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient i
             int patientId = Integer.parseInt(parts[0].trim());
             long timestamp = Long.parseLong(parts[1].trim());
             String label = parts[2].trim();
-            double data = Double.parseDouble(parts[3].trim());
-            dataStorage.addPatientData(patientId, data, label, timestamp);
+            double data = ReadingType.parseData(parts[3].trim());
+            if (sink != null) {
+                batch.add(patientId, data, label, timestamp);
+                if (batch.isFull()) {
+                    flush();
+                }
+            } else {
+                dataStorage.addPatientData(patientId, data, label, timestamp);
+            }
+            if (sourceStats != null) {
+                sourceStats.recordIngested(1, timestamp);
+            }
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Invalid format in message: " + message, e);
         }
     }
 
+    /**
+     * Hands the readings parsed from the current message to the sink.
+     */
+    private void flush() {
+        if (!batch.isEmpty()) {
+            try {
+                sink.addPatientData(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
     /**
      * Called when the WebSocket connection is closed.
      *
@@ -84,6 +123,28 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient i
     @Override
     public void onClose(int code, String reason, boolean remote) {
         System.out.println("Connection closed with exit code " + code + " additional info: " + reason);
+        if (sourceStats != null) {
+            sourceStats.setConnected(false);
+        }
+    }
+
+    /**
+     * Sets the statistics that received readings are counted in.
+     *
+     * @param sourceStats the statistics of this connection as an ingest source
+     */
+    public void setSourceStats(SourceStats sourceStats) {
+        this.sourceStats = sourceStats;
+    }
+
+    /**
+     * Hands received readings to a sink, e.g. an {@link AdmissionController}, one batch
+     * per message instead of adding them to the storage one by one.
+     *
+     * @param sink where the readings are added
+     */
+    public void setSink(ReadingSink sink) {
+        this.sink = sink;
     }
 
     /**
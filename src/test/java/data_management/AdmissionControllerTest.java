@@ -0,0 +1,156 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.AdmissionController;
+import com.data_management.DataStorage;
+import com.data_management.IngestPriority;
+import com.data_management.ReadingBatch;
+
+class AdmissionControllerTest {
+
+    private DataStorage mockStorage;
+    private List<String> stored;
+    private CountDownLatch storageBlocked;
+    private CountDownLatch firstWriteStarted;
+    private AdmissionController controller;
+
+    @BeforeEach
+    void setUp() {
+        mockStorage = mock(DataStorage.class);
+        stored = new CopyOnWriteArrayList<>();
+        storageBlocked = new CountDownLatch(1);
+        firstWriteStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstWriteStarted.countDown();
+            storageBlocked.await(5, TimeUnit.SECONDS);
+            ReadingBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(batch.getRecordType(i));
+            }
+            return null;
+        }).when(mockStorage).addPatientData(any(ReadingBatch.class));
+        // Low priority is deferred from 5 queued readings, normal from 8, shed from 10
+        controller = new AdmissionController(mockStorage, 10, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageBlocked.countDown();
+        controller.close();
+    }
+
+    private ReadingBatch batchOf(String recordType, int count) {
+        ReadingBatch batch = new ReadingBatch(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(1, i, recordType, i);
+        }
+        return batch;
+    }
+
+    @Test
+    void shouldKeepCriticalReadingsFlowingAndShedLowPriorityUnderOverload() throws Exception {
+        // Arrange: the writer is stuck on the first batch, so the queue keeps growing
+        controller.addPatientData(batchOf("ECG", 1));
+        assertTrue(firstWriteStarted.await(2, TimeUnit.SECONDS));
+
+        // Act
+        controller.addPatientData(batchOf("Saturation", 12));
+        controller.addPatientData(batchOf("Cholesterol", 6));
+        controller.addPatientData(batchOf("Alert", 2));
+
+        // Assert
+        assertEquals(15, controller.getAdmittedCount());
+        assertEquals(6, controller.getShedCount("Cholesterol"));
+        assertEquals(0, controller.getShedCount("Saturation"));
+    }
+
+    @Test
+    void shouldReadmitDeferredReadingsOnceTheQueueDrains() throws Exception {
+        // Arrange
+        controller.addPatientData(batchOf("ECG", 1));
+        assertTrue(firstWriteStarted.await(2, TimeUnit.SECONDS));
+        controller.addPatientData(batchOf("SystolicPressure", 6));
+
+        // Act
+        controller.addPatientData(batchOf("WhiteBloodCells", 6));
+        storageBlocked.countDown();
+        controller.close();
+
+        // Assert
+        assertEquals(4, controller.getDeferredCount("WhiteBloodCells"));
+        assertEquals(2, controller.getShedCount("WhiteBloodCells"));
+        assertEquals(11, stored.size());
+        assertEquals("WhiteBloodCells", stored.get(stored.size() - 1));
+    }
+
+    @Test
+    void shouldMakeReadersWaitOnceCriticalReadingsReachTheHardLimit() throws Exception {
+        // Arrange: the hard limit defaults to twice the budget, 20 readings
+        controller.addPatientData(batchOf("Saturation", 1));
+        assertTrue(firstWriteStarted.await(2, TimeUnit.SECONDS));
+        controller.addPatientData(batchOf("Saturation", 19));
+        Thread reader = new Thread(() -> controller.addPatientData(batchOf("Alert", 2)));
+
+        // Act
+        reader.start();
+        reader.join(300);
+        boolean waited = reader.isAlive();
+        long admittedWhileFull = controller.getAdmittedCount();
+        storageBlocked.countDown();
+        reader.join(5000);
+        controller.close();
+
+        // Assert
+        assertTrue(waited);
+        assertEquals(20, admittedWhileFull);
+        assertEquals(1, controller.getThrottledCount());
+        assertEquals(22, stored.size());
+        assertEquals("Alert", stored.get(stored.size() - 1));
+    }
+
+    @Test
+    void shouldShedEcgUnlessItIsMadeCritical() throws Exception {
+        // Arrange
+        controller.addPatientData(batchOf("Saturation", 1));
+        assertTrue(firstWriteStarted.await(2, TimeUnit.SECONDS));
+        controller.addPatientData(batchOf("Saturation", 10));
+
+        // Act
+        controller.addPatientData(batchOf("ECG", 3));
+        controller.setPriority("ECG", IngestPriority.CRITICAL);
+        controller.addPatientData(batchOf("ECG", 2));
+
+        // Assert
+        assertEquals(3, controller.getShedCount("ECG"));
+        assertEquals(13, controller.getAdmittedCount());
+    }
+
+    @Test
+    void shouldRejectReadingsAfterClose() {
+        // Arrange
+        storageBlocked.countDown();
+        controller.close();
+
+        // Act
+        controller.addPatientData(batchOf("Saturation", 3));
+
+        // Assert
+        assertEquals(3, controller.getRejectedCount());
+        assertEquals(0, controller.getAdmittedCount());
+        assertEquals(List.of(), stored);
+    }
+}
@@ -0,0 +1,61 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+
+class BatchGenerationTest {
+
+    private static final int[] PATIENTS = {3, 1, 4, 2};
+
+    @Test
+    void testBatchMatchesSingleGeneration() {
+        // Arrange
+        PatientDataGenerator single = new BloodPressureDataGenerator(4, 11L);
+        PatientDataGenerator batched = new BloodPressureDataGenerator(4, 11L);
+        List<String> expected = new ArrayList<>();
+        OutputStrategy collector = (id, timestamp, label, data) -> expected.add(id + "," + label + "," + data);
+        OutputBatch batch = new OutputBatch(1);
+
+        // Act
+        for (int patientId : PATIENTS) {
+            single.generate(patientId, collector);
+        }
+        batched.generate(PATIENTS, 0, PATIENTS.length, 1000L, batch);
+
+        // Assert
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            actual.add(batch.getPatientId(i) + "," + batch.getType(i).getLabel() + ","
+                    + batch.getType(i).formatData(batch.getValue(i)));
+            assertEquals(1000L, batch.getTimestamp(i));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testDefaultBatchOutputFormatsReadings() {
+        // Arrange
+        PatientDataGenerator generator = new BloodSaturationDataGenerator(4, 5L);
+        OutputBatch batch = new OutputBatch(4);
+        List<String> output = new ArrayList<>();
+        OutputStrategy strategy = (id, timestamp, label, data) -> output.add(label + "," + data);
+
+        // Act
+        generator.generate(PATIENTS, 1, 3, 2000L, batch);
+        strategy.output(batch);
+
+        // Assert
+        assertEquals(2, output.size());
+        assertEquals("Saturation," + batch.getValue(0) + "%", output.get(0));
+    }
+}
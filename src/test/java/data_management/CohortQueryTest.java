@@ -0,0 +1,80 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.CohortMatch;
+import com.data_management.CohortQuery;
+import com.data_management.DataStorage;
+
+class CohortQueryTest {
+    private static final long START = 9_000_000_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private DataStorage storage;
+    private CohortQuery query;
+
+    @BeforeEach
+    void setUp() {
+        storage = DataStorage.newInstance();
+        query = new CohortQuery(storage, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        query.close();
+    }
+
+    @Test
+    void testSelectsPatientsLowForLongEnough() throws Exception {
+        // Arrange
+        for (int patientId = 7001; patientId <= 7100; patientId++) {
+            // Patient 7000 + n is low for n minutes, from minute 10 on
+            int lowMinutes = patientId - 7000;
+            for (int minute = 0; minute < 60; minute++) {
+                double saturation = minute >= 10 && minute < 10 + lowMinutes ? 89 : 97;
+                storage.addPatientData(patientId, saturation, "Saturation", START + minute * MINUTE);
+            }
+        }
+
+        // Act
+        List<Integer> patients = query.select(
+                CohortQuery.below("Saturation", 92, 48 * MINUTE, START, START + 59 * MINUTE));
+        List<Integer> limited = query.select(
+                CohortQuery.below("Saturation", 92, 5 * MINUTE, START, START + 59 * MINUTE), 3);
+
+        // Assert
+        // Low from minute 10 to minute 10 + n, or to the last reading at minute 59
+        assertEquals(List.of(7048, 7049, 7050), patients.stream().filter(id -> id <= 7050)
+                .collect(Collectors.toList()));
+        assertEquals(53, patients.size());
+        assertEquals(3, limited.size());
+    }
+
+    @Test
+    void testTopPatientsByVariance() throws Exception {
+        // Arrange
+        for (int patientId = 8001; patientId <= 8200; patientId++) {
+            double spread = patientId % 50;
+            for (int i = 0; i < 20; i++) {
+                storage.addPatientData(patientId, 120 + (i % 2 == 0 ? spread : -spread), "SystolicPressure",
+                        START + i * MINUTE);
+            }
+        }
+
+        // Act
+        List<CohortMatch> top = query.top(CohortQuery.standardDeviation("SystolicPressure", START, START + 20 * MINUTE),
+                patient -> patient.aggregate("SystolicPressure", START, START + 20 * MINUTE).getMax() - 120, 5);
+
+        // Assert
+        assertEquals(List.of(8049, 8099, 8149, 8199, 8048),
+                top.stream().map(CohortMatch::getPatientId).collect(Collectors.toList()));
+        assertEquals(49.0, top.get(0).getScore(), 1e-9);
+    }
+}
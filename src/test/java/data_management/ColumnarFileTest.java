@@ -0,0 +1,81 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.ColumnarFileOutputStrategy;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.ReadingType;
+import com.data_management.FileDataReader;
+import com.data_management.ReadingSink;
+
+class ColumnarFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testClosedFileIsReadThroughIndex() throws Exception {
+        // Arrange
+        ColumnarFileOutputStrategy output = new ColumnarFileOutputStrategy(directory.toString(), 0);
+        writeReadings(output, 20000);
+        output.close();
+        List<String> readings = new ArrayList<>();
+
+        // Act
+        int all = new FileDataReader(directory.toString()).readBinary(batch -> { }, Long.MIN_VALUE, Long.MAX_VALUE);
+        int patient = new FileDataReader(directory.toString()).readBinary(collector(readings), 7, 5000L, 9999L);
+
+        // Assert
+        assertEquals(20000, all);
+        assertEquals(50, patient); // patient 7 has every 100th reading, 50 of them in the range
+        assertTrue(readings.stream().allMatch(r -> r.startsWith("7,")));
+        assertTrue(readings.contains("7,5007,SystolicPressure,7.0"));
+    }
+
+    @Test
+    void testUnclosedFileIsReadThroughBlockHeaders() throws Exception {
+        // Arrange
+        ColumnarFileOutputStrategy output = new ColumnarFileOutputStrategy(directory.toString(), 0);
+        writeReadings(output, 10000);
+        output.flush();
+        List<String> readings = new ArrayList<>();
+
+        // Act
+        int records = new FileDataReader(directory.toString()).readBinary(collector(readings), 42, 0L, 100_000L);
+
+        // Assert
+        assertEquals(100, records);
+        assertEquals("42,42,SystolicPressure,42.0", readings.get(0));
+        output.close();
+    }
+
+    private static void writeReadings(ColumnarFileOutputStrategy output, int count) {
+        OutputBatch batch = new OutputBatch(1000);
+        for (int i = 0; i < count; i++) {
+            // 100 patients, one reading per millisecond
+            batch.add(i % 100, ReadingType.SYSTOLIC_PRESSURE, i, i % 100);
+            if (batch.size() == 1000) {
+                output.output(batch);
+                batch.clear();
+            }
+        }
+        output.output(batch);
+    }
+
+    private static ReadingSink collector(List<String> readings) {
+        return batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                readings.add(batch.getPatientId(i) + "," + batch.getTimestamp(i) + "," + batch.getRecordType(i)
+                        + "," + batch.getMeasurementValue(i));
+            }
+        };
+    }
+}
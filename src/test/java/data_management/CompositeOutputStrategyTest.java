@@ -0,0 +1,130 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.CompositeOutputStrategy;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.OverflowPolicy;
+import com.cardio_generator.outputs.ReadingType;
+
+class CompositeOutputStrategyTest {
+
+    @Test
+    void testSlowSinkDropsWithoutHoldingUpOthers() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> fast = new CopyOnWriteArrayList<>();
+        List<String> slow = new CopyOnWriteArrayList<>();
+        CompositeOutputStrategy composite = new CompositeOutputStrategy(2, OverflowPolicy.DROP_NEWEST);
+        composite.addSink("fast", (id, timestamp, label, data) -> fast.add(data));
+        composite.addSink("slow", (id, timestamp, label, data) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slow.add(data);
+        });
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            composite.output(1, i, "ECG", Integer.toString(i));
+            Thread.sleep(i == 0 ? 200 : 1); // let the slow writer take the first reading
+        }
+        release.countDown();
+        composite.close();
+
+        // Assert
+        assertEquals(10, fast.size());
+        assertEquals(0, composite.getDroppedCount("fast"));
+        // One reading is being written and two are queued when the rest arrives
+        assertEquals(3, slow.size());
+        assertEquals(7, composite.getDroppedCount("slow"));
+    }
+
+    @Test
+    void testDropOldestKeepsNewestReadings() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        CompositeOutputStrategy composite = new CompositeOutputStrategy(2, OverflowPolicy.DROP_OLDEST);
+        composite.addSink("slow", (id, timestamp, label, data) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(data);
+        });
+
+        // Act
+        composite.output(1, 0, "ECG", "0");
+        Thread.sleep(200); // let the writer take the first reading
+        for (int i = 1; i < 6; i++) {
+            composite.output(1, i, "ECG", Integer.toString(i));
+        }
+        release.countDown();
+        composite.close();
+
+        // Assert
+        assertEquals(List.of("0", "4", "5"), written);
+        assertEquals(3, composite.getDroppedCount("slow"));
+    }
+
+    @Test
+    void testTypedReadingsReachSinksWithoutFormatting() {
+        // Arrange
+        List<String> written = new CopyOnWriteArrayList<>();
+        CompositeOutputStrategy composite = new CompositeOutputStrategy(100, OverflowPolicy.BLOCK);
+        for (String name : List.of("first", "second")) {
+            composite.addSink(name, new OutputStrategy() {
+                @Override
+                public void output(int patientId, long timestamp, String label, String data) {
+                    fail("String output used by sink " + name);
+                }
+
+                @Override
+                public void output(int patientId, long timestamp, int typeCode, double value) {
+                    written.add(name + ":" + patientId + "," + timestamp + "," + typeCode + "," + value);
+                }
+            });
+        }
+
+        // Act
+        composite.output(7, 1000L, ReadingType.SATURATION.getCode(), 97);
+        composite.output(8, 1001L, ReadingType.ECG.getCode(), 0.25);
+        composite.close();
+
+        // Assert
+        int saturation = ReadingType.SATURATION.getCode();
+        int ecg = ReadingType.ECG.getCode();
+        assertEquals(List.of("first:7,1000," + saturation + ",97.0", "first:8,1001," + ecg + ",0.25"),
+                written.stream().filter(line -> line.startsWith("first:")).collect(Collectors.toList()));
+        assertEquals(List.of("second:7,1000," + saturation + ",97.0", "second:8,1001," + ecg + ",0.25"),
+                written.stream().filter(line -> line.startsWith("second:")).collect(Collectors.toList()));
+    }
+    @Test
+    void testUnknownTypeCodeIsRejectedBeforeItIsQueued() {
+        // Arrange
+        List<String> received = new CopyOnWriteArrayList<>();
+        OutputStrategy formatting = (id, timestamp, label, data) -> received.add(data);
+        CompositeOutputStrategy composite = new CompositeOutputStrategy(10, OverflowPolicy.BLOCK);
+        composite.addSink("formatting", formatting);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> formatting.output(1, 1000L, 99, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> composite.output(1, 1000L, -1, 1.0));
+        composite.close();
+        assertEquals(List.of(), received);
+    }
+
+}
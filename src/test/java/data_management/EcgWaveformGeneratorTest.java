@@ -0,0 +1,75 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.EcgWaveformGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.ReadingType;
+
+class EcgWaveformGeneratorTest {
+
+    @Test
+    void testGeneratesOneSecondBlockWithBeats() {
+        // Arrange
+        EcgWaveformGenerator generator = new EcgWaveformGenerator(2, 250, 3L);
+        OutputBatch batch = new OutputBatch(16);
+        int[] patients = {2};
+
+        // Act
+        for (int second = 1; second <= 10; second++) {
+            generator.generate(patients, 0, 1, second * 1000L, batch);
+        }
+
+        // Assert
+        assertEquals(2500, batch.size());
+        assertEquals(ReadingType.ECG, batch.getType(0));
+        assertEquals(4L, batch.getTimestamp(0));
+        assertEquals(1000L, batch.getTimestamp(249));
+        int rPeaks = 0;
+        for (int i = 1; i < batch.size() - 1; i++) {
+            double value = batch.getValue(i);
+            if (value > 0.6 && value >= batch.getValue(i - 1) && value > batch.getValue(i + 1)) {
+                rPeaks++;
+            }
+        }
+        // 60 to 80 bpm with variability gives about 9 to 14 beats in ten seconds
+        assertTrue(rPeaks >= 8 && rPeaks <= 15, "R peaks: " + rPeaks);
+    }
+
+    @Test
+    void testBlockFollowsTheIntervalBetweenCalls() {
+        // Arrange
+        EcgWaveformGenerator generator = new EcgWaveformGenerator(1, 250, 3L);
+        OutputBatch batch = new OutputBatch(16);
+        int[] patients = {1};
+        generator.generate(patients, 0, 1, 1000L, batch);
+        batch.clear();
+
+        // Act
+        generator.generate(patients, 0, 1, 1200L, batch);
+        int afterShortInterval = batch.size();
+        generator.generate(patients, 0, 1, 1200L, batch);
+        int afterRepeatedTime = batch.size();
+        generator.generate(patients, 0, 1, 5000L, batch);
+
+        // Assert
+        assertEquals(50, afterShortInterval);
+        assertEquals(1004L, batch.getTimestamp(0));
+        assertEquals(1200L, batch.getTimestamp(49));
+        assertEquals(50, afterRepeatedTime);
+        // After a long gap only the last second is generated
+        assertEquals(300, batch.size());
+        assertEquals(4004L, batch.getTimestamp(50));
+    }
+
+    @Test
+    void testRejectsSampleRatesOutsideClinicalRange() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new EcgWaveformGenerator(1, 100, 1L));
+        assertThrows(IllegalArgumentException.class, () -> new EcgWaveformGenerator(1, 1000, 1L));
+    }
+}
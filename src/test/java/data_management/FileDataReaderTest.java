@@ -0,0 +1,151 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.ReadingBatch;
+
+class FileDataReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private DataStorage mockStorage;
+    private List<String> stored;
+    private FileDataReader reader;
+    private Thread followThread;
+
+    @BeforeEach
+    void setUp() {
+        mockStorage = mock(DataStorage.class);
+        stored = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            ReadingBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(batch.getPatientId(i) + "," + batch.getTimestamp(i) + ","
+                        + batch.getRecordType(i) + "," + batch.getMeasurementValue(i));
+            }
+            return null;
+        }).when(mockStorage).addPatientData(any(ReadingBatch.class));
+        reader = new FileDataReader(directory.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reader.close();
+        if (followThread != null) {
+            followThread.join(2000);
+        }
+    }
+
+    private void startFollowing() {
+        followThread = new Thread(() -> {
+            try {
+                reader.follow(mockStorage);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        followThread.setDaemon(true);
+        followThread.start();
+    }
+
+    private void append(String file, String text) throws IOException {
+        Files.write(directory.resolve(file), text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void awaitStored(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stored.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void shouldReadAppendedLinesOnlyOnce() throws Exception {
+        // Arrange
+        append("Saturation.txt", "Patient ID: 1, Timestamp: 1000, Label: Saturation, Data: 95.0%\n");
+        startFollowing();
+        awaitStored(1);
+
+        // Act
+        append("Saturation.txt", "Patient ID: 1, Timestamp: 2000, Label: Saturation, Data: 94.0%\n");
+        awaitStored(2);
+        Thread.sleep(100);
+
+        // Assert
+        assertEquals(List.of("1,1000,Saturation,95.0", "1,2000,Saturation,94.0"), stored);
+        assertEquals(2000L, reader.getLatestTimestamp());
+    }
+
+    @Test
+    void shouldWaitForTheRestOfAPartialLine() throws Exception {
+        // Arrange
+        startFollowing();
+
+        // Act
+        append("ECG.txt", "Patient ID: 2, Timestamp: 3000, Label: ECG, Da");
+        Thread.sleep(200);
+        assertEquals(List.of(), stored);
+        append("ECG.txt", "ta: 0.5\n");
+        awaitStored(1);
+
+        // Assert
+        assertEquals(List.of("2,3000,ECG,0.5"), stored);
+    }
+
+    @Test
+    void shouldRestartAtTheBeginningOfARotatedFile() throws Exception {
+        // Arrange
+        append("Alert.txt", "Patient ID: 3, Timestamp: 4000, Label: Alert, Data: triggered\n");
+        startFollowing();
+        awaitStored(1);
+
+        // Act
+        Files.move(directory.resolve("Alert.txt"), directory.resolve("Alert.old"));
+        append("Alert.txt", "Patient ID: 3, Timestamp: 5000, Label: Alert, Data: resolved\n");
+        awaitStored(2);
+
+        // Assert
+        assertEquals(List.of("3,4000,Alert,1.0", "3,5000,Alert,0.0"), stored);
+    }
+
+    @Test
+    void shouldFinishTheOldFileBeforeReadingItsReplacement() throws Exception {
+        // Arrange
+        append("ECG.txt", "Patient ID: 4, Timestamp: 1000, Label: ECG, Data: 0.1\n");
+        reader.pollUpdates(mockStorage);
+
+        // Act
+        append("ECG.txt", "Patient ID: 4, Timestamp: 2000, Label: ECG, Data: 0.2\n"
+                + "Patient ID: 4, Timestamp: 3000, Label: ECG, Data: 0.3\n");
+        Files.move(directory.resolve("ECG.txt"), directory.resolve("ECG.old"));
+        append("ECG.txt", "Patient ID: 4, Timestamp: 4000, Label: ECG, Data: 0.4\n");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stored.size() < 4 && System.currentTimeMillis() < deadline) {
+            reader.pollUpdates(mockStorage);
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertEquals(List.of("4,1000,ECG,0.1", "4,2000,ECG,0.2", "4,3000,ECG,0.3", "4,4000,ECG,0.4"), stored);
+    }
+}
@@ -0,0 +1,216 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.SegmentCompression;
+import com.cardio_generator.outputs.SegmentManifest;
+import com.data_management.FileDataReader;
+import com.data_management.ReadingSink;
+
+class FileOutputStrategyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testBufferedReadingsAreWrittenOnFlush() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 64 * 1024, 0);
+        Path file = directory.resolve("Saturation.txt");
+
+        // Act
+        output.output(1, 1000L, ReadingType.SATURATION.getCode(), 97);
+        long sizeBeforeFlush = Files.size(file);
+        output.flush();
+
+        // Assert
+        assertEquals(0, sizeBeforeFlush);
+        assertEquals(List.of("Patient ID: 1, Timestamp: 1000, Label: Saturation, Data: 97.0%"),
+                Files.readAllLines(file));
+        output.close();
+    }
+
+    @Test
+    void testConcurrentWritersKeepLinesWhole() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 4096, 10);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int patientId = t + 1;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    output.output(patientId, i, ReadingType.ECG.getCode(), 0.25);
+                }
+            });
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        output.close();
+
+        // Assert
+        List<String> lines = Files.readAllLines(directory.resolve("ECG.txt"));
+        assertEquals(20000, lines.size());
+        assertTrue(lines.stream().allMatch(line -> line.matches(
+                "Patient ID: \\d, Timestamp: \\d+, Label: ECG, Data: 0\\.25")));
+    }
+
+    @Test
+    void testWritesAfterCloseGoStraightThrough() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 64 * 1024, 0);
+        output.output(1, 1000L, ReadingType.ALERT.getCode(), 1);
+        output.close();
+
+        // Act
+        output.output(1, 2000L, ReadingType.ALERT.getCode(), 0);
+
+        // Assert
+        List<String> lines = Files.readAllLines(directory.resolve("Alert.txt"));
+        assertEquals(2, lines.size());
+        assertFalse(lines.get(1).isEmpty());
+        assertTrue(lines.get(1).endsWith("resolved"));
+    }
+
+    @Test
+    void testReadingsOfFileThatCannotBeOpenedAreCounted() throws Exception {
+        // Arrange
+        Files.createDirectory(directory.resolve("Saturation.txt"));
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 64 * 1024, 0);
+
+        // Act
+        output.output(1, 1000L, ReadingType.SATURATION.getCode(), 97);
+        output.output(2, 1000L, ReadingType.SATURATION.getCode(), 98);
+        output.output(1, 1000L, ReadingType.ECG.getCode(), 0.5);
+        output.close();
+
+        // Assert
+        assertEquals(2, output.getFailedReadings());
+        assertEquals(1, Files.readAllLines(directory.resolve("ECG.txt")).size());
+    }
+
+    @Test
+    void testSegmentsRotateBySizeWithManifests() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 4096, 0,
+                10 * 1024, 0, SegmentCompression.GZIP);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            output.output(1 + i % 10, 1000L * i, ReadingType.ECG.getCode(), 0.5);
+        }
+        output.close();
+
+        // Assert
+        List<SegmentManifest> manifests = manifests();
+        assertTrue(manifests.size() >= 5);
+        assertEquals(1000, manifests.stream().mapToLong(SegmentManifest::getReadings).sum());
+        SegmentManifest first = manifests.get(0);
+        assertEquals("ECG.000000.seg.gz", first.getSegmentFile());
+        assertEquals(0, first.getFirstTimestamp());
+        assertEquals(1, first.getFirstPatientId());
+        assertEquals(10, first.getLastPatientId());
+        assertTrue(Files.exists(directory.resolve(first.getSegmentFile())));
+        assertFalse(Files.exists(directory.resolve("ECG.000000.seg")));
+    }
+
+    @Test
+    void testReaderSkipsSegmentsOutsideRange() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 4096, 0,
+                10 * 1024, 0, SegmentCompression.FAST);
+        for (int i = 0; i < 1000; i++) {
+            output.output(1, 1000L * i, ReadingType.SATURATION.getCode(), 95);
+        }
+        output.close();
+        List<Long> timestamps = new ArrayList<>();
+        ReadingSink sink = batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                timestamps.add(batch.getTimestamp(i));
+            }
+        };
+
+        // Act
+        int records = new FileDataReader(directory.toString()).readSegments(sink, 100_000L, 199_000L);
+
+        // Assert
+        assertEquals(100, records);
+        assertEquals(100, timestamps.size());
+        assertTrue(timestamps.stream().allMatch(t -> t >= 100_000L && t <= 199_000L));
+    }
+
+    @Test
+    void testReaderFallsBackToCompressedSegmentWhenOriginalIsGone() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 4096, 0,
+                10 * 1024, 0, SegmentCompression.FAST);
+        for (int i = 0; i < 1000; i++) {
+            output.output(1, 1000L * i, ReadingType.SATURATION.getCode(), 95);
+        }
+        output.close();
+        // A manifest read just before the segment was compressed still names the .seg
+        Path manifestPath = directory.resolve("Saturation.000000.manifest");
+        SegmentManifest manifest = SegmentManifest.read(manifestPath);
+        manifest.withSegmentFile("Saturation.000000.seg").write(manifestPath);
+        List<Long> timestamps = new ArrayList<>();
+        ReadingSink sink = batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                timestamps.add(batch.getTimestamp(i));
+            }
+        };
+
+        // Act
+        int records = new FileDataReader(directory.toString()).readSegments(sink, 0L, 999_000L);
+
+        // Assert
+        assertEquals(1000, records);
+        assertEquals(1000, timestamps.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    private List<SegmentManifest> manifests() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> paths = files.filter(p -> p.toString().endsWith(".manifest")).sorted()
+                    .collect(Collectors.toList());
+            List<SegmentManifest> manifests = new ArrayList<>();
+            for (Path path : paths) {
+                manifests.add(SegmentManifest.read(path));
+            }
+            return manifests;
+        }
+    }
+    @Test
+    void testUnknownTypeCodeIsRejected() throws Exception {
+        // Arrange
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> output.output(1, 1000L, 99, 1.0));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.IngestManager;
+import com.data_management.SourceStats;
+
+class IngestManagerTest {
+
+    @TempDir
+    Path directory;
+
+    private DataStorage storage;
+    private IngestManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = DataStorage.newInstance();
+        manager = new IngestManager(storage, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    void shouldMergeSocketAndFileSourcesIntoStorage() throws Exception {
+        // Arrange
+        long start = System.currentTimeMillis() - 5000;
+        Path file = directory.resolve("Saturation.txt");
+        Files.writeString(file, "Patient ID: 2, Timestamp: " + start + ", Label: Saturation, Data: 96.0%\n"
+                + "Patient ID: 2, Timestamp: " + (start + 1) + ", Label: Saturation, Data: 95.0%\n");
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+            // Act
+            manager.addSocketSource("ward-a", new URI("tcp://localhost:" + port));
+            manager.addFileSource("ward-b", directory.toString());
+            try (SocketChannel ward = server.accept()) {
+                write(ward, "1," + start + ",Saturation,97.0%\n1," + (start + 3000) + ",HeartRate,80.0\n"
+                        + "1," + (start + 3000) + ",Alert,triggered\n");
+                awaitTrue(() -> records("ward-a") == 3 && records("ward-b") == 2);
+                Files.writeString(file, "Patient ID: 2, Timestamp: " + (start + 2)
+                        + ", Label: Saturation, Data: 94.0%\n", StandardOpenOption.APPEND);
+                awaitTrue(() -> records("ward-b") == 3);
+            }
+        }
+
+        // Assert
+        List<SourceStats> stats = manager.getSourceStats();
+        long now = System.currentTimeMillis();
+        assertEquals("ward-a", stats.get(0).getSourceId());
+        assertEquals("socket", stats.get(0).getSourceType());
+        assertEquals("ward-b", stats.get(1).getSourceId());
+        assertEquals("file", stats.get(1).getSourceType());
+        assertEquals(start + 3000, stats.get(0).getLatestTimestamp());
+        assertEquals(start + 2, stats.get(1).getLatestTimestamp());
+        assertTrue(stats.get(0).getLagMillis(now) >= 2000);
+        assertTrue(stats.get(1).getLagMillis(now) > stats.get(0).getLagMillis(now));
+        assertEquals(3, storage.getRecords(1, start, start + 3000).size());
+        assertEquals(3, storage.getRecords(2, start, start + 2).size());
+    }
+
+    @Test
+    void shouldRemoveSourcesThatCloseOrFail() throws Exception {
+        // Arrange
+        try (ServerSocketChannel closingServer = ServerSocketChannel.open();
+                ServerSocketChannel failingServer = ServerSocketChannel.open()) {
+            closingServer.bind(new InetSocketAddress("localhost", 0));
+            failingServer.bind(new InetSocketAddress("localhost", 0));
+            manager.addSocketSource("closing", new URI("tcp://localhost:" + port(closingServer)));
+            manager.addSocketSource("failing", new URI("tcp://localhost:" + port(failingServer)));
+
+            // Act
+            try (SocketChannel closing = closingServer.accept()) {
+                write(closing, "1,1000,HeartRate,80.0\n");
+                awaitTrue(() -> records("closing") == 1);
+                closing.shutdownOutput();
+                SocketChannel failing = failingServer.accept();
+                failing.setOption(StandardSocketOptions.SO_LINGER, 0);
+                failing.close(); // resets the connection
+                awaitTrue(() -> !stats("closing").isConnected() && !stats("failing").isConnected());
+                // The manager closed its end as well
+                assertEquals(-1, closing.read(ByteBuffer.allocate(16)));
+            }
+        }
+
+        // Assert
+        assertFalse(stats("closing").isConnected());
+        assertFalse(stats("failing").isConnected());
+        assertEquals(1, records("closing"));
+        assertEquals(0, records("failing"));
+    }
+
+    private long records(String sourceId) {
+        return stats(sourceId).getRecords();
+    }
+
+    private SourceStats stats(String sourceId) {
+        return manager.getSourceStats().stream().filter(s -> s.getSourceId().equals(sourceId)).findFirst()
+                .orElseThrow();
+    }
+
+    private static int port(ServerSocketChannel server) throws Exception {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    private static void write(SocketChannel channel, String text) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the sources");
+            Thread.sleep(10);
+        }
+    }
+}
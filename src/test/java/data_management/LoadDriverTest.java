@@ -0,0 +1,46 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.LoadDriver;
+import com.cardio_generator.LoadProfile;
+import com.cardio_generator.generators.EcgWaveformGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+
+class LoadDriverTest {
+
+    @Test
+    void testWaveformBlocksDoNotExceedTargetRate() {
+        // Arrange
+        long[] lastTimestamp = {Long.MIN_VALUE};
+        boolean[] increasing = {true};
+        OutputStrategy output = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+            }
+
+            @Override
+            public void output(OutputBatch batch) {
+                for (int i = 0; i < batch.size(); i++) {
+                    increasing[0] &= batch.getTimestamp(i) > lastTimestamp[0];
+                    lastTimestamp[0] = batch.getTimestamp(i);
+                }
+            }
+        };
+        LoadDriver driver = new LoadDriver(LoadProfile.parse("constant:500"), output, List.of(1));
+        driver.addGenerator(new EcgWaveformGenerator(1, 250, 7L), 1);
+
+        // Act
+        driver.run(2, 100);
+
+        // Assert
+        long overshoot = driver.getProducedCount() - driver.getTargetCount();
+        assertTrue(overshoot <= 250, "Produced " + overshoot + " readings beyond the target");
+        assertTrue(increasing[0], "ECG samples repeated earlier timestamps");
+    }
+}
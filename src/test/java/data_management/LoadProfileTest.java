@@ -0,0 +1,39 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.LoadProfile;
+
+class LoadProfileTest {
+
+    @Test
+    void testProfileShapes() {
+        // Arrange
+        LoadProfile ramp = LoadProfile.parse("ramp:1000-3000/10s");
+        LoadProfile step = LoadProfile.parse("step:100,200,300/1m");
+        LoadProfile burst = LoadProfile.parse("burst:10/500/5s/60s");
+
+        // Act & Assert
+        assertEquals(1000, ramp.getTargetRate(0), 1e-9);
+        assertEquals(2000, ramp.getTargetRate(5), 1e-9);
+        assertEquals(3000, ramp.getTargetRate(20), 1e-9);
+        assertEquals(100, step.getTargetRate(59), 1e-9);
+        assertEquals(200, step.getTargetRate(60), 1e-9);
+        assertEquals(300, step.getTargetRate(3600), 1e-9);
+        assertEquals(500, burst.getTargetRate(64), 1e-9);
+        assertEquals(10, burst.getTargetRate(65), 1e-9);
+        assertEquals(500, burst.getTargetRate(121), 1e-9);
+    }
+
+    @Test
+    void testInvalidProfilesAreRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("5000"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("wave:5000"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("ramp:1000-2000"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("constant:-1"));
+    }
+}
@@ -0,0 +1,69 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+
+class PatientRandomsTest {
+
+    @Test
+    void testSameSeedGeneratesSameValues() {
+        // Arrange
+        PatientDataGenerator first = new BloodLevelsDataGenerator(10, 42L);
+        PatientDataGenerator second = new BloodLevelsDataGenerator(10, 42L);
+        PatientDataGenerator otherSeed = new BloodLevelsDataGenerator(10, 43L);
+
+        // Act
+        List<String> firstValues = generate(first, 3, 5);
+        List<String> secondValues = generate(second, 3, 5);
+        List<String> otherValues = generate(otherSeed, 3, 5);
+
+        // Assert
+        assertEquals(firstValues, secondValues);
+        assertNotEquals(firstValues, otherValues);
+    }
+
+    @Test
+    void testPatientValuesDoNotDependOnOtherPatients() {
+        // Arrange
+        PatientDataGenerator small = new BloodLevelsDataGenerator(5, 7L);
+        PatientDataGenerator large = new BloodLevelsDataGenerator(1000, 7L);
+        generate(large, 1, 3); // other patients drawing values first must not matter
+
+        // Act
+        List<String> smallValues = generate(small, 4, 3);
+        List<String> largeValues = generate(large, 4, 3);
+
+        // Assert
+        assertEquals(smallValues, largeValues);
+    }
+
+    @Test
+    void testShardProducesSameValuesAsWholeFleet() {
+        // Arrange
+        PatientDataGenerator fleet = new BloodLevelsDataGenerator(100, 9L);
+        PatientDataGenerator shard = new BloodLevelsDataGenerator(51, 25, 9L);
+
+        // Act
+        List<String> fleetValues = generate(fleet, 60, 3);
+        List<String> shardValues = generate(shard, 60, 3);
+
+        // Assert
+        assertEquals(fleetValues, shardValues);
+    }
+
+    private static List<String> generate(PatientDataGenerator generator, int patientId, int times) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < times; i++) {
+            generator.generate(patientId, (id, timestamp, label, data) -> values.add(label + "=" + data));
+        }
+        return values;
+    }
+}
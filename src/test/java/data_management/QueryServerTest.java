@@ -0,0 +1,103 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.QueryServer;
+
+class QueryServerTest {
+    private static final int PATIENT = 9301;
+
+    private DataStorage storage;
+    private QueryServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = DataStorage.newInstance();
+        server = new QueryServer(storage, 0, 2, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void testAnswersRecordsLatestAndAggregates() throws Exception {
+        // Arrange
+        storage.addPatientData(PATIENT, 120, "SystolicPressure", 1000L);
+        storage.addPatientData(PATIENT, 130, "SystolicPressure", 2000L);
+        storage.addPatientData(PATIENT, 96, "Saturation", 2000L);
+
+        // Act
+        HttpResponse<String> records = get("/patients/" + PATIENT + "/records?type=SystolicPressure&from=1500");
+        HttpResponse<String> latest = get("/patients/" + PATIENT + "/latest");
+        HttpResponse<String> aggregate = get("/patients/" + PATIENT + "/aggregate?type=SystolicPressure");
+        HttpResponse<String> missing = get("/patients/" + (PATIENT + 1) + "/latest");
+        HttpResponse<String> invalid = get("/patients/" + PATIENT + "/aggregate?type=Saturation&interval=10");
+
+        // Assert
+        assertEquals("[{\"patientId\":9301,\"type\":\"SystolicPressure\",\"timestamp\":2000,\"value\":130.0}]",
+                records.body());
+        assertTrue(latest.body().contains("\"Saturation\":{\"patientId\":9301,\"type\":\"Saturation\","
+                + "\"timestamp\":2000,\"value\":96.0}"));
+        assertTrue(aggregate.body().contains("\"count\":2,\"min\":120.0,\"max\":130.0,\"mean\":125.0,\"stddev\":5.0"));
+        assertEquals(404, missing.statusCode());
+        assertEquals(400, invalid.statusCode());
+    }
+
+    @Test
+    void testCachedResponseIsInvalidatedByNewReadings() throws Exception {
+        // Arrange
+        int patientId = PATIENT + 10;
+        storage.addPatientData(patientId, 1, "Alert", 5000L);
+        String path = "/patients/" + patientId + "/aggregate?type=Alert";
+        get(path);
+
+        // Act
+        HttpResponse<String> cached = get(path);
+        long hits = server.getCacheHits();
+        storage.addPatientData(patientId, 0, "Alert", 6000L);
+        HttpResponse<String> fresh = get(path);
+
+        // Assert
+        assertEquals(1, hits);
+        assertTrue(cached.body().contains("\"count\":1"));
+        assertTrue(fresh.body().contains("\"count\":2"));
+        assertEquals(1, server.getCacheHits());
+    }
+
+    @Test
+    void testAlertsReturnsNewestUpToLimit() throws Exception {
+        // Arrange: timestamps far beyond those of other tests, which share the storage
+        long base = 4_000_000_000_000L;
+        for (int i = 0; i < 20; i++) {
+            storage.addPatientData(PATIENT + 20 + i % 3, i % 2, "Alert", base + i * 1000L);
+        }
+
+        // Act
+        HttpResponse<String> alerts = get("/alerts?since=" + base + "&limit=3");
+
+        // Assert
+        assertEquals("[{\"patientId\":9322,\"timestamp\":" + (base + 19_000) + ",\"state\":\"triggered\"},"
+                + "{\"patientId\":9321,\"timestamp\":" + (base + 18_000) + ",\"state\":\"resolved\"},"
+                + "{\"patientId\":9323,\"timestamp\":" + (base + 17_000) + ",\"state\":\"triggered\"}]",
+                alerts.body());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,69 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.ReadingEncoder;
+import com.cardio_generator.outputs.ReadingType;
+
+class ReadingEncoderTest {
+
+    @Test
+    void testTypedValuesMatchStringFormat() {
+        // Arrange
+        ReadingEncoder encoder = new ReadingEncoder(16);
+
+        // Act
+        encoder.appendCsv(1, 1000L, ReadingType.SATURATION, 97);
+        encoder.appendCsv(2, 2000L, ReadingType.ECG, -0.5);
+        encoder.appendCsv(3, 3000L, ReadingType.CHOLESTEROL, 0.1234567);
+        encoder.appendCsv(4, 4000L, ReadingType.ALERT, 1);
+        encoder.appendCsv(5, 5000L, ReadingType.ALERT, 0);
+
+        // Assert
+        assertEquals("1,1000,Saturation,97.0%\n"
+                + "2,2000,ECG,-0.5\n"
+                + "3,3000,Cholesterol,0.123457\n"
+                + "4,4000,Alert,triggered\n"
+                + "5,5000,Alert,resolved\n", text(encoder));
+    }
+
+    @Test
+    void testRecordFormatMatchesStringOverload() {
+        // Arrange
+        ReadingEncoder typed = new ReadingEncoder(16);
+        ReadingEncoder formatted = new ReadingEncoder(16);
+
+        // Act
+        typed.appendRecord(42, 1700000000000L, ReadingType.SYSTOLIC_PRESSURE, 120);
+        formatted.appendRecord(42, 1700000000000L, "SystolicPressure", "120.0");
+
+        // Assert
+        assertEquals("Patient ID: 42, Timestamp: 1700000000000, Label: SystolicPressure, Data: 120.0\n",
+                text(typed));
+        assertEquals(text(formatted), text(typed));
+    }
+
+    @Test
+    void testClearReusesBuffer() {
+        // Arrange
+        ReadingEncoder encoder = new ReadingEncoder(16);
+        encoder.appendCsv(1, 1L, ReadingType.ECG, 0.25);
+
+        // Act
+        encoder.clear();
+
+        // Assert
+        assertTrue(encoder.isEmpty());
+        encoder.appendCsv(7, 8L, ReadingType.ECG, 0.25);
+        assertEquals("7,8,ECG,0.25\n", text(encoder));
+    }
+
+    private static String text(ReadingEncoder encoder) {
+        return new String(encoder.array(), 0, encoder.size(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,164 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.ReadingBatch;
+import com.data_management.RecordPublisher;
+
+class RecordPublisherTest {
+    private static final int PATIENT = 9501;
+
+    @Test
+    void testSubscriberReceivesMatchingRecordsOnDemand() throws Exception {
+        // Arrange
+        DataStorage storage = DataStorage.newInstance();
+        RecordPublisher publisher = storage.createPublisher(Set.of(PATIENT), Set.of("Saturation"), 16);
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(List<PatientRecord> batch) {
+                for (PatientRecord record : batch) {
+                    received.add(record.getPatientId() + "," + record.getTimestamp() + "," + record.getRecordType());
+                    done.countDown();
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        ReadingBatch batch = new ReadingBatch(4);
+        batch.add(PATIENT, 95, "Saturation", 2000L);
+        batch.add(PATIENT + 1, 95, "Saturation", 2000L);
+        batch.add(PATIENT, 120, "SystolicPressure", 2000L);
+        batch.add(PATIENT, 94, "Saturation", 3000L);
+
+        // Act
+        storage.addPatientData(PATIENT, 96, "Saturation", 1000L);
+        storage.addPatientData(PATIENT, 80, "DiastolicPressure", 1000L);
+        storage.addPatientData(batch);
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(PATIENT + ",1000,Saturation", PATIENT + ",2000,Saturation", PATIENT + ",3000,Saturation"),
+                received);
+        publisher.close();
+    }
+
+    @Test
+    void testSubscriberWithoutDemandLosesBatchesBeyondItsBuffer() {
+        // Arrange
+        DataStorage storage = DataStorage.newInstance();
+        RecordPublisher publisher = storage.createPublisher(Set.of(PATIENT + 10), null, 4);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                // Never requests anything
+            }
+
+            @Override
+            public void onNext(List<PatientRecord> batch) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            storage.addPatientData(PATIENT + 10, 70, "ECG", i);
+        }
+
+        // Assert
+        assertEquals(16, publisher.getDroppedRecords());
+        publisher.close();
+    }
+
+    @Test
+    void testClosingWhileIngestingNeverFailsIngest() throws Exception {
+        // Arrange
+        DataStorage storage = DataStorage.newInstance();
+        int patient = PATIENT + 20;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread ingest = new Thread(() -> {
+            try {
+                for (long t = 0; running.get(); t++) {
+                    storage.addPatientData(patient, 70, "ECG", t);
+                    ReadingBatch batch = new ReadingBatch(1);
+                    batch.add(patient, 71, "ECG", t);
+                    storage.addPatientData(batch);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        ingest.start();
+
+        // Act
+        for (int i = 0; i < 200 && failure.get() == null; i++) {
+            RecordPublisher publisher = storage.createPublisher(Set.of(patient), null, 2);
+            CountDownLatch received = new CountDownLatch(1);
+            publisher.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(List<PatientRecord> batch) {
+                    received.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            received.await(1, TimeUnit.SECONDS);
+            publisher.close();
+        }
+        running.set(false);
+        ingest.join(5000);
+
+        // Assert
+        assertNull(failure.get());
+    }
+}
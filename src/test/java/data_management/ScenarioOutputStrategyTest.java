@@ -0,0 +1,167 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.ScenarioScript;
+import com.cardio_generator.ScenarioScript.Event;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.ScenarioOutputStrategy;
+
+class ScenarioOutputStrategyTest {
+
+    @Test
+    void testWorstCaseInjectsEveryEvent() {
+        // Arrange
+        List<String> received = new ArrayList<>();
+        ScenarioOutputStrategy scenario = new ScenarioOutputStrategy(collector(received),
+                ScenarioScript.parse("worst-case"), 1, 10, 42L);
+        OutputBatch batch = new OutputBatch(4);
+        batch.add(3, ReadingType.SATURATION, 1000L, 98);
+        batch.add(3, ReadingType.ECG, 1000L, 0.4);
+        batch.add(3, ReadingType.SYSTOLIC_PRESSURE, 1000L, 120);
+
+        // Act
+        scenario.output(batch);
+
+        // Assert
+        assertTrue(received.contains("Alert=1.0"));
+        assertTrue(received.stream().anyMatch(r -> r.startsWith("Saturation=")
+                && Double.parseDouble(r.substring(11)) <= 90));
+        assertTrue(received.stream().anyMatch(r -> r.startsWith("ECG=")
+                && Double.parseDouble(r.substring(4)) >= 110));
+        assertTrue(received.stream().anyMatch(r -> r.startsWith("SystolicPressure=")
+                && Double.parseDouble(r.substring(17)) != 120));
+        assertEquals(1, scenario.getEpisodeCount(Event.MANUAL_ALERT));
+    }
+
+    @Test
+    void testManualAlertIsResolvedWhenEpisodeEnds() {
+        // Arrange
+        List<String> received = new ArrayList<>();
+        ScenarioOutputStrategy scenario = new ScenarioOutputStrategy(collector(received),
+                ScenarioScript.parse("manual-alert=1/10s"), 1, 1, 7L);
+
+        // Act
+        scenario.output(1, 0L, ReadingType.SATURATION.getCode(), 97);
+        scenario.output(1, 60_000L, ReadingType.SATURATION.getCode(), 97);
+
+        // Assert: back-to-back 10 s episodes, each resolved before the next is triggered
+        long episodes = scenario.getEpisodeCount(Event.MANUAL_ALERT);
+        assertTrue(episodes >= 6 && episodes <= 7);
+        List<String> expected = new ArrayList<>(List.of("Alert=1.0", "Saturation=97.0"));
+        for (int i = 1; i < episodes; i++) {
+            expected.add("Alert=0.0");
+            expected.add("Alert=1.0");
+        }
+        expected.add("Saturation=97.0");
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testEpisodesDependOnTimeNotOnTheReadingsSeen() {
+        // Arrange
+        ScenarioScript script = ScenarioScript.parse("manual-alert=0.3/30s");
+        List<String> alertsA = new ArrayList<>();
+        List<String> alertsB = new ArrayList<>();
+        ScenarioOutputStrategy scenarioA = new ScenarioOutputStrategy(alertCollector(alertsA), script, 1, 3, 11L);
+        ScenarioOutputStrategy scenarioB = new ScenarioOutputStrategy(alertCollector(alertsB), script, 1, 3, 11L);
+
+        // Act: the same hour, seen through every 100 ms reading or through one per minute
+        for (long t = 0; t <= 3_600_000L; t += 100) {
+            for (int patientId = 1; patientId <= 3; patientId++) {
+                scenarioA.output(patientId, t, ReadingType.ECG.getCode(), 70);
+                scenarioA.output(patientId, t, ReadingType.SATURATION.getCode(), 97);
+            }
+        }
+        for (long t = 0; t <= 3_600_000L; t += 60_000) {
+            for (int patientId = 1; patientId <= 3; patientId++) {
+                scenarioB.output(patientId, t, ReadingType.SATURATION.getCode(), 97);
+            }
+        }
+
+        // Assert
+        assertTrue(scenarioA.getEpisodeCount(Event.MANUAL_ALERT) > 10);
+        assertEquals(scenarioA.getEpisodeCount(Event.MANUAL_ALERT), scenarioB.getEpisodeCount(Event.MANUAL_ALERT));
+        alertsA.sort(null);
+        alertsB.sort(null);
+        assertEquals(alertsA, alertsB);
+    }
+
+    @Test
+    void testEcgWaveformIsNotReplacedByAHeartRate() {
+        // Arrange
+        List<String> received = new ArrayList<>();
+        ScenarioOutputStrategy scenario = new ScenarioOutputStrategy(collector(received),
+                ScenarioScript.parse("tachycardia=1"), 1, 1, 3L, true);
+
+        // Act
+        scenario.output(1, 1000L, ReadingType.ECG.getCode(), 0.4);
+        scenario.output(1, 1004L, ReadingType.ECG.getCode(), -0.1);
+
+        // Assert
+        assertEquals(List.of("ECG=0.4", "ECG=-0.1"), received);
+        assertEquals(1, scenario.getEpisodeCount(Event.TACHYCARDIA));
+    }
+
+    @Test
+    void testReadingsWithoutEpisodesPassUnchanged() {
+        // Arrange
+        List<String> received = new ArrayList<>();
+        ScenarioOutputStrategy scenario = new ScenarioOutputStrategy(collector(received),
+                ScenarioScript.parse("hypoxemia=0,tachycardia=1"), 1, 5, 1L);
+
+        // Act
+        scenario.output(2, 1000L, ReadingType.SATURATION.getCode(), 97);
+        scenario.output(99, 1000L, ReadingType.ECG.getCode(), 0.4);
+
+        // Assert
+        assertEquals(List.of("Saturation=97.0", "ECG=0.4"), received);
+    }
+
+    @Test
+    void testInvalidScriptsAreRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ScenarioScript.parse("seizure=0.1"));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioScript.parse("hypoxemia=2"));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioScript.parse("hypoxemia"));
+        assertEquals(300, ScenarioScript.parse("tachycardia=0.1/5m").getDurationSeconds(Event.TACHYCARDIA));
+    }
+
+    private static OutputStrategy alertCollector(List<String> alerts) {
+        return new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, int typeCode, double value) {
+                if (typeCode == ReadingType.ALERT.getCode()) {
+                    alerts.add(patientId + "," + timestamp + "," + value);
+                }
+            }
+        };
+    }
+
+    private static OutputStrategy collector(List<String> received) {
+        return new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                received.add(label + "=" + data);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, int typeCode, double value) {
+                received.add(ReadingType.fromCode(typeCode).getLabel() + "=" + value);
+            }
+        };
+    }
+}
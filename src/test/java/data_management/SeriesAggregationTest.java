@@ -0,0 +1,142 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.SeriesAggregate;
+
+class SeriesAggregationTest {
+
+    @Test
+    void testRangesMatchScanOfRecords() {
+        // Arrange
+        Patient patient = new Patient(1);
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            // Mostly in order, with some late readings
+            long timestamp = random.nextInt(10) == 0 ? random.nextInt(i * 10 + 1) : i * 10L;
+            patient.addRecord(120 + random.nextGaussian() * 15, "SystolicPressure", timestamp);
+            patient.addRecord(97, "Saturation", timestamp);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            long start = random.nextInt(50_000);
+            long end = start + random.nextInt(20_000);
+
+            // Act
+            SeriesAggregate aggregate = patient.aggregate("SystolicPressure", start, end);
+
+            // Assert
+            List<Double> values = new ArrayList<>();
+            for (PatientRecord record : patient.getRecords(start, end)) {
+                if (record.getRecordType().equals("SystolicPressure")) {
+                    values.add(record.getMeasurementValue());
+                }
+            }
+            assertEquals(values.size(), aggregate.getCount());
+            if (values.isEmpty()) {
+                assertTrue(Double.isNaN(aggregate.getMean()));
+                continue;
+            }
+            double mean = values.stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+            double variance = values.stream().mapToDouble(v -> (v - mean) * (v - mean)).sum() / values.size();
+            assertEquals(values.stream().mapToDouble(Double::doubleValue).min().getAsDouble(), aggregate.getMin());
+            assertEquals(values.stream().mapToDouble(Double::doubleValue).max().getAsDouble(), aggregate.getMax());
+            assertEquals(mean, aggregate.getMean(), 1e-9);
+            assertEquals(Math.sqrt(variance), aggregate.getStandardDeviation(), 1e-6);
+        }
+    }
+
+    @Test
+    void testBucketsCoverRangeIncludingEmptyOnes() {
+        // Arrange
+        Patient patient = new Patient(2);
+        patient.addRecord(95, "Saturation", 0L);
+        patient.addRecord(91, "Saturation", 5L);
+        patient.addRecord(93, "Saturation", 25L);
+
+        // Act
+        List<SeriesAggregate> buckets = patient.aggregate("Saturation", 0L, 34L, 10L);
+
+        // Assert
+        assertEquals(4, buckets.size());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals(91.0, buckets.get(0).getMin());
+        assertEquals(93.0, buckets.get(0).getMean());
+        assertEquals(0, buckets.get(1).getCount());
+        assertEquals(93.0, buckets.get(2).getMax());
+        assertEquals(30L, buckets.get(3).getStartTime());
+        assertEquals(34L, buckets.get(3).getEndTime());
+    }
+
+    @Test
+    void testAggregatingWhileRecordsAreAdded() throws Exception {
+        // Arrange
+        Patient patient = new Patient(2);
+        int records = 100_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            for (int i = 0; i < records; i++) {
+                long timestamp = random.nextInt(20) == 0 ? random.nextInt(i + 1) : i;
+                patient.addRecord(60 + random.nextInt(40), "HeartRate", timestamp);
+            }
+        });
+
+        // Act
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                SeriesAggregate aggregate = patient.aggregate("HeartRate", 0, Long.MAX_VALUE);
+                if (aggregate.getCount() > 0 && (aggregate.getMin() < 60 || aggregate.getMax() > 99)) {
+                    failure.set(new AssertionError("Out of range: " + aggregate.getMin() + ", " + aggregate.getMax()));
+                }
+            }
+        } catch (RuntimeException e) {
+            failure.set(e);
+        }
+        writer.join();
+
+        // Assert
+        assertNull(failure.get());
+        assertEquals(records, patient.aggregate("HeartRate", 0, Long.MAX_VALUE).getCount());
+    }
+
+    @Test
+    void testListingRecordsWhileRecordsAreAdded() throws Exception {
+        // Arrange
+        Patient patient = new Patient(3);
+        int records = 100_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < records; i++) {
+                patient.addRecord(95, "Saturation", i);
+            }
+        });
+
+        // Act
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                patient.getRecords(0, Long.MAX_VALUE);
+            }
+        } catch (RuntimeException e) {
+            failure.set(e);
+        }
+        writer.join();
+
+        // Assert
+        assertNull(failure.get());
+        assertEquals(records, patient.getRecords(0, Long.MAX_VALUE).size());
+    }
+}
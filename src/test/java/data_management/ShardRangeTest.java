@@ -0,0 +1,48 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.HealthDataSimulator;
+
+class ShardRangeTest {
+
+    @Test
+    void testShardsCoverEveryPatientOnce() {
+        for (int patientCount : new int[] {1, 7, 100, 1001}) {
+            for (int shards = 1; shards <= Math.min(patientCount, 16); shards++) {
+                // Act & Assert: each shard starts right after the previous one ends
+                int next = 1;
+                for (int index = 0; index < shards; index++) {
+                    int[] range = HealthDataSimulator.shardRange(patientCount, index, shards);
+                    assertEquals(next, range[0]);
+                    assertTrue(range[1] >= range[0]);
+                    assertTrue(range[1] - range[0] + 1 <= patientCount / shards + 1);
+                    next = range[1] + 1;
+                }
+                assertEquals(patientCount + 1, next);
+            }
+        }
+    }
+
+    @Test
+    void testSplitsIntoNearlyEqualRanges() {
+        // Act & Assert
+        assertArrayEquals(new int[] {1, 3}, HealthDataSimulator.shardRange(10, 0, 3));
+        assertArrayEquals(new int[] {4, 6}, HealthDataSimulator.shardRange(10, 1, 3));
+        assertArrayEquals(new int[] {7, 10}, HealthDataSimulator.shardRange(10, 2, 3));
+    }
+
+    @Test
+    void testEmptyAndMissingShardsAreRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> HealthDataSimulator.shardRange(2, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> HealthDataSimulator.shardRange(10, 3, 3));
+        assertThrows(IllegalArgumentException.class, () -> HealthDataSimulator.shardRange(10, -1, 3));
+        assertThrows(IllegalArgumentException.class, () -> HealthDataSimulator.shardRange(10, 0, 0));
+    }
+}
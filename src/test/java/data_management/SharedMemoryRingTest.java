@@ -0,0 +1,158 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.SharedMemoryOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.ReadingBatch;
+import com.data_management.SharedMemoryDataReader;
+
+class SharedMemoryRingTest {
+
+    @TempDir
+    Path directory;
+
+    private DataStorage mockStorage;
+    private List<String> stored;
+
+    @BeforeEach
+    void setUp() {
+        mockStorage = mock(DataStorage.class);
+        stored = new ArrayList<>();
+        doAnswer(invocation -> {
+            ReadingBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(batch.getPatientId(i) + "," + batch.getTimestamp(i) + ","
+                        + batch.getRecordType(i) + "," + batch.getMeasurementValue(i));
+            }
+            return null;
+        }).when(mockStorage).addPatientData(any(ReadingBatch.class));
+    }
+
+    @Test
+    void shouldTransferReadingsThroughTheRing() throws Exception {
+        // Arrange
+        Path ring = directory.resolve("ring");
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 16);
+        SharedMemoryDataReader reader = new SharedMemoryDataReader();
+        reader.open(ring);
+
+        // Act
+        output.output(1, 1000L, "Saturation", "95.0%");
+        output.output(2, 1001L, "Alert", "triggered");
+        output.output(3, 1002L, "ECG", "-0.25");
+        int read = reader.poll(mockStorage);
+        reader.close();
+
+        // Assert
+        assertEquals(3, read);
+        assertEquals(List.of("1,1000,Saturation,95.0", "2,1001,Alert,1.0", "3,1002,ECG,-0.25"), stored);
+        assertEquals(1002L, reader.getLatestTimestamp());
+    }
+
+    @Test
+    void shouldDropReadingsWhenTheRingIsFullAndReuseFreedSlots() throws Exception {
+        // Arrange
+        Path ring = directory.resolve("ring");
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 4);
+        SharedMemoryDataReader reader = new SharedMemoryDataReader();
+        reader.open(ring);
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            output.output(i, i, "ECG", "1.0");
+        }
+        int firstRead = reader.poll(mockStorage);
+        output.output(10, 10L, "ECG", "2.0");
+        int secondRead = reader.poll(mockStorage);
+        reader.close();
+
+        // Assert
+        assertEquals(4, firstRead);
+        assertEquals(2, output.getDroppedCount());
+        assertEquals(1, secondRead);
+        assertEquals("10,10,ECG,2.0", stored.get(4));
+    }
+
+    @Test
+    void shouldFollowAProducerThatRestartsWhileAttached() throws Exception {
+        // Arrange
+        Path ring = directory.resolve("ring");
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 4);
+        SharedMemoryDataReader reader = new SharedMemoryDataReader();
+        reader.open(ring);
+        for (int i = 0; i < 3; i++) {
+            output.output(i, i, "ECG", "1.0");
+        }
+        int beforeRestart = reader.poll(mockStorage);
+        output.output(3, 3L, "ECG", "1.0"); // never read, the restart discards it
+
+        // Act
+        SharedMemoryOutputStrategy restarted = new SharedMemoryOutputStrategy(ring, 16);
+        for (int i = 0; i < 3; i++) {
+            restarted.output(100 + i, 100L + i, "ECG", "2.0");
+        }
+        int afterRestart = reader.poll(mockStorage);
+        for (int i = 0; i < 16; i++) {
+            restarted.output(200 + i, 200L + i, "ECG", "3.0");
+        }
+        int filled = reader.poll(mockStorage);
+        reader.close();
+
+        // Assert
+        assertEquals(3, beforeRestart);
+        assertEquals(3, afterRestart);
+        assertEquals(List.of("100,100,ECG,2.0", "101,101,ECG,2.0", "102,102,ECG,2.0"), stored.subList(3, 6));
+        assertEquals(0, restarted.getDroppedCount());
+        assertEquals(16, filled);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            expected.add((200 + i) + "," + (200 + i) + ",ECG,3.0");
+        }
+        assertEquals(expected, stored.subList(6, 22));
+    }
+
+    @Test
+    void shouldWaitForTheHeaderOfARingFileBeingCreated() throws Exception {
+        // Arrange
+        Path ring = directory.resolve("ring");
+        Files.createFile(ring);
+        SharedMemoryDataReader reader = new SharedMemoryDataReader();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                reader.open(ring);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+
+        // Act
+        consumer.start();
+        Thread.sleep(250);
+        SharedMemoryOutputStrategy output = new SharedMemoryOutputStrategy(ring, 16);
+        consumer.join(5000);
+        output.output(1, 1000L, "Saturation", "95.0%");
+        int read = reader.poll(mockStorage);
+        reader.close();
+
+        // Assert
+        assertNull(failure.get());
+        assertEquals(1, read);
+        assertEquals(List.of("1,1000,Saturation,95.0"), stored);
+    }
+}
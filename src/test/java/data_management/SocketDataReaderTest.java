@@ -0,0 +1,172 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.ReadingBatch;
+import com.data_management.SocketDataReader;
+
+class SocketDataReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private DataStorage mockStorage;
+    private List<String> stored;
+
+    @BeforeEach
+    void setUp() {
+        mockStorage = mock(DataStorage.class);
+        stored = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            ReadingBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(batch.getPatientId(i) + "," + batch.getTimestamp(i) + ","
+                        + batch.getRecordType(i) + "," + batch.getMeasurementValue(i));
+            }
+            return null;
+        }).when(mockStorage).addPatientData(any(ReadingBatch.class));
+    }
+
+    @Test
+    void shouldParseLinesSplitAcrossReads() throws Exception {
+        // Arrange
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            SocketDataReader reader = new SocketDataReader();
+            Thread readerThread = new Thread(() -> {
+                try {
+                    reader.readData(mockStorage, new URI("tcp://localhost:" + port));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            readerThread.start();
+
+            // Act
+            try (SocketChannel client = server.accept()) {
+                write(client, "25,1746370219657,ECG,-0.3926475224186839");
+                Thread.sleep(100);
+                write(client, "5\n7,1746370219658,Saturation,95.0%\n8,1746370219659,Alert,triggered\n");
+                write(client, "not_a_number,1,ECG,1.0\n9,1746370219660,SystolicPressure,121.0\n");
+            }
+            readerThread.join(5000);
+
+            // Assert
+            assertEquals(List.of(
+                    "25,1746370219657,ECG,-0.39264752241868395",
+                    "7,1746370219658,Saturation,95.0",
+                    "8,1746370219659,Alert,1.0",
+                    "9,1746370219660,SystolicPressure,121.0"), stored);
+            assertEquals(1, reader.getInvalidLines());
+        }
+    }
+
+    @Test
+    void shouldReadFromUnixDomainSocketOutput() throws Exception {
+        // Arrange
+        Path socketPath = directory.resolve("cardio.sock");
+        TcpOutputStrategy output = new TcpOutputStrategy(socketPath);
+        SocketDataReader reader = new SocketDataReader();
+        reader.connect(new URI("unix:" + socketPath));
+        Thread.sleep(200); // let the server accept the connection
+
+        // Act
+        output.output(3, 1000L, "DiastolicPressure", "80.0");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stored.isEmpty() && System.currentTimeMillis() < deadline) {
+            reader.poll(mockStorage);
+            Thread.sleep(10);
+        }
+        reader.close();
+
+        // Assert
+        assertEquals(List.of("3,1000,DiastolicPressure,80.0"), stored);
+    }
+
+    @Test
+    void shouldParseLongZeroPaddedFractions() throws Exception {
+        // Arrange
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            SocketDataReader reader = new SocketDataReader();
+            Thread readerThread = new Thread(() -> {
+                try {
+                    reader.readData(mockStorage, new URI("tcp://localhost:" + port));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            readerThread.start();
+
+            // Act
+            try (SocketChannel client = server.accept()) {
+                write(client, "1,1000,ECG,0.00000000000000000000001\n"
+                        + "2,1000,ECG,0.0000000000000000000000000000000000000000\n"
+                        + "3,1000,ECG,1.5\n");
+            }
+            readerThread.join(5000);
+
+            // Assert
+            assertEquals(List.of("1,1000,ECG,1.0E-23", "2,1000,ECG,0.0", "3,1000,ECG,1.5"), stored);
+            assertEquals(0, reader.getInvalidLines());
+        }
+    }
+
+    @Test
+    void shouldRejectPatientIdsOutsideTheIntRange() throws Exception {
+        // Arrange
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            SocketDataReader reader = new SocketDataReader();
+            Thread readerThread = new Thread(() -> {
+                try {
+                    reader.readData(mockStorage, new URI("tcp://localhost:" + port));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            readerThread.start();
+
+            // Act
+            try (SocketChannel client = server.accept()) {
+                write(client, "4294967297,1000,HeartRate,80.0\n"
+                        + "-2147483649,1000,HeartRate,80.0\n"
+                        + "2147483647,1000,HeartRate,75.0\n");
+            }
+            readerThread.join(5000);
+
+            // Assert
+            assertEquals(List.of("2147483647,1000,HeartRate,75.0"), stored);
+            assertEquals(2, reader.getInvalidLines());
+        }
+    }
+
+    private void write(SocketChannel channel, String text) throws Exception {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.Subscription;
+
+class SubscriptionTest {
+
+    @Test
+    void testPatientRangesAndLabels() {
+        // Act
+        Subscription subscription = Subscription.parse("subscribe patients=1-30,42 labels=ECG,Saturation");
+
+        // Assert
+        assertTrue(subscription.matches(1, ReadingType.ECG.getCode()));
+        assertTrue(subscription.matches(30, ReadingType.SATURATION.getCode()));
+        assertTrue(subscription.matches(42, ReadingType.ECG.getCode()));
+        assertFalse(subscription.matches(31, ReadingType.ECG.getCode()));
+        assertFalse(subscription.matches(1, ReadingType.ALERT.getCode()));
+        assertFalse(subscription.matches(1, -1));
+    }
+
+    @Test
+    void testSubscribeWithoutFiltersReceivesEverything() {
+        // Act
+        Subscription all = Subscription.parse("subscribe");
+        Subscription none = Subscription.parse("unsubscribe");
+
+        // Assert
+        assertSame(Subscription.ALL, all);
+        assertTrue(all.matches(123456, -1));
+        assertFalse(none.matches(1, ReadingType.ECG.getCode()));
+    }
+
+    @Test
+    void testInvalidCommandsAreRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("subscribe labels=Temperature"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("subscribe patients=5-1"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("subscribe patients=x"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("publish"));
+    }
+}
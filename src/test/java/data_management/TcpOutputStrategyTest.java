@@ -0,0 +1,184 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.SlowSubscriberPolicy;
+import com.cardio_generator.outputs.TcpOutputStrategy;
+
+class TcpOutputStrategyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEveryClientReceivesTheSameLines() throws Exception {
+        // Arrange
+        Path socketPath = directory.resolve("out.sock");
+        TcpOutputStrategy output = new TcpOutputStrategy(socketPath);
+        try (SocketChannel first = connect(socketPath); SocketChannel second = connect(socketPath)) {
+            awaitTrue(() -> output.getSubscriberCount() == 2);
+
+            // Act
+            output.output(3, 1000L, ReadingType.SATURATION.getCode(), 97);
+            output.output(4, 1001L, "Alert", "triggered");
+
+            // Assert
+            for (SocketChannel client : new SocketChannel[] {first, second}) {
+                BufferedReader reader = reader(client);
+                assertEquals("3,1000,Saturation,97.0%", reader.readLine());
+                assertEquals("4,1001,Alert,triggered", reader.readLine());
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void testStuckClientIsDisconnected() throws Exception {
+        // Arrange
+        Path socketPath = directory.resolve("out.sock");
+        TcpOutputStrategy output = new TcpOutputStrategy(socketPath, 16 * 1024, SlowSubscriberPolicy.DISCONNECT);
+        try (SocketChannel stuck = connect(socketPath)) {
+            awaitTrue(() -> output.getSubscriberCount() == 1);
+
+            // Act
+            writeReadings(output, 200_000);
+
+            // Assert
+            awaitTrue(() -> output.getSubscriberCount() == 0);
+            assertTrue(output.getDroppedReadings() > 0);
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void testStuckClientIsSampled() throws Exception {
+        // Arrange
+        Path socketPath = directory.resolve("out.sock");
+        TcpOutputStrategy output = new TcpOutputStrategy(socketPath, 16 * 1024, SlowSubscriberPolicy.SAMPLE);
+        try (SocketChannel stuck = connect(socketPath)) {
+            awaitTrue(() -> output.getSubscriberCount() == 1);
+
+            // Act
+            writeReadings(output, 200_000);
+
+            // Assert
+            assertTrue(output.getDroppedReadings() > 0);
+            assertEquals(1, output.getSubscriberCount());
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void testSubscriberOnlyReceivesSubscribedReadings() throws Exception {
+        // Arrange
+        Path socketPath = directory.resolve("out.sock");
+        TcpOutputStrategy output = new TcpOutputStrategy(socketPath);
+        try (SocketChannel all = connect(socketPath); SocketChannel filtered = connect(socketPath)) {
+            awaitTrue(() -> output.getSubscriberCount() == 2);
+            BufferedReader allReader = reader(all);
+            BufferedReader filteredReader = reader(filtered);
+            filtered.write(ByteBuffer.wrap("subscribe patients=2-3 labels=ECG\n".getBytes(StandardCharsets.US_ASCII)));
+            awaitSubscription(output, filteredReader);
+            OutputBatch batch = new OutputBatch(8);
+            for (int patientId = 1; patientId <= 4; patientId++) {
+                batch.add(patientId, ReadingType.ECG, 2000L, 0.5);
+                batch.add(patientId, ReadingType.SATURATION, 2000L, 97);
+            }
+
+            // Act
+            output.output(batch);
+            output.output(3, 2001L, ReadingType.ECG.getCode(), 0.25);
+
+            // Assert
+            assertEquals("2,2000,ECG,0.5", filteredReader.readLine());
+            assertEquals("3,2000,ECG,0.5", filteredReader.readLine());
+            assertEquals("3,2001,ECG,0.25", filteredReader.readLine());
+            String line;
+            while ((line = allReader.readLine()).contains(",-1,")) {
+                // Skip the probes sent while waiting for the subscription
+            }
+            assertEquals("1,2000,ECG,0.5", line);
+            for (int i = 0; i < 7; i++) {
+                allReader.readLine();
+            }
+            assertEquals("3,2001,ECG,0.25", allReader.readLine());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Sends a probe the filtered client has not subscribed to, followed by one it has,
+     * until only the second arrives.
+     */
+    @Test
+    void testUnknownTypeCodeIsRejected() throws Exception {
+        // Arrange
+        TcpOutputStrategy output = new TcpOutputStrategy(directory.resolve("out.sock"));
+
+        // Act & Assert
+        try {
+            assertThrows(IllegalArgumentException.class, () -> output.output(1, 1000L, 99, 1.0));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void awaitSubscription(TcpOutputStrategy output, BufferedReader filteredReader)
+            throws Exception {
+        for (int i = 0; i < 500; i++) {
+            output.output(0, -1L, ReadingType.ECG.getCode(), 0);
+            output.output(2, -1L, ReadingType.ECG.getCode(), 0);
+            if (filteredReader.readLine().startsWith("2,")) {
+                return;
+            }
+            filteredReader.readLine();
+            Thread.sleep(10);
+        }
+    }
+
+    private static void writeReadings(TcpOutputStrategy output, int count) {
+        for (int i = 0; i < count; i++) {
+            output.output(1, i, ReadingType.ECG.getCode(), 0.25);
+        }
+    }
+
+    private static BufferedReader reader(SocketChannel client) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.US_ASCII));
+    }
+
+    private static SocketChannel connect(Path socketPath) throws Exception {
+        SocketChannel client = SocketChannel.open(StandardProtocolFamily.UNIX);
+        client.connect(UnixDomainSocketAddress.of(socketPath));
+        return client;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,88 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.TickScheduler;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.OutputStrategy;
+
+class TickSchedulerTest {
+
+    @Test
+    void testSimulatedClockStampsReadings() {
+        // Arrange
+        List<String> output = new CopyOnWriteArrayList<>();
+        OutputStrategy collector = (id, timestamp, label, data) -> output.add(label + "@" + timestamp);
+        TickScheduler scheduler = new TickScheduler(2);
+        scheduler.addGroup(new BloodSaturationDataGenerator(2, 1L), collector, 1, TimeUnit.SECONDS, List.of(1, 2));
+        scheduler.addGroup(new BloodPressureDataGenerator(2, 1L), collector, 1, TimeUnit.MINUTES, List.of(1, 2));
+
+        // Act
+        scheduler.runSimulated(1_000_000L, 3, 0);
+        scheduler.shutdown();
+
+        // Assert
+        assertEquals(3, scheduler.getTickCount());
+        assertEquals(6 + 4, output.size()); // patient 1 and 2 get their pressure in the first two ticks
+        assertEquals(2, output.stream().filter(line -> line.equals("Saturation@1002000")).count());
+        assertEquals(2, output.stream().filter(line -> line.startsWith("SystolicPressure@")).count());
+    }
+
+    @Test
+    void testEveryPatientIsDueOncePerPeriodAndTicksShareTheLoad() {
+        // Arrange: more patients per slot than fit in one chunk
+        int patients = 12_500;
+        List<Integer> patientIds = new ArrayList<>();
+        for (int id = 1; id <= patients; id++) {
+            patientIds.add(id);
+        }
+        Map<Integer, List<Long>> runs = new ConcurrentHashMap<>();
+        PatientDataGenerator generator = (patientId, out) -> out.output(patientId, 0L, "Saturation", "97.0%");
+        OutputStrategy collector = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                runs.computeIfAbsent(patientId, id -> new CopyOnWriteArrayList<>()).add(timestamp);
+            }
+
+            @Override
+            public void output(OutputBatch batch) {
+                for (int i = 0; i < batch.size(); i++) {
+                    output(batch.getPatientId(i), batch.getTimestamp(i), "Saturation", "");
+                }
+            }
+        };
+        TickScheduler scheduler = new TickScheduler(4);
+        scheduler.addGroup(generator, collector, 5, TimeUnit.SECONDS, patientIds);
+
+        // Act
+        long[] perTick = new long[10];
+        for (int tick = 0; tick < 10; tick++) {
+            int before = runs.values().stream().mapToInt(List::size).sum();
+            scheduler.runTick(tick, tick * 1000L);
+            perTick[tick] = runs.values().stream().mapToInt(List::size).sum() - before;
+        }
+        scheduler.shutdown();
+
+        // Assert
+        assertEquals(patients, runs.size());
+        for (List<Long> timestamps : runs.values()) {
+            assertEquals(2, timestamps.size());
+            assertEquals(5000L, Math.abs(timestamps.get(1) - timestamps.get(0)));
+        }
+        for (long count : perTick) {
+            assertEquals(patients / 5, count);
+        }
+    }
+}
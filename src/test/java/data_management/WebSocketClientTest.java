@@ -1,6 +1,8 @@
 package data_management;
 
 import com.data_management.DataStorage;
+import com.data_management.ReadingBatch;
+import com.data_management.ReadingSink;
 import com.data_management.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +13,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -50,6 +54,17 @@ class WebSocketClientTest {
         verify(mockStorage).addPatientData(25, -0.39264752241868395, "ECG", 1746370219657L);
     }
 
+    @Test
+    void shouldAcceptPercentagesAndAlertStates() {
+        client.onMessage("25,1746370219657,Saturation,97.0%");
+        client.onMessage("25,1746370219658,Alert,triggered");
+        client.onMessage("25,1746370219659,Alert,resolved");
+
+        verify(mockStorage).addPatientData(25, 97.0, "Saturation", 1746370219657L);
+        verify(mockStorage).addPatientData(25, 1.0, "Alert", 1746370219658L);
+        verify(mockStorage).addPatientData(25, 0.0, "Alert", 1746370219659L);
+    }
+
     @Test
     void shouldIgnoreInvalidMessageFormat() {
         String invalidMessage = "Invalid message structure";
@@ -75,6 +90,26 @@ class WebSocketClientTest {
         assertEquals("Storage failure", exception.getMessage());
     }
 
+    @Test
+    void shouldHandMessagesToTheSinkAsOneBatch() {
+        ReadingSink sink = mock(ReadingSink.class);
+        List<String> received = new ArrayList<>();
+        doAnswer(invocation -> {
+            ReadingBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                received.add(batch.getPatientId(i) + "," + batch.getRecordType(i));
+            }
+            return null;
+        }).when(sink).addPatientData(any(ReadingBatch.class));
+        client.setSink(sink);
+
+        client.onMessage("1,1000,ECG,0.5\n2,1000,Saturation,97.0\nbroken");
+
+        verify(sink, times(1)).addPatientData(any(ReadingBatch.class));
+        assertEquals(List.of("1,ECG", "2,Saturation"), received);
+        verify(mockStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
+    }
+
     @Test
     void shouldCloseConnectionGracefully() {
         client.onClose(1000, "Normal closure", false);
@@ -0,0 +1,99 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.OutputBatch;
+import com.cardio_generator.outputs.ReadingType;
+import com.cardio_generator.outputs.SlowSubscriberPolicy;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.WebSocketClient;
+
+class WebSocketOutputStrategyTest {
+
+    @Test
+    void testTickFrameReachesEveryClientAsReadings() throws Exception {
+        // Arrange
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0, true, 1000, SlowSubscriberPolicy.DISCONNECT);
+        DataStorage firstStorage = mock(DataStorage.class);
+        DataStorage secondStorage = mock(DataStorage.class);
+        WebSocketClient first = connect(output, firstStorage);
+        WebSocketClient second = connect(output, secondStorage);
+        awaitConnections(output, 2);
+        OutputBatch batch = new OutputBatch(8);
+        batch.add(1, ReadingType.DIASTOLIC_PRESSURE, 1000L, 79);
+        batch.add(2, ReadingType.SYSTOLIC_PRESSURE, 1000L, 121);
+        batch.add(3, ReadingType.ECG, 1000L, 0.5);
+
+        // Act
+        output.output(batch);
+
+        // Assert
+        for (DataStorage storage : new DataStorage[] {firstStorage, secondStorage}) {
+            verify(storage, timeout(5000)).addPatientData(1, 79.0, "DiastolicPressure", 1000L);
+            verify(storage, timeout(5000)).addPatientData(2, 121.0, "SystolicPressure", 1000L);
+            verify(storage, timeout(5000)).addPatientData(3, 0.5, "ECG", 1000L);
+        }
+        first.closeBlocking();
+        second.closeBlocking();
+        output.close();
+    }
+
+    @Test
+    void testReadingModeKeepsOneReadingPerMessage() throws Exception {
+        // Arrange
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0);
+        DataStorage storage = mock(DataStorage.class);
+        WebSocketClient client = connect(output, storage);
+        awaitConnections(output, 1);
+
+        // Act
+        output.output(7, 2000L, ReadingType.DIASTOLIC_PRESSURE.getCode(), 80);
+
+        // Assert
+        verify(storage, timeout(5000)).addPatientData(7, 80.0, "DiastolicPressure", 2000L);
+        assertEquals(0, output.getDroppedReadings());
+        client.closeBlocking();
+        output.close();
+    }
+
+    @Test
+    void testUnknownTypeCodeIsRejected() throws Exception {
+        // Arrange
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0);
+
+        // Act & Assert
+        try {
+            assertThrows(IllegalArgumentException.class, () -> output.output(1, 1000L, -1, 1.0));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static WebSocketClient connect(WebSocketOutputStrategy output, DataStorage storage) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.getPort() <= 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        WebSocketClient client = new WebSocketClient(new URI("ws://localhost:" + output.getPort()), storage);
+        assertTrue(client.connectBlocking());
+        return client;
+    }
+
+    private static void awaitConnections(WebSocketOutputStrategy output, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.getConnectionCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, output.getConnectionCount());
+    }
+}